@@ -0,0 +1,30 @@
+package com.devara.paytrans.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Kafka value deserializer backed by a pre-built {@link ObjectReader}, the
+ * counterpart of {@link JacksonSerializer}.
+ */
+public class JacksonDeserializer<T> implements Deserializer<T> {
+
+  private final ObjectReader reader;
+
+  public JacksonDeserializer(ObjectMapper objectMapper, Class<T> type) {
+    this.reader = objectMapper.readerFor(type);
+  }
+
+  @Override
+  public T deserialize(String topic, byte[] data) {
+    if (data == null) {
+      return null;
+    }
+    try {
+      return reader.readValue(data);
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to deserialize object", e);
+    }
+  }
+}
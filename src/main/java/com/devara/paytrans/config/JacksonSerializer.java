@@ -1,20 +1,59 @@
 package com.devara.paytrans.config;
 
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.apache.kafka.common.serialization.Serializer;
 
+/**
+ * Kafka value serializer backed by a pre-built {@link ObjectWriter}.
+ *
+ * The writer is resolved once for the value type, so its serializer chain is
+ * looked up at construction rather than on the first record. Output is written
+ * into a per-thread buffer that is reset, not reallocated, between records;
+ * only the final byte[] handed to Kafka is allocated per record.
+ */
 public class JacksonSerializer<T> implements Serializer<T> {
-  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private static final int INITIAL_BUFFER_SIZE = 512;
+
+  private final ObjectWriter writer;
+  private final ThreadLocal<ByteArrayBuilder> buffers =
+      ThreadLocal.withInitial(() -> new ByteArrayBuilder(INITIAL_BUFFER_SIZE));
+
+  /**
+   * Used when Kafka instantiates the serializer from its class name.
+   */
+  public JacksonSerializer() {
+    this(new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .writer());
+  }
+
+  public JacksonSerializer(ObjectMapper objectMapper, Class<T> type) {
+    this(objectMapper.writerFor(type));
+  }
+
+  private JacksonSerializer(ObjectWriter writer) {
+    this.writer = writer;
+  }
 
   @Override
   public byte[] serialize(String topic, T data) {
     if (data == null) {
       return null;
     }
+    ByteArrayBuilder buffer = buffers.get();
     try {
-      return objectMapper.writeValueAsBytes(data);
+      writer.writeValue(buffer, data);
+      return buffer.toByteArray();
     } catch (Exception e) {
       throw new RuntimeException("Failed to serialize object", e);
+    } finally {
+      buffer.reset();
     }
   }
 }
@@ -0,0 +1,178 @@
+package com.devara.paytrans.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Kafka client tuning (paytrans.kafka.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.kafka")
+public class KafkaClientProperties {
+
+  private String bootstrapServers = "localhost:9092";
+
+  private Producer producer = new Producer();
+
+  private Consumer consumer = new Consumer();
+
+  private Retry retry = new Retry();
+
+  /**
+   * Per-topic settings, keyed by topic name.
+   */
+  private Map<String, Topic> topics = new HashMap<>();
+
+  /**
+   * Topics whose events are written in the binary format.
+   */
+  public Set<String> binaryTopics() {
+    return topics.entrySet().stream()
+        .filter(entry -> Topic.FORMAT_BINARY.equalsIgnoreCase(entry.getValue().getFormat()))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+
+  @Data
+  public static class Producer {
+    /**
+     * Idempotent producer (enable.idempotence): broker-side de-duplication of
+     * retried batches and per-partition order with up to 5 requests in flight.
+     */
+    private boolean idempotence = true;
+
+    /**
+     * When set, the outbox relay publishes each claimed batch in one Kafka
+     * transaction under this id. Must be unique per running instance.
+     */
+    private String transactionalId;
+
+    /**
+     * How long the producer waits to fill a batch before sending (linger.ms).
+     */
+    private Duration linger = Duration.ofMillis(5);
+
+    /**
+     * Upper bound on one partition batch in bytes (batch.size).
+     */
+    private int batchSize = 64 * 1024;
+
+    /**
+     * none, gzip, snappy, lz4 or zstd (compression.type).
+     */
+    private String compressionType = "lz4";
+
+    /**
+     * Unacknowledged produce requests per broker connection
+     * (max.in.flight.requests.per.connection).
+     */
+    private int maxInFlightRequests = 5;
+
+    /**
+     * Records handed to the producer but not yet acknowledged, across all
+     * callers. Bounds memory held by the shared send pipeline.
+     */
+    private int maxInFlightRecords = 1024;
+
+    /**
+     * Events that may queue in front of the shared send pipeline before
+     * publishing fails fast.
+     */
+    private int bufferSize = 8192;
+
+    /**
+     * How long a caller waits for its event to be acknowledged.
+     */
+    private Duration sendTimeout = Duration.ofSeconds(5);
+  }
+
+  @Data
+  public static class Consumer {
+    private String groupId = "paytrans-group";
+
+    /**
+     * Where a new consumer group starts: earliest or latest.
+     */
+    private String autoOffsetReset = "earliest";
+
+    /**
+     * read_committed hides records from aborted outbox transactions;
+     * read_uncommitted sees everything.
+     */
+    private String isolationLevel = "read_committed";
+
+    /**
+     * record: one event at a time per partition; batch: whole polls, processed
+     * concurrently across keys and committed once handled; reactive: reactor-kafka
+     * receiver, ordered per partition with batched commits.
+     */
+    private String mode = "record";
+
+    /**
+     * Batch mode: key groups processed at the same time.
+     * Reactive mode: threads available to partition processing.
+     */
+    private int maxConcurrency = 64;
+
+    /**
+     * Reactive mode: partitions processed at once. Each partition keeps its slot
+     * for the life of the receiver, so this must be at least the partition count
+     * of transaction-events, or records of the extra partitions are never processed.
+     */
+    private int maxPartitions = 1024;
+
+    /**
+     * Reactive mode: acknowledged offsets are committed every this many records...
+     */
+    private int commitBatchSize = 100;
+
+    /**
+     * ...or this often, whichever comes first.
+     */
+    private Duration commitInterval = Duration.ofSeconds(1);
+
+    /**
+     * Records returned by one poll (max.poll.records), i.e. the batch size.
+     */
+    private int maxPollRecords = 500;
+  }
+
+  @Data
+  public static class Topic {
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_BINARY = "binary";
+
+    /**
+     * Wire format producers use: json or binary. Consumers read both.
+     */
+    private String format = FORMAT_JSON;
+  }
+
+  /**
+   * Non-blocking retries for consumed events that fail to process.
+   */
+  @Data
+  public static class Retry {
+    /**
+     * When false, a failed event fails its poll as before.
+     */
+    private boolean enabled = true;
+
+    /**
+     * One retry topic per delay (&lt;topic&gt;.retry.0, .retry.1, ...); after the last,
+     * events go to &lt;topic&gt;.dlt.
+     */
+    private List<Duration> delays = new ArrayList<>(List.of(
+        Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofMinutes(1)));
+  }
+}
@@ -1,42 +1,198 @@
 package com.devara.paytrans.config;
 
 import com.devara.paytrans.payment.transaction.TransactionEvent;
+import com.devara.paytrans.payment.transaction.TransactionEventPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+import reactor.kafka.receiver.ReceiverOptions;
 import reactor.kafka.sender.KafkaSender;
 import reactor.kafka.sender.SenderOptions;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 public class KafkaConfig {
 
+  private static final long LISTENER_INITIAL_BACKOFF_MS = 1_000;
+  private static final long LISTENER_MAX_BACKOFF_MS = 30_000;
+
+  @Bean
+  public SenderOptions<String, TransactionEvent> senderOptions(KafkaClientProperties properties,
+                                                              ObjectMapper objectMapper) {
+    return SenderOptions.<String, TransactionEvent>create(producerProps(properties))
+        .withValueSerializer(new TransactionEventSerializer(objectMapper, properties.binaryTopics()))
+        .maxInFlight(properties.getProducer().getMaxInFlightRecords())
+        // One failed record must not terminate the shared send pipeline
+        .stopOnError(false);
+  }
+
+  @Bean
+  @Primary
+  public KafkaSender<String, TransactionEvent> kafkaSender(SenderOptions<String, TransactionEvent> senderOptions) {
+    return KafkaSender.create(senderOptions);
+  }
+
+  /**
+   * Transactional sender for the outbox relay, only when a transactional id is
+   * configured. A failed record aborts the whole batch's transaction.
+   */
+  @Bean
+  @ConditionalOnProperty(prefix = "paytrans.kafka.producer", name = "transactional-id")
+  public KafkaSender<String, TransactionEvent> outboxSender(KafkaClientProperties properties,
+                                                           ObjectMapper objectMapper) {
+    if (!properties.getProducer().isIdempotence()) {
+      throw new IllegalStateException("paytrans.kafka.producer.transactional-id requires idempotence");
+    }
+    return KafkaSender.create(SenderOptions.<String, TransactionEvent>create(producerProps(properties))
+        .producerProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG, properties.getProducer().getTransactionalId())
+        .producerProperty(ProducerConfig.CLIENT_ID_CONFIG, "paytrans-outbox-producer")
+        .withValueSerializer(new TransactionEventSerializer(objectMapper, properties.binaryTopics()))
+        .maxInFlight(properties.getProducer().getMaxInFlightRecords()));
+  }
+
+  /**
+   * Sender for raw bytes, used to dead-letter records that could not be deserialized.
+   */
+  @Bean
+  public KafkaSender<String, byte[]> deadLetterSender(KafkaClientProperties properties) {
+    Map<String, Object> configProps = new HashMap<>();
+    configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, properties.getBootstrapServers());
+    configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+    configProps.put(ProducerConfig.CLIENT_ID_CONFIG, "paytrans-dlt-producer");
+    configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+    return KafkaSender.create(SenderOptions.create(configProps));
+  }
+
+  @Bean
+  public ConsumerFactory<String, TransactionEvent> transactionEventConsumerFactory(
+      KafkaClientProperties properties, ObjectMapper objectMapper) {
+    return new DefaultKafkaConsumerFactory<>(consumerProps(properties),
+        new StringDeserializer(),
+        new TransactionEventDeserializer(objectMapper));
+  }
+
+  /**
+   * Receiver for the reactive consumer (TransactionEventReceiver).
+   */
+  @Bean
+  public ReceiverOptions<String, TransactionEvent> transactionEventReceiverOptions(
+      KafkaClientProperties properties, ObjectMapper objectMapper) {
+    KafkaClientProperties.Consumer consumer = properties.getConsumer();
+    return ReceiverOptions.<String, TransactionEvent>create(consumerProps(properties))
+        .withKeyDeserializer(new StringDeserializer())
+        .withValueDeserializer(new TransactionEventDeserializer(objectMapper))
+        .commitBatchSize(consumer.getCommitBatchSize())
+        .commitInterval(consumer.getCommitInterval())
+        .subscription(List.of(TransactionEventPublisher.TOPIC));
+  }
+
+  /**
+   * Error handler for both listener container factories. Listeners only throw
+   * when a failed record could not be forwarded to a retry or dead-letter topic
+   * (TransactionEventRetryRouter), and such a record must not be committed. The
+   * backoff therefore never runs out, so the handler never reaches its recoverer
+   * (which would skip and commit the record): the record, or batch, is
+   * redelivered until forwarding succeeds.
+   */
+  @Bean
+  public CommonErrorHandler transactionEventErrorHandler() {
+    ExponentialBackOff backOff = new ExponentialBackOff(LISTENER_INITIAL_BACKOFF_MS, 2.0);
+    backOff.setMaxInterval(LISTENER_MAX_BACKOFF_MS);
+    backOff.setMaxElapsedTime(Long.MAX_VALUE);
+    return new DefaultErrorHandler(backOff);
+  }
+
+  /**
+   * Default container factory for @KafkaListener methods (TransactionListener).
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> kafkaListenerContainerFactory(
+      ConsumerFactory<String, TransactionEvent> transactionEventConsumerFactory,
+      CommonErrorHandler transactionEventErrorHandler) {
+    ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> factory =
+        new ConcurrentKafkaListenerContainerFactory<>();
+    factory.setConsumerFactory(transactionEventConsumerFactory);
+    factory.setCommonErrorHandler(transactionEventErrorHandler);
+    return factory;
+  }
+
+  /**
+   * Container factory for batch listeners (TransactionBatchListener).
+   * Offsets are committed after the listener has returned for the whole batch.
+   */
   @Bean
-  public SenderOptions<String, TransactionEvent> senderOptions() {
+  public ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> batchKafkaListenerContainerFactory(
+      ConsumerFactory<String, TransactionEvent> transactionEventConsumerFactory,
+      CommonErrorHandler transactionEventErrorHandler) {
+    ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> factory =
+        new ConcurrentKafkaListenerContainerFactory<>();
+    factory.setConsumerFactory(transactionEventConsumerFactory);
+    // KeyGroupFailedException goes to the fallback batch handler, which retries the
+    // whole batch on the same unbounded backoff
+    factory.setCommonErrorHandler(transactionEventErrorHandler);
+    factory.setBatchListener(true);
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+    return factory;
+  }
+
+  private static Map<String, Object> consumerProps(KafkaClientProperties properties) {
+    Map<String, Object> configProps = new HashMap<>();
+    configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, properties.getBootstrapServers());
+    configProps.put(ConsumerConfig.GROUP_ID_CONFIG, properties.getConsumer().getGroupId());
+    configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, properties.getConsumer().getAutoOffsetReset());
+    configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, properties.getConsumer().getMaxPollRecords());
+    configProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, properties.getConsumer().getIsolationLevel());
+    return configProps;
+  }
+
+  static Map<String, Object> producerProps(KafkaClientProperties properties) {
+    KafkaClientProperties.Producer producer = properties.getProducer();
+    if (producer.isIdempotence() && producer.getMaxInFlightRequests() > 5) {
+      // The broker only tracks sequence numbers for the last 5 batches per producer
+      throw new IllegalStateException("paytrans.kafka.producer.max-in-flight-requests must be at most 5 "
+          + "with idempotence, was " + producer.getMaxInFlightRequests());
+    }
     Map<String, Object> configProps = new HashMap<>();
 
     // 1. The address
-    configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+    configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, properties.getBootstrapServers());
 
-    // 2. Serializers - Using custom Jackson serializer instead of deprecated JsonSerializer
+    // 2. Serializers - the value serializer is an instance (set by the caller) so it
+    //    can share the application's configured ObjectMapper and the per-topic format
     configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-    configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JacksonSerializer.class);
 
     // 3. Identification
     configProps.put(ProducerConfig.CLIENT_ID_CONFIG, "paytrans-producer");
 
-    // 4. Resilience settings
-    configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
+    // 4. Resilience settings - with idempotence, retries cannot duplicate or reorder
+    //    records, so keep retrying until delivery.timeout.ms instead of giving up early
+    configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, producer.isIdempotence());
     configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+    configProps.put(ProducerConfig.RETRIES_CONFIG, producer.isIdempotence() ? Integer.MAX_VALUE : 3);
 
-    return SenderOptions.create(configProps);
-  }
-
-  @Bean
-  public KafkaSender<String, TransactionEvent> kafkaSender(SenderOptions<String, TransactionEvent> senderOptions) {
-    return KafkaSender.create(senderOptions);
+    // 5. Batching - events from concurrent payments share produce requests
+    configProps.put(ProducerConfig.LINGER_MS_CONFIG, (int) producer.getLinger().toMillis());
+    configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, producer.getBatchSize());
+    configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producer.getCompressionType());
+    configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, producer.getMaxInFlightRequests());
+    return configProps;
   }
 }
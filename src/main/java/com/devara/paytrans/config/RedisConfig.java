@@ -4,10 +4,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -38,6 +41,40 @@ public class RedisConfig {
     return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
   }
 
+  /**
+   * Creates a reactive Redis template for String-byte[] operations
+   * Used for compactly encoded idempotency results (see TransactionResultCodec)
+   */
+  @Bean
+  public ReactiveRedisTemplate<String, byte[]> reactiveBytesRedisTemplate(
+      ReactiveRedisConnectionFactory connectionFactory) {
+
+    StringRedisSerializer keySerializer = new StringRedisSerializer();
+    RedisSerializer<byte[]> valueSerializer = RedisSerializer.byteArray();
+
+    RedisSerializationContext<String, byte[]> serializationContext =
+        RedisSerializationContext.<String, byte[]>newSerializationContext(valueSerializer)
+            .key(keySerializer)
+            .value(valueSerializer)
+            .hashKey(keySerializer)
+            .hashValue(valueSerializer)
+            .build();
+
+    return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+  }
+
+  /**
+   * Pub/sub listener container
+   * Used to wake requests waiting on an idempotency key held by another node.
+   * Lazy, so nothing connects to Redis unless a request actually waits.
+   */
+  @Bean
+  @Lazy
+  public ReactiveRedisMessageListenerContainer reactiveRedisMessageListenerContainer(
+      ReactiveRedisConnectionFactory connectionFactory) {
+    return new ReactiveRedisMessageListenerContainer(connectionFactory);
+  }
+
   /**
    * ObjectMapper bean for JSON serialization/deserialization
    * Only created if no other ObjectMapper bean exists
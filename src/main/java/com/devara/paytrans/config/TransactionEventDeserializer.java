@@ -0,0 +1,49 @@
+package com.devara.paytrans.config;
+
+import com.devara.paytrans.payment.transaction.TransactionEvent;
+import com.devara.paytrans.payment.transaction.TransactionEventCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads {@link TransactionEvent}s in either wire format, detected per record, so
+ * a topic can switch format while older records are still being consumed.
+ */
+public class TransactionEventDeserializer implements Deserializer<TransactionEvent> {
+
+  public static final String RAW_VALUE_HEADER = "paytrans-raw-value";
+  public static final String ERROR_HEADER = "paytrans-deserialization-error";
+
+  private final JacksonDeserializer<TransactionEvent> json;
+
+  public TransactionEventDeserializer(ObjectMapper objectMapper) {
+    this.json = new JacksonDeserializer<>(objectMapper, TransactionEvent.class);
+  }
+
+  @Override
+  public TransactionEvent deserialize(String topic, byte[] data) {
+    if (data == null) {
+      return null;
+    }
+    return TransactionEventCodec.isJson(data) ? json.deserialize(topic, data) : TransactionEventCodec.decode(data);
+  }
+
+  /**
+   * Never throws: a record that cannot be read is returned with a null value and
+   * its raw bytes in the {@link #RAW_VALUE_HEADER} header, so the consumer can
+   * dead-letter it instead of failing the poll over and over.
+   */
+  @Override
+  public TransactionEvent deserialize(String topic, Headers headers, byte[] data) {
+    try {
+      return deserialize(topic, data);
+    } catch (RuntimeException e) {
+      headers.add(RAW_VALUE_HEADER, data);
+      headers.add(ERROR_HEADER, String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+      return null;
+    }
+  }
+}
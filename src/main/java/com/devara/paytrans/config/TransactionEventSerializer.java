@@ -0,0 +1,32 @@
+package com.devara.paytrans.config;
+
+import com.devara.paytrans.payment.transaction.TransactionEvent;
+import com.devara.paytrans.payment.transaction.TransactionEventCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Set;
+
+/**
+ * Writes {@link TransactionEvent}s as JSON or in the binary
+ * {@link TransactionEventCodec} format, chosen per topic
+ * (paytrans.kafka.topics.&lt;topic&gt;.format). Topics without a setting get JSON.
+ */
+public class TransactionEventSerializer implements Serializer<TransactionEvent> {
+
+  private final JacksonSerializer<TransactionEvent> json;
+  private final Set<String> binaryTopics;
+
+  public TransactionEventSerializer(ObjectMapper objectMapper, Set<String> binaryTopics) {
+    this.json = new JacksonSerializer<>(objectMapper, TransactionEvent.class);
+    this.binaryTopics = Set.copyOf(binaryTopics);
+  }
+
+  @Override
+  public byte[] serialize(String topic, TransactionEvent data) {
+    if (data == null) {
+      return null;
+    }
+    return binaryTopics.contains(topic) ? TransactionEventCodec.encode(data) : json.serialize(topic, data);
+  }
+}
@@ -0,0 +1,423 @@
+package com.devara.paytrans.payment.balance;
+
+import com.devara.paytrans.payment.transaction.Account;
+import com.devara.paytrans.payment.transaction.Transaction;
+import com.devara.paytrans.payment.transaction.TransactionLedger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * In-memory balance engine for transfers (paytrans.balance-engine.enabled=true).
+ *
+ * Accounts are partitioned by account-number hash. Each partition is owned by
+ * one writer thread fed by a lock-free queue, so the writer applies debits and
+ * credits to its in-memory balances without locks or optimistic retries.
+ * Balances are loaded from the accounts table on first use.
+ *
+ * Postings are journaled to transaction_ledger in batches: the writer keeps
+ * applying commands while its queue is non-empty and writes the batch (new
+ * transaction rows, postings and the touched accounts' balances) in one database
+ * transaction when the queue drains or the batch is full. A transfer completes
+ * only once its postings are committed, so under load many transfers share one
+ * commit.
+ *
+ * A transfer between partitions runs as two legs: the source partition debits
+ * and, once that debit is committed, hands the credit to the destination
+ * partition (or a reversal back, if the destination does not exist). On startup,
+ * debits without a journaled credit or reversal are finished before new
+ * transfers are accepted.
+ *
+ * The engine assumes it is the only writer of account balances on a single node.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "paytrans.balance-engine", name = "enabled", havingValue = "true")
+public class BalanceEngine {
+
+  private static final int ID_BLOCK = 1_000;
+  // accounts.account_number and transaction_ledger.counterparty are VARCHAR(20)
+  private static final int MAX_ACCOUNT_NUMBER_LENGTH = 20;
+  private static final long INITIAL_RETRY_BACKOFF_MILLIS = 100;
+  private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+
+  private final BalanceJournal journal;
+  private final int queueCapacity;
+  private final int batchSize;
+  private final Partition[] partitions;
+
+  @Autowired
+  public BalanceEngine(BalanceJournal journal, BalanceEngineProperties properties) {
+    this(journal, properties.getPartitions(), properties.getQueueCapacity(), properties.getJournalBatchSize());
+  }
+
+  BalanceEngine(BalanceJournal journal, int partitions, int queueCapacity, int batchSize) {
+    this.journal = journal;
+    this.queueCapacity = queueCapacity;
+    this.batchSize = batchSize;
+    this.partitions = new Partition[partitions];
+    for (int i = 0; i < partitions; i++) {
+      this.partitions[i] = new Partition(i);
+    }
+  }
+
+  @PostConstruct
+  public void start() {
+    List<Posting> unfinished = journal.unfinishedDebits();
+    if (!unfinished.isEmpty()) {
+      log.warn("Balance engine: finishing {} transfers interrupted between debit and credit", unfinished.size());
+    }
+    for (Posting debit : unfinished) {
+      partitionFor(debit.counterparty()).enqueue(new Command(Leg.CREDIT, Transfer.recovered(debit)));
+    }
+    for (Partition partition : partitions) {
+      partition.start();
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    for (Partition partition : partitions) {
+      partition.stop();
+    }
+    for (Partition partition : partitions) {
+      partition.join();
+    }
+  }
+
+  /**
+   * Moves {@code amount} between two accounts. Completes once both legs are
+   * journaled; fails with {@link Account.InsufficientFundsException},
+   * IllegalArgumentException for unknown or invalid accounts, or
+   * {@link BalanceJournal.BatchRejectedException} if the journal refused its batch.
+   */
+  public Mono<Transaction> transfer(String fromAccount, String toAccount, BigDecimal amount) {
+    return Mono.defer(() -> {
+      if (fromAccount.equals(toAccount)) {
+        return Mono.error(new IllegalArgumentException("Source and destination accounts must differ"));
+      }
+      // Checked before queueing: a posting the journal cannot store would fail its whole batch
+      if (fromAccount.length() > MAX_ACCOUNT_NUMBER_LENGTH || toAccount.length() > MAX_ACCOUNT_NUMBER_LENGTH) {
+        return Mono.error(new IllegalArgumentException(
+            "Account numbers are at most " + MAX_ACCOUNT_NUMBER_LENGTH + " characters"));
+      }
+      Transfer transfer = new Transfer(fromAccount, toAccount, amount);
+      if (!partitionFor(fromAccount).submit(new Command(Leg.DEBIT, transfer))) {
+        return Mono.error(new EngineOverloadedException("Balance engine queue is full, retry later"));
+      }
+      return Mono.fromFuture(transfer.result);
+    });
+  }
+
+  private Partition partitionFor(String accountNumber) {
+    return partitions[Math.floorMod(accountNumber.hashCode(), partitions.length)];
+  }
+
+  private enum Leg { DEBIT, CREDIT, REVERSAL }
+
+  private record Command(Leg leg, Transfer transfer) {
+  }
+
+  private static final class Transfer {
+    final String from;
+    final String to;
+    final BigDecimal amount;
+    final CompletableFuture<Transaction> result = new CompletableFuture<>();
+    // Debit plus credit (or reversal); the caller hears back when both are durable
+    final AtomicInteger pendingLegs;
+    volatile Transaction transaction;
+    volatile RuntimeException failure;
+
+    Transfer(String from, String to, BigDecimal amount) {
+      this(from, to, amount, 2);
+    }
+
+    private Transfer(String from, String to, BigDecimal amount, int legs) {
+      this.from = from;
+      this.to = to;
+      this.amount = amount;
+      this.pendingLegs = new AtomicInteger(legs);
+    }
+
+    static Transfer recovered(Posting debit) {
+      Transfer transfer = new Transfer(debit.accountNumber(), debit.counterparty(), debit.amount(), 1);
+      transfer.transaction = Transaction.builder().id(debit.transactionId()).amount(debit.amount()).build();
+      return transfer;
+    }
+
+    void legDurable() {
+      if (pendingLegs.decrementAndGet() == 0) {
+        if (failure != null) {
+          result.completeExceptionally(failure);
+        } else {
+          result.complete(transaction);
+        }
+      }
+    }
+  }
+
+  /**
+   * One writer thread and the accounts it owns. Everything except the queue and
+   * its counter is confined to the writer thread.
+   */
+  private final class Partition implements Runnable {
+    private final int index;
+    private final Queue<Command> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<String, BigDecimal> balances = new HashMap<>();
+    private final Deque<Long> ids = new ArrayDeque<>();
+
+    // Current journal batch
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final List<Posting> postings = new ArrayList<>();
+    private final Map<String, BigDecimal> dirty = new LinkedHashMap<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Transfer> inBatch = new ArrayList<>();
+
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    Partition(int index) {
+      this.index = index;
+    }
+
+    void start() {
+      thread = Thread.ofPlatform().name("balance-engine-" + index).start(this);
+    }
+
+    void stop() {
+      running = false;
+      LockSupport.unpark(thread);
+    }
+
+    void join() {
+      try {
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * New transfers from callers; bounded.
+     */
+    boolean submit(Command command) {
+      if (!running) {
+        return false;
+      }
+      if (queued.incrementAndGet() > queueCapacity) {
+        queued.decrementAndGet();
+        return false;
+      }
+      queue.offer(command);
+      LockSupport.unpark(thread);
+      return true;
+    }
+
+    /**
+     * Second legs of transfers already debited; never rejected.
+     */
+    void enqueue(Command command) {
+      queued.incrementAndGet();
+      queue.offer(command);
+      LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Command command = queue.poll();
+        if (command == null) {
+          if (!postings.isEmpty()) {
+            flush();
+          } else if (!running) {
+            return;
+          } else {
+            LockSupport.park(this);
+          }
+          continue;
+        }
+        queued.decrementAndGet();
+        try {
+          apply(command);
+        } catch (RuntimeException e) {
+          // Journal unreachable while stopping; nothing of this command was applied
+          command.transfer().result.completeExceptionally(e);
+        }
+        if (postings.size() >= batchSize) {
+          flush();
+        }
+      }
+    }
+
+    private void apply(Command command) {
+      Transfer transfer = command.transfer();
+      switch (command.leg()) {
+        case DEBIT -> debit(transfer);
+        case CREDIT -> credit(transfer);
+        case REVERSAL -> post(transfer, TransactionLedger.OP_REVERSAL, transfer.from, transfer.to,
+            balance(transfer.from).add(transfer.amount));
+      }
+    }
+
+    private void debit(Transfer transfer) {
+      BigDecimal balance = balance(transfer.from);
+      if (balance == null) {
+        transfer.result.completeExceptionally(
+            new IllegalArgumentException("Source account not found: " + transfer.from));
+        return;
+      }
+      if (balance.compareTo(transfer.amount) < 0) {
+        transfer.result.completeExceptionally(new Account.InsufficientFundsException(
+            "Insufficient funds in account " + transfer.from +
+            ". Available: " + balance + ", Required: " + transfer.amount));
+        return;
+      }
+      Instant now = Instant.now();
+      transfer.transaction = Transaction.builder()
+          .id(nextId())
+          .amount(transfer.amount)
+          .currency("USD")
+          .status(Transaction.STATUS_COMPLETED)
+          .fee(BigDecimal.ZERO)
+          .netAmount(transfer.amount)
+          .createdAt(now)
+          .updatedAt(now)
+          .build();
+      transactions.add(transfer.transaction);
+      post(transfer, TransactionLedger.OP_DEBIT, transfer.from, transfer.to, balance.subtract(transfer.amount));
+
+      Partition destination = partitionFor(transfer.to);
+      if (destination == this) {
+        credit(transfer);
+      } else {
+        // Only a committed debit may be credited elsewhere, so recovery never sees a credit without its debit
+        afterCommit.add(() -> destination.enqueue(new Command(Leg.CREDIT, transfer)));
+      }
+    }
+
+    private void credit(Transfer transfer) {
+      BigDecimal balance = balance(transfer.to);
+      if (balance != null) {
+        post(transfer, TransactionLedger.OP_CREDIT, transfer.to, transfer.from, balance.add(transfer.amount));
+        return;
+      }
+      transfer.failure = new IllegalArgumentException("Destination account not found: " + transfer.to);
+      Partition source = partitionFor(transfer.from);
+      if (source == this) {
+        apply(new Command(Leg.REVERSAL, transfer));
+      } else {
+        source.enqueue(new Command(Leg.REVERSAL, transfer));
+      }
+    }
+
+    private void post(Transfer transfer, String operation, String account, String counterparty, BigDecimal after) {
+      balances.put(account, after);
+      dirty.put(account, after);
+      postings.add(new Posting(transfer.transaction.getId(), operation, account, counterparty, transfer.amount, after));
+      afterCommit.add(transfer::legDurable);
+      inBatch.add(transfer);
+    }
+
+    private void flush() {
+      JournalBatch batch = new JournalBatch(
+          List.copyOf(transactions), List.copyOf(postings), new LinkedHashMap<>(dirty));
+      try {
+        withRetry("journal " + batch.postings().size() + " postings", () -> {
+          journal.append(batch);
+          return null;
+        });
+      } catch (BalanceJournal.BatchRejectedException e) {
+        // Nothing of the batch was written. Its transfers fail, and balances touched by
+        // it are reloaded on next use. A credit whose debit was committed in an earlier
+        // batch stays unfinished until recovery on the next start.
+        log.error("Balance engine partition {}: journal rejected a batch, failing {} transfers",
+            index, inBatch.size(), e);
+        inBatch.forEach(transfer -> transfer.result.completeExceptionally(e));
+        dirty.keySet().forEach(balances::remove);
+        afterCommit.clear();
+      } catch (RuntimeException e) {
+        // Only reachable while stopping; unfinished debits are picked up on restart
+        IllegalStateException unknown =
+            new IllegalStateException("Balance engine stopped before the transfer was confirmed", e);
+        inBatch.forEach(transfer -> transfer.result.completeExceptionally(unknown));
+        afterCommit.clear();
+      }
+      List<Runnable> callbacks = new ArrayList<>(afterCommit);
+      transactions.clear();
+      postings.clear();
+      dirty.clear();
+      afterCommit.clear();
+      inBatch.clear();
+      callbacks.forEach(Runnable::run);
+    }
+
+    private BigDecimal balance(String accountNumber) {
+      BigDecimal balance = balances.get(accountNumber);
+      if (balance == null) {
+        balance = withRetry("load " + accountNumber, () -> journal.loadBalance(accountNumber));
+        if (balance != null) {
+          balances.put(accountNumber, balance);
+        }
+      }
+      return balance;
+    }
+
+    private long nextId() {
+      if (ids.isEmpty()) {
+        ids.addAll(withRetry("reserve transaction ids", () -> journal.nextTransactionIds(ID_BLOCK)));
+      }
+      return ids.poll();
+    }
+
+    /**
+     * Retries a journal call until it succeeds: a partition that cannot reach the
+     * database stalls rather than acknowledging transfers it could not persist.
+     * Gives up once the engine is stopping, or at once if the journal rejected the batch.
+     */
+    private <T> T withRetry(String what, Supplier<T> call) {
+      long backoff = INITIAL_RETRY_BACKOFF_MILLIS;
+      while (true) {
+        try {
+          return call.get();
+        } catch (BalanceJournal.BatchRejectedException e) {
+          throw e;
+        } catch (RuntimeException e) {
+          if (!running) {
+            throw e;
+          }
+          log.error("Balance engine partition {}: {} failed, retrying in {}ms: {}", index, what, backoff, e.getMessage());
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+          backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+        }
+      }
+    }
+  }
+
+  public static class EngineOverloadedException extends RuntimeException {
+    public EngineOverloadedException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.devara.paytrans.payment.balance;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * In-memory balance engine settings (paytrans.balance-engine.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.balance-engine")
+public class BalanceEngineProperties {
+
+  /**
+   * When true, atomic transfers are applied by the engine instead of by SQL
+   * updates. The engine must then be the only writer of account balances.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Writer threads; each owns the accounts whose number hashes to it.
+   */
+  private int partitions = 8;
+
+  /**
+   * Transfers that may wait in one partition's queue before new ones are rejected.
+   */
+  private int queueCapacity = 65_536;
+
+  /**
+   * Most postings journaled in one database transaction.
+   */
+  private int journalBatchSize = 500;
+
+  /**
+   * How long one journal write may take before it is retried.
+   */
+  private Duration journalTimeout = Duration.ofSeconds(10);
+}
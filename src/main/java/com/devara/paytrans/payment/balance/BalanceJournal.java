@@ -0,0 +1,46 @@
+package com.devara.paytrans.payment.balance;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Durable side of the balance engine. Methods block and are only called from
+ * engine writer threads.
+ */
+public interface BalanceJournal {
+
+  /**
+   * @return the account's stored balance, or null if the account does not exist
+   */
+  BigDecimal loadBalance(String accountNumber);
+
+  /**
+   * Reserves ids for transaction rows the engine will insert.
+   */
+  List<Long> nextTransactionIds(int count);
+
+  /**
+   * Writes the batch atomically; returns once it is committed. Appending a batch
+   * that is already committed, e.g. again after a timeout, changes nothing.
+   *
+   * @throws BatchRejectedException if the batch can never be written; other
+   *                                failures may succeed on retry
+   */
+  void append(JournalBatch batch);
+
+  /**
+   * Debits whose matching credit or reversal was never journaled, e.g. because
+   * the node stopped between the two legs of a cross-partition transfer.
+   */
+  List<Posting> unfinishedDebits();
+
+  /**
+   * The database refused the batch itself (e.g. a constraint violation), so
+   * retrying it cannot succeed.
+   */
+  class BatchRejectedException extends RuntimeException {
+    public BatchRejectedException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package com.devara.paytrans.payment.balance;
+
+import com.devara.paytrans.payment.transaction.Transaction;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything one engine partition writes in a single database transaction: new
+ * transfer rows, their postings and the latest balance of each touched account.
+ */
+public record JournalBatch(List<Transaction> transactions, List<Posting> postings,
+                           Map<String, BigDecimal> balances) {
+}
@@ -0,0 +1,14 @@
+package com.devara.paytrans.payment.balance;
+
+import java.math.BigDecimal;
+
+/**
+ * One balance movement, journaled as a transaction_ledger row.
+ *
+ * @param operation    DEBIT, CREDIT or REVERSAL (see TransactionLedger)
+ * @param counterparty the other account of the transfer
+ * @param balanceAfter balance of {@code accountNumber} once this posting applied
+ */
+public record Posting(long transactionId, String operation, String accountNumber, String counterparty,
+                      BigDecimal amount, BigDecimal balanceAfter) {
+}
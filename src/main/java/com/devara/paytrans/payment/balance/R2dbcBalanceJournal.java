@@ -0,0 +1,169 @@
+package com.devara.paytrans.payment.balance;
+
+import com.devara.paytrans.payment.transaction.LedgerBatchInserter;
+import com.devara.paytrans.payment.transaction.Transaction;
+import com.devara.paytrans.payment.transaction.TransactionLedger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journals balance engine batches to PostgreSQL: multi-row INSERTs for
+ * transactions and postings ({@link LedgerBatchInserter}) plus one
+ * UPDATE ... FROM (VALUES ...) for balances, in a single transaction.
+ */
+@Component
+@ConditionalOnProperty(prefix = "paytrans.balance-engine", name = "enabled", havingValue = "true")
+public class R2dbcBalanceJournal implements BalanceJournal {
+
+  private static final String CHANGED_BY = "BALANCE_ENGINE";
+
+  private final DatabaseClient db;
+  private final LedgerBatchInserter inserter;
+  private final TransactionalOperator transactionalOperator;
+  private final Duration timeout;
+
+  public R2dbcBalanceJournal(DatabaseClient db, LedgerBatchInserter inserter,
+                             TransactionalOperator transactionalOperator, BalanceEngineProperties properties) {
+    this.db = db;
+    this.inserter = inserter;
+    this.transactionalOperator = transactionalOperator;
+    this.timeout = properties.getJournalTimeout();
+  }
+
+  @Override
+  public BigDecimal loadBalance(String accountNumber) {
+    return db.sql("SELECT balance FROM accounts WHERE account_number = $1")
+        .bind(0, accountNumber)
+        .map(row -> row.get("balance", BigDecimal.class))
+        .one()
+        .block(timeout);
+  }
+
+  @Override
+  public List<Long> nextTransactionIds(int count) {
+    return inserter.reserveTransactionIds(count).block(timeout);
+  }
+
+  /**
+   * A batch counts as committed once its first posting is journaled: each
+   * posting's transaction id, operation and account occur only once.
+   */
+  @Override
+  public void append(JournalBatch batch) {
+    if (batch.postings().isEmpty()) {
+      return;
+    }
+    Posting first = batch.postings().get(0);
+    journaled(first)
+        .flatMap(done -> done ? Mono.<Void>empty() : write(batch))
+        .as(transactionalOperator::transactional)
+        // A retry can race the attempt it replaces; its commit is not a rejection
+        .onErrorResume(R2dbcBalanceJournal::isPermanent, error -> journaled(first)
+            .flatMap(done -> done ? Mono.<Void>empty() : Mono.error(new BatchRejectedException(
+                "Journal rejected batch of " + batch.postings().size() + " postings", error))))
+        .block(timeout);
+  }
+
+  @Override
+  public List<Posting> unfinishedDebits() {
+    return db.sql("""
+            SELECT d.transaction_id, d.account_number, d.counterparty, d.new_amount, d.balance_after
+              FROM transaction_ledger d
+             WHERE d.operation = 'DEBIT'
+               AND NOT EXISTS (SELECT 1 FROM transaction_ledger c
+                                WHERE c.transaction_id = d.transaction_id
+                                  AND c.operation IN ('CREDIT', 'REVERSAL'))
+            """)
+        .map(row -> new Posting(
+            row.get("transaction_id", Long.class),
+            TransactionLedger.OP_DEBIT,
+            row.get("account_number", String.class),
+            row.get("counterparty", String.class),
+            row.get("new_amount", BigDecimal.class),
+            row.get("balance_after", BigDecimal.class)))
+        .all()
+        .collectList()
+        .block(timeout);
+  }
+
+  private Mono<Void> write(JournalBatch batch) {
+    return inserter.insertTransactions(batch.transactions())
+        .then(inserter.insertLedger(batch.postings().stream().map(R2dbcBalanceJournal::ledgerRow).toList()))
+        .then(updateBalances(batch.balances()));
+  }
+
+  private Mono<Boolean> journaled(Posting posting) {
+    return db.sql("""
+            SELECT EXISTS (SELECT 1 FROM transaction_ledger
+                            WHERE transaction_id = $1 AND operation = $2 AND account_number = $3) AS journaled
+            """)
+        .bind(0, posting.transactionId())
+        .bind(1, posting.operation())
+        .bind(2, posting.accountNumber())
+        .map(row -> row.get("journaled", Boolean.class))
+        .one();
+  }
+
+  /**
+   * Errors about the statement or its data; lost connections and timeouts are
+   * worth retrying.
+   */
+  private static boolean isPermanent(Throwable error) {
+    return error instanceof NonTransientDataAccessException
+        && !(error instanceof DataAccessResourceFailureException)
+        && !(error instanceof NonTransientDataAccessResourceException);
+  }
+
+  private static TransactionLedger ledgerRow(Posting posting) {
+    return TransactionLedger.builder()
+        .transactionId(posting.transactionId())
+        .operation(posting.operation())
+        .newStatus(Transaction.STATUS_COMPLETED)
+        .newAmount(posting.amount())
+        .changedBy(CHANGED_BY)
+        .reason("TRANSFER: " + posting.accountNumber() + " / " + posting.counterparty())
+        .accountNumber(posting.accountNumber())
+        .counterparty(posting.counterparty())
+        .balanceAfter(posting.balanceAfter())
+        .build();
+  }
+
+  private Mono<Void> updateBalances(Map<String, BigDecimal> balances) {
+    List<Object> params = new ArrayList<>(balances.size() * 2);
+    StringBuilder rows = new StringBuilder();
+    for (Map.Entry<String, BigDecimal> entry : balances.entrySet()) {
+      if (!rows.isEmpty()) {
+        rows.append(", ");
+      }
+      rows.append("($").append(params.size() + 1).append("::varchar, $").append(params.size() + 2).append("::numeric)");
+      params.add(entry.getKey());
+      params.add(entry.getValue());
+    }
+    return execute("""
+        UPDATE accounts a
+           SET balance = v.balance, updated_at = now(), version = a.version + 1
+          FROM (VALUES %s) AS v(account_number, balance)
+         WHERE a.account_number = v.account_number
+        """.formatted(rows), params);
+  }
+
+  private Mono<Void> execute(String sql, List<Object> params) {
+    DatabaseClient.GenericExecuteSpec spec = db.sql(sql);
+    for (int i = 0; i < params.size(); i++) {
+      spec = spec.bind(i, params.get(i));
+    }
+    return spec.fetch().rowsUpdated().then();
+  }
+}
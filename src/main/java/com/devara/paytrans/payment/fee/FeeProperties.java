@@ -0,0 +1,26 @@
+package com.devara.paytrans.payment.fee;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Fee schedule settings (paytrans.fees.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.fees")
+public class FeeProperties {
+
+  /**
+   * Spring resource location of the schedule, e.g. file:/etc/paytrans/fee-schedule.json.
+   */
+  private String location = "classpath:fee-schedule.json";
+
+  /**
+   * How often to check the schedule for changes. Zero disables hot reload.
+   */
+  private Duration reloadInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,17 @@
+package com.devara.paytrans.payment.fee;
+
+import java.math.BigDecimal;
+
+/**
+ * Fee charged for one amount.
+ *
+ * @param percentageFee rate part, unrounded
+ * @param fixedFee      flat part of the matched tier
+ * @param totalFee      total after minimum/maximum clamping, rounded to 2 decimals
+ */
+public record FeeQuote(BigDecimal percentageFee, BigDecimal fixedFee, BigDecimal totalFee) {
+
+  public BigDecimal netAmount(BigDecimal grossAmount) {
+    return grossAmount.subtract(totalFee);
+  }
+}
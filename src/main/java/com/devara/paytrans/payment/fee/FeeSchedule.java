@@ -0,0 +1,152 @@
+package com.devara.paytrans.payment.fee;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable, compiled fee schedule.
+ *
+ * Rules are indexed by currency, then merchant class, and each rule's tiers are
+ * flattened into parallel arrays. A quote is two map lookups, a binary search
+ * over the tier bounds and a handful of BigDecimal operations against constants
+ * built at compile time.
+ *
+ * Lookup falls back to "*" for merchant class first, then for currency.
+ * Currency codes match regardless of case.
+ */
+public final class FeeSchedule {
+
+  public static final String ANY = "*";
+
+  private final Map<String, Map<String, TierTable>> tables;
+
+  private FeeSchedule(Map<String, Map<String, TierTable>> tables) {
+    this.tables = tables;
+  }
+
+  /**
+   * Validates and compiles a schedule definition.
+   *
+   * @throws IllegalArgumentException if a rule is empty or its last tier is bounded
+   */
+  public static FeeSchedule compile(FeeScheduleDefinition definition) {
+    Map<String, Map<String, TierTable>> tables = new HashMap<>();
+    for (FeeScheduleDefinition.Rule rule : definition.getRules()) {
+      TierTable table = TierTable.compile(rule);
+      Map<String, TierTable> byClass =
+          tables.computeIfAbsent(rule.getCurrency().toUpperCase(Locale.ROOT), c -> new HashMap<>());
+      if (byClass.put(rule.getMerchantClass(), table) != null) {
+        throw new IllegalArgumentException("Duplicate fee rule for " + describe(rule));
+      }
+    }
+
+    Map<String, Map<String, TierTable>> frozen = new HashMap<>();
+    tables.forEach((currency, byClass) -> frozen.put(currency, Map.copyOf(byClass)));
+    return new FeeSchedule(Map.copyOf(frozen));
+  }
+
+  public FeeQuote quote(BigDecimal amount, String currency, String merchantClass) {
+    TierTable table = find(tables.get(currency.toUpperCase(Locale.ROOT)), merchantClass);
+    if (table == null) {
+      table = find(tables.get(ANY), merchantClass);
+    }
+    if (table == null) {
+      throw new IllegalStateException(
+          "No fee rule for currency " + currency + " and merchant class " + merchantClass);
+    }
+    return table.quote(amount);
+  }
+
+  private static TierTable find(Map<String, TierTable> byClass, String merchantClass) {
+    if (byClass == null) {
+      return null;
+    }
+    TierTable table = byClass.get(merchantClass);
+    return table != null ? table : byClass.get(ANY);
+  }
+
+  private static String describe(FeeScheduleDefinition.Rule rule) {
+    return "currency=" + rule.getCurrency() + ", merchantClass=" + rule.getMerchantClass();
+  }
+
+  /**
+   * Tiers of one rule, sorted by upper bound, as parallel arrays.
+   */
+  private static final class TierTable {
+    private final BigDecimal[] upTo;
+    private final BigDecimal[] rate;
+    private final BigDecimal[] fixed;
+    private final BigDecimal[] minimum;
+    private final BigDecimal[] maximum;
+
+    private TierTable(int size) {
+      upTo = new BigDecimal[size];
+      rate = new BigDecimal[size];
+      fixed = new BigDecimal[size];
+      minimum = new BigDecimal[size];
+      maximum = new BigDecimal[size];
+    }
+
+    static TierTable compile(FeeScheduleDefinition.Rule rule) {
+      List<FeeScheduleDefinition.Tier> tiers = rule.getTiers().stream()
+          .sorted(Comparator.comparing(FeeScheduleDefinition.Tier::getUpTo,
+              Comparator.nullsLast(Comparator.naturalOrder())))
+          .toList();
+      if (tiers.isEmpty()) {
+        throw new IllegalArgumentException("Fee rule has no tiers: " + describe(rule));
+      }
+      if (tiers.get(tiers.size() - 1).getUpTo() != null) {
+        throw new IllegalArgumentException("Last fee tier must be unbounded: " + describe(rule));
+      }
+
+      TierTable table = new TierTable(tiers.size());
+      for (int i = 0; i < tiers.size(); i++) {
+        FeeScheduleDefinition.Tier tier = tiers.get(i);
+        if (i < tiers.size() - 1 && tier.getUpTo() == null) {
+          throw new IllegalArgumentException("Only the last fee tier may be unbounded: " + describe(rule));
+        }
+        table.upTo[i] = tier.getUpTo();
+        table.rate[i] = tier.getRate();
+        table.fixed[i] = tier.getFixed();
+        table.minimum[i] = tier.getMinimum();
+        table.maximum[i] = tier.getMaximum();
+      }
+      return table;
+    }
+
+    FeeQuote quote(BigDecimal amount) {
+      int i = tierIndex(amount);
+      BigDecimal percentageFee = amount.multiply(rate[i]);
+      BigDecimal total = percentageFee.add(fixed[i]);
+      if (minimum[i] != null && total.compareTo(minimum[i]) < 0) {
+        total = minimum[i];
+      }
+      if (maximum[i] != null && total.compareTo(maximum[i]) > 0) {
+        total = maximum[i];
+      }
+      return new FeeQuote(percentageFee, fixed[i], total.setScale(2, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * First tier whose inclusive upper bound is >= amount; the last tier is unbounded.
+     */
+    private int tierIndex(BigDecimal amount) {
+      int low = 0;
+      int high = upTo.length - 1;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (amount.compareTo(upTo[mid]) <= 0) {
+          high = mid;
+        } else {
+          low = mid + 1;
+        }
+      }
+      return low;
+    }
+  }
+}
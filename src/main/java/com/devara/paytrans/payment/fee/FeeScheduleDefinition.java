@@ -0,0 +1,43 @@
+package com.devara.paytrans.payment.fee;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fee schedule as written in the schedule file (see fee-schedule.json).
+ * Compiled into a {@link FeeSchedule} before use.
+ */
+@Data
+public class FeeScheduleDefinition {
+
+  private List<Rule> rules = new ArrayList<>();
+
+  /**
+   * Tiers for a currency / merchant class pair. "*" matches any value.
+   */
+  @Data
+  public static class Rule {
+    private String currency = FeeSchedule.ANY;
+    private String merchantClass = FeeSchedule.ANY;
+    private List<Tier> tiers = new ArrayList<>();
+  }
+
+  /**
+   * One amount band. The last tier of a rule must leave upTo empty (unbounded).
+   */
+  @Data
+  public static class Tier {
+    /** Inclusive upper bound of the band. */
+    private BigDecimal upTo;
+    /** Fraction of the amount, e.g. 0.025 for 2.5%. */
+    private BigDecimal rate = BigDecimal.ZERO;
+    private BigDecimal fixed = BigDecimal.ZERO;
+    /** Optional lower bound for the total fee. */
+    private BigDecimal minimum;
+    /** Optional cap for the total fee. */
+    private BigDecimal maximum;
+  }
+}
@@ -0,0 +1,109 @@
+package com.devara.paytrans.payment.fee;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the active {@link FeeSchedule} and reloads it when the schedule file changes.
+ *
+ * The schedule is compiled off the request path and swapped in atomically, so
+ * quotes never block and never see a half-loaded schedule. A schedule that fails
+ * to parse or compile is rejected and the previous one stays active.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FeeScheduleRegistry {
+
+  /**
+   * Merchant class used when the caller does not have one.
+   */
+  public static final String DEFAULT_MERCHANT_CLASS = "STANDARD";
+
+  private final FeeProperties properties;
+  private final ResourceLoader resourceLoader;
+  private final ObjectMapper objectMapper;
+
+  private final AtomicReference<FeeSchedule> current = new AtomicReference<>();
+  private volatile long loadedLastModified = -1;
+  private Disposable watcher;
+
+  @PostConstruct
+  public void start() {
+    // Fail startup if the initial schedule is invalid
+    reload();
+
+    Duration interval = properties.getReloadInterval();
+    if (!interval.isZero() && !interval.isNegative()) {
+      watcher = Flux.interval(interval, interval, Schedulers.boundedElastic())
+          .subscribe(tick -> reloadIfModified());
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (watcher != null) {
+      watcher.dispose();
+    }
+  }
+
+  public FeeQuote quote(BigDecimal amount, String currency, String merchantClass) {
+    return current.get().quote(amount, currency, merchantClass);
+  }
+
+  public FeeQuote quote(BigDecimal amount, String currency) {
+    return quote(amount, currency, DEFAULT_MERCHANT_CLASS);
+  }
+
+  /**
+   * Loads, compiles and activates the schedule from the configured location.
+   */
+  public FeeSchedule reload() {
+    Resource resource = resourceLoader.getResource(properties.getLocation());
+    long lastModified = lastModified(resource);
+    try (InputStream in = resource.getInputStream()) {
+      FeeSchedule schedule = FeeSchedule.compile(objectMapper.readValue(in, FeeScheduleDefinition.class));
+      current.set(schedule);
+      loadedLastModified = lastModified;
+      log.info("Fee schedule loaded from {}", properties.getLocation());
+      return schedule;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read fee schedule from " + properties.getLocation(), e);
+    }
+  }
+
+  private void reloadIfModified() {
+    try {
+      Resource resource = resourceLoader.getResource(properties.getLocation());
+      if (lastModified(resource) != loadedLastModified) {
+        reload();
+      }
+    } catch (RuntimeException e) {
+      log.warn("Fee schedule reload failed, keeping current schedule: {}", e.getMessage());
+    }
+  }
+
+  private static long lastModified(Resource resource) {
+    try {
+      return resource.lastModified();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+}
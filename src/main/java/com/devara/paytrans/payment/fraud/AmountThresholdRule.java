@@ -0,0 +1,29 @@
+package com.devara.paytrans.payment.fraud;
+
+import java.math.BigDecimal;
+
+/**
+ * Fires when the payment amount, converted to USD, reaches a fixed threshold.
+ */
+public class AmountThresholdRule implements FraudRule {
+
+  private final String name;
+  private final BigDecimal threshold;
+  private final double weight;
+
+  public AmountThresholdRule(BigDecimal threshold, double weight) {
+    this.name = "amount_over_" + threshold.toPlainString();
+    this.threshold = threshold;
+    this.weight = weight;
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public double score(FraudContext context) {
+    return context.amountUsd().compareTo(threshold) >= 0 ? weight : 0.0;
+  }
+}
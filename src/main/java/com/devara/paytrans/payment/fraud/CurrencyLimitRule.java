@@ -0,0 +1,34 @@
+package com.devara.paytrans.payment.fraud;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Fires when a single payment exceeds the limit set for its currency.
+ * Currencies without a configured limit never fire. Limits are keyed by
+ * upper-case code, the form TransactionService passes in.
+ */
+public class CurrencyLimitRule implements FraudRule {
+
+  private final Map<String, BigDecimal> limits;
+  private final double weight;
+
+  public CurrencyLimitRule(Map<String, BigDecimal> limits, double weight) {
+    this.limits = limits.entrySet().stream()
+        .collect(Collectors.toUnmodifiableMap(entry -> entry.getKey().toUpperCase(Locale.ROOT), Map.Entry::getValue));
+    this.weight = weight;
+  }
+
+  @Override
+  public String name() {
+    return "currency_limit";
+  }
+
+  @Override
+  public double score(FraudContext context) {
+    BigDecimal limit = limits.get(context.currency());
+    return limit != null && context.amount().compareTo(limit) > 0 ? weight : 0.0;
+  }
+}
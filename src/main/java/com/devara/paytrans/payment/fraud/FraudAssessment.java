@@ -0,0 +1,14 @@
+package com.devara.paytrans.payment.fraud;
+
+import java.util.Map;
+
+/**
+ * Result of running all fraud rules against a payment.
+ *
+ * @param score         total risk, capped at 1.0
+ * @param status        low_risk, medium_risk or high_risk
+ * @param blocked       true when the score reached the block threshold
+ * @param contributions risk added by each rule, keyed by rule name
+ */
+public record FraudAssessment(double score, String status, boolean blocked, Map<String, Double> contributions) {
+}
@@ -0,0 +1,16 @@
+package com.devara.paytrans.payment.fraud;
+
+import java.math.BigDecimal;
+
+/**
+ * Facts about a payment that fraud rules evaluate.
+ *
+ * @param accountNumber paying account, or null when the client did not send one
+ * @param amount        payment amount in its original currency
+ * @param currency      ISO currency code
+ * @param amountUsd     payment amount converted to USD, for currency-independent thresholds
+ * @param nowMillis     evaluation time, used by time-windowed rules
+ */
+public record FraudContext(String accountNumber, BigDecimal amount, String currency, BigDecimal amountUsd,
+                           long nowMillis) {
+}
@@ -0,0 +1,92 @@
+package com.devara.paytrans.payment.fraud;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process, rule-based fraud scoring.
+ *
+ * Rules are built once from {@link FraudProperties}. Scoring a payment runs each
+ * rule against in-memory state only (thresholds and velocity counters), so it
+ * completes in microseconds without I/O. The total score is the sum of rule
+ * contributions, capped at 1.0.
+ */
+@Component
+public class FraudEngine {
+
+  private final List<FraudRule> rules;
+  private final double blockThreshold;
+  private final double reviewThreshold;
+
+  @Autowired
+  public FraudEngine(FraudProperties properties) {
+    this(buildRules(properties), properties.getBlockThreshold(), properties.getReviewThreshold());
+  }
+
+  FraudEngine(List<FraudRule> rules, double blockThreshold, double reviewThreshold) {
+    // Contributions are keyed by rule name, so a duplicate would hide the other's score
+    Set<String> names = new HashSet<>();
+    for (FraudRule rule : rules) {
+      if (!names.add(rule.name())) {
+        throw new IllegalArgumentException("Duplicate fraud rule: " + rule.name());
+      }
+    }
+    this.rules = List.copyOf(rules);
+    this.blockThreshold = blockThreshold;
+    this.reviewThreshold = reviewThreshold;
+  }
+
+  public FraudAssessment assess(String accountNumber, BigDecimal amount, String currency, BigDecimal amountUsd) {
+    return assess(new FraudContext(accountNumber, amount, currency, amountUsd, System.currentTimeMillis()));
+  }
+
+  public FraudAssessment assess(FraudContext context) {
+    Map<String, Double> contributions = new LinkedHashMap<>(rules.size() * 2);
+    double total = 0.0;
+    for (FraudRule rule : rules) {
+      double contribution = rule.score(context);
+      contributions.put(rule.name(), contribution);
+      total += contribution;
+    }
+
+    double score = Math.min(1.0, total);
+    boolean blocked = score >= blockThreshold;
+    String status = blocked ? "high_risk" : score >= reviewThreshold ? "medium_risk" : "low_risk";
+    return new FraudAssessment(score, status, blocked, contributions);
+  }
+
+  public List<FraudRule> rules() {
+    return rules;
+  }
+
+  private static List<FraudRule> buildRules(FraudProperties properties) {
+    List<FraudRule> rules = new ArrayList<>();
+    for (FraudProperties.AmountThreshold threshold : properties.getAmountThresholds()) {
+      rules.add(new AmountThresholdRule(threshold.getAmount(), threshold.getWeight()));
+    }
+    if (!properties.getCurrencyLimits().isEmpty()) {
+      rules.add(new CurrencyLimitRule(properties.getCurrencyLimits(), properties.getCurrencyLimitWeight()));
+    }
+    for (FraudProperties.Velocity velocity : properties.getVelocity()) {
+      rules.add(new VelocityRule(velocity.getWindow(), velocity.getMaxCount(), velocity.getWeight()));
+    }
+    return rules;
+  }
+
+  /**
+   * Thrown when a payment's fraud score reaches the block threshold.
+   */
+  public static class FraudRejectedException extends RuntimeException {
+    public FraudRejectedException(String message) {
+      super(message);
+    }
+  }
+}
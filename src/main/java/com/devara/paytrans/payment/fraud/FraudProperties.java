@@ -0,0 +1,58 @@
+package com.devara.paytrans.payment.fraud;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fraud rule configuration (paytrans.fraud.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.fraud")
+public class FraudProperties {
+
+  /**
+   * Score at or above which a payment is blocked.
+   */
+  private double blockThreshold = 0.8;
+
+  /**
+   * Score at or above which a payment is reported as medium risk.
+   */
+  private double reviewThreshold = 0.2;
+
+  /**
+   * Thresholds on the USD-converted amount.
+   */
+  private List<AmountThreshold> amountThresholds = new ArrayList<>();
+
+  /**
+   * Maximum single payment per currency.
+   */
+  private Map<String, BigDecimal> currencyLimits = new HashMap<>();
+
+  private double currencyLimitWeight = 0.5;
+
+  private List<Velocity> velocity = new ArrayList<>();
+
+  @Data
+  public static class AmountThreshold {
+    private BigDecimal amount;
+    private double weight;
+  }
+
+  @Data
+  public static class Velocity {
+    private Duration window;
+    private int maxCount;
+    private double weight;
+  }
+}
@@ -0,0 +1,18 @@
+package com.devara.paytrans.payment.fraud;
+
+/**
+ * A single fraud scoring rule.
+ * Rules run in-process on every payment, so they must not do I/O.
+ */
+public interface FraudRule {
+
+  /**
+   * Stable rule name, used as the span attribute suffix (fraud.rule.&lt;name&gt;).
+   */
+  String name();
+
+  /**
+   * Risk this rule adds for the payment; 0.0 when the rule does not fire.
+   */
+  double score(FraudContext context);
+}
@@ -0,0 +1,109 @@
+package com.devara.paytrans.payment.fraud;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, per-key event counter over a sliding time window.
+ *
+ * The window is split into a ring of time buckets. Each bucket is a single long
+ * holding both the bucket's epoch (high 40 bits) and its count (low 24 bits).
+ * A stale bucket is therefore reset and incremented in one CAS, with no lock
+ * and no lost updates at bucket rollover.
+ *
+ * Keys idle for a full window are purged lazily, at most once per window.
+ */
+public class SlidingWindowCounter {
+
+  private static final int COUNT_BITS = 24;
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+  private final int buckets;
+  private final long bucketMillis;
+  private final long windowMillis;
+  private final ConcurrentHashMap<String, AtomicLongArray> windows = new ConcurrentHashMap<>();
+  private final AtomicLong lastPurgeMillis = new AtomicLong();
+
+  public SlidingWindowCounter(Duration window, int buckets) {
+    this.buckets = buckets;
+    this.bucketMillis = Math.max(1, window.toMillis() / buckets);
+    this.windowMillis = bucketMillis * buckets;
+  }
+
+  /**
+   * Records one event for the key and returns the number of events in the window,
+   * including this one.
+   */
+  public long incrementAndCount(String key, long nowMillis) {
+    AtomicLongArray slots = windows.computeIfAbsent(key, k -> new AtomicLongArray(buckets));
+    long epoch = nowMillis / bucketMillis;
+    int index = (int) (epoch % buckets);
+
+    long current;
+    long next;
+    do {
+      current = slots.get(index);
+      if (epochOf(current) != epoch) {
+        next = (epoch << COUNT_BITS) | 1;
+      } else if ((current & COUNT_MASK) == COUNT_MASK) {
+        next = current; // saturated
+      } else {
+        next = current + 1;
+      }
+    } while (!slots.compareAndSet(index, current, next));
+
+    purgeIdle(nowMillis);
+    return sum(slots, epoch);
+  }
+
+  /**
+   * Number of events for the key in the window ending now, without recording one.
+   */
+  public long count(String key, long nowMillis) {
+    AtomicLongArray slots = windows.get(key);
+    return slots == null ? 0 : sum(slots, nowMillis / bucketMillis);
+  }
+
+  /**
+   * Number of keys currently tracked.
+   */
+  public int size() {
+    return windows.size();
+  }
+
+  private long sum(AtomicLongArray slots, long epoch) {
+    long oldestLive = epoch - buckets;
+    long total = 0;
+    for (int i = 0; i < buckets; i++) {
+      long slot = slots.get(i);
+      long slotEpoch = epochOf(slot);
+      if (slotEpoch > oldestLive && slotEpoch <= epoch) {
+        total += slot & COUNT_MASK;
+      }
+    }
+    return total;
+  }
+
+  private void purgeIdle(long nowMillis) {
+    long last = lastPurgeMillis.get();
+    if (nowMillis - last < windowMillis || !lastPurgeMillis.compareAndSet(last, nowMillis)) {
+      return;
+    }
+    long oldestLive = nowMillis / bucketMillis - buckets;
+    windows.values().removeIf(slots -> newestEpoch(slots) <= oldestLive);
+  }
+
+  private long newestEpoch(AtomicLongArray slots) {
+    long newest = 0;
+    for (int i = 0; i < buckets; i++) {
+      newest = Math.max(newest, epochOf(slots.get(i)));
+    }
+    return newest;
+  }
+
+  private static long epochOf(long slot) {
+    return slot >>> COUNT_BITS;
+  }
+}
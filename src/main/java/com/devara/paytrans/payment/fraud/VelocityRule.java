@@ -0,0 +1,40 @@
+package com.devara.paytrans.payment.fraud;
+
+import java.time.Duration;
+
+/**
+ * Fires when an account makes more than maxCount payments within the window.
+ * Every evaluation counts as one attempt, including payments that end up blocked.
+ * Payments without an account number are not tracked.
+ */
+public class VelocityRule implements FraudRule {
+
+  private static final int BUCKETS_PER_WINDOW = 10;
+
+  private final String name;
+  private final int maxCount;
+  private final double weight;
+  private final SlidingWindowCounter counter;
+
+  public VelocityRule(Duration window, int maxCount, double weight) {
+    // The limit is part of the name so two rules over the same window stay apart
+    this.name = "velocity_" + maxCount + "_per_" + window.toSeconds() + "s";
+    this.maxCount = maxCount;
+    this.weight = weight;
+    this.counter = new SlidingWindowCounter(window, BUCKETS_PER_WINDOW);
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public double score(FraudContext context) {
+    if (context.accountNumber() == null) {
+      return 0.0;
+    }
+    long count = counter.incrementAndCount(context.accountNumber(), context.nowMillis());
+    return count > maxCount ? weight : 0.0;
+  }
+}
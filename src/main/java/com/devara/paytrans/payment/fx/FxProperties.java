@@ -0,0 +1,43 @@
+package com.devara.paytrans.payment.fx;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * FX rate cache settings (paytrans.fx.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.fx")
+public class FxProperties {
+
+  /**
+   * Which FxRateProvider to use. Only "stub" ships with the service.
+   */
+  private String provider = "stub";
+
+  /**
+   * How long a snapshot is considered fresh.
+   */
+  private Duration ttl = Duration.ofSeconds(60);
+
+  /**
+   * How long before expiry the background refresh runs, so fresh rates are
+   * normally in place before the old ones expire.
+   */
+  private Duration refreshAhead = Duration.ofSeconds(10);
+
+  /**
+   * How long a stale snapshot may still be served while the provider is failing.
+   * Past this age, conversions fail instead of using outdated rates.
+   */
+  private Duration maxStale = Duration.ofHours(1);
+
+  /**
+   * Longest one provider fetch may take; a hung fetch counts as a failed refresh.
+   */
+  private Duration fetchTimeout = Duration.ofSeconds(5);
+}
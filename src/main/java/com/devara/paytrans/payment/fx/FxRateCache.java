@@ -0,0 +1,169 @@
+package com.devara.paytrans.payment.fx;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process FX rate cache in front of an {@link FxRateProvider}.
+ *
+ * - Reads are a lock-free lookup in the current immutable {@link FxRateSnapshot}.
+ * - A background loop refreshes the snapshot ahead of its TTL (refresh-ahead).
+ * - If a read finds an expired snapshot, it triggers one async refresh and
+ *   still answers from the stale snapshot (stale-while-revalidate).
+ * - When the provider fails, the last good snapshot is kept until it exceeds maxStale.
+ */
+@Component
+@Slf4j
+public class FxRateCache {
+
+  private final FxRateProvider provider;
+  private final FxProperties properties;
+  private final Clock clock;
+
+  private final AtomicReference<FxRateSnapshot> snapshot = new AtomicReference<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
+  private final AtomicReference<Mono<FxRateSnapshot>> firstLoad = new AtomicReference<>();
+  private Disposable refreshLoop;
+
+  @Autowired
+  public FxRateCache(FxRateProvider provider, FxProperties properties) {
+    this(provider, properties, Clock.systemUTC());
+  }
+
+  FxRateCache(FxRateProvider provider, FxProperties properties, Clock clock) {
+    this.provider = provider;
+    this.properties = properties;
+    this.clock = clock;
+  }
+
+  @PostConstruct
+  public void start() {
+    Duration period = properties.getTtl().minus(properties.getRefreshAhead());
+    if (period.isNegative() || period.isZero()) {
+      period = properties.getTtl();
+    }
+    refreshLoop = Flux.interval(Duration.ZERO, period)
+        // A tick during a slow refresh is skipped rather than overflowing the interval
+        .onBackpressureDrop()
+        .concatMap(tick -> refresh().onErrorResume(error -> Mono.empty()), 1)
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (refreshLoop != null) {
+      refreshLoop.dispose();
+    }
+  }
+
+  /**
+   * Returns the USD rate for the currency.
+   * Served from memory unless no snapshot has been loaded yet.
+   */
+  public Mono<BigDecimal> rateToUsd(String currency) {
+    FxRateSnapshot current = snapshot.get();
+    if (current == null) {
+      // Cold start: nothing to serve yet, so wait for the first fetch
+      return firstLoad().flatMap(loaded -> lookup(loaded, currency));
+    }
+
+    Duration age = current.age(clock.instant());
+    if (age.compareTo(properties.getTtl()) > 0) {
+      if (age.compareTo(properties.getMaxStale()) > 0) {
+        return Mono.error(new StaleRatesException(
+            "FX rates are " + age.toSeconds() + "s old, beyond the allowed staleness"));
+      }
+      refreshInBackground();
+    }
+    return lookup(current, currency);
+  }
+
+  /**
+   * Fetches a new snapshot and swaps it in.
+   * On failure, keeps the previous snapshot and signals the error.
+   */
+  Mono<FxRateSnapshot> refresh() {
+    return provider.fetchRates()
+        // Bounds the fetch so a hung provider cannot hold refreshing (or the first load) forever
+        .timeout(properties.getFetchTimeout())
+        .map(rates -> new FxRateSnapshot(rates, clock.instant()))
+        .doOnNext(fresh -> {
+          snapshot.set(fresh);
+          log.debug("FX rates refreshed: {} currencies", fresh.ratesToUsd().size());
+        })
+        .doOnError(error -> log.warn("FX rate refresh failed, keeping previous rates: {}", error.getMessage()));
+  }
+
+  /**
+   * The first fetch, shared by every request that arrives before it completes.
+   * Cleared once it finishes, so a failed first fetch is retried by the next request.
+   */
+  private Mono<FxRateSnapshot> firstLoad() {
+    Mono<FxRateSnapshot> pending = firstLoad.get();
+    if (pending != null) {
+      return pending;
+    }
+    FxRateSnapshot loaded = snapshot.get();
+    if (loaded != null) {
+      return Mono.just(loaded);
+    }
+    Mono<FxRateSnapshot> fetch = Mono.defer(this::refresh)
+        .doFinally(signal -> firstLoad.set(null))
+        .cache();
+    return firstLoad.compareAndSet(null, fetch) ? fetch : firstLoad();
+  }
+
+  /**
+   * Starts a refresh unless one is already running.
+   */
+  private void refreshInBackground() {
+    if (refreshing.compareAndSet(false, true)) {
+      refresh()
+          .doFinally(signal -> refreshing.set(false))
+          .subscribe(fresh -> { }, error -> { });
+    }
+  }
+
+  private static Mono<BigDecimal> lookup(FxRateSnapshot rates, String currency) {
+    BigDecimal rate = rates.rateToUsd(currency);
+    if (rate == null) {
+      rate = rates.rateToUsd(currency.toUpperCase(Locale.ROOT));
+    }
+    if (rate == null) {
+      return Mono.error(new UnsupportedCurrencyException("No FX rate for currency: " + currency));
+    }
+    return Mono.just(rate);
+  }
+
+  /**
+   * Current snapshot, or null before the first successful fetch.
+   */
+  public FxRateSnapshot currentSnapshot() {
+    return snapshot.get();
+  }
+
+  public static class UnsupportedCurrencyException extends RuntimeException {
+    public UnsupportedCurrencyException(String message) {
+      super(message);
+    }
+  }
+
+  public static class StaleRatesException extends RuntimeException {
+    public StaleRatesException(String message) {
+      super(message);
+    }
+  }
+}
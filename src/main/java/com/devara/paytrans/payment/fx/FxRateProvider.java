@@ -0,0 +1,21 @@
+package com.devara.paytrans.payment.fx;
+
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Source of foreign exchange rates.
+ *
+ * Implementations are called only by {@link FxRateCache} in the background,
+ * never on the payment hot path, so they are free to do remote I/O.
+ */
+public interface FxRateProvider {
+
+  /**
+   * Fetches the current rates, keyed by ISO currency code.
+   * Each value is the amount of USD one unit of that currency buys.
+   */
+  Mono<Map<String, BigDecimal>> fetchRates();
+}
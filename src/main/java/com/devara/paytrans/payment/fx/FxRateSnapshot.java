@@ -0,0 +1,29 @@
+package com.devara.paytrans.payment.fx;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Immutable set of rates fetched together.
+ * {@link FxRateCache} swaps whole snapshots atomically, so readers never see
+ * a half-updated rate table and never need a lock.
+ */
+public record FxRateSnapshot(Map<String, BigDecimal> ratesToUsd, Instant fetchedAt) {
+
+  public FxRateSnapshot {
+    ratesToUsd = Map.copyOf(ratesToUsd);
+  }
+
+  /**
+   * @return the USD rate for the currency, or null if it is not quoted
+   */
+  public BigDecimal rateToUsd(String currency) {
+    return ratesToUsd.get(currency);
+  }
+
+  public Duration age(Instant now) {
+    return Duration.between(fetchedAt, now);
+  }
+}
@@ -0,0 +1,34 @@
+package com.devara.paytrans.payment.fx;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for an external FX rate API.
+ * Returns fixed mock rates after a simulated network delay (30-100ms).
+ * Active unless another provider is selected via paytrans.fx.provider.
+ */
+@Component
+@ConditionalOnProperty(prefix = "paytrans.fx", name = "provider", havingValue = "stub", matchIfMissing = true)
+public class StubFxRateProvider implements FxRateProvider {
+
+  private static final Map<String, BigDecimal> MOCK_RATES = Map.of(
+      "USD", BigDecimal.ONE,
+      "EUR", BigDecimal.valueOf(1.10),
+      "GBP", BigDecimal.valueOf(1.27),
+      "JPY", BigDecimal.valueOf(0.0091),
+      "IDR", BigDecimal.valueOf(0.000064)
+  );
+
+  @Override
+  public Mono<Map<String, BigDecimal>> fetchRates() {
+    return Mono.delay(Duration.ofMillis(30 + ThreadLocalRandom.current().nextInt(70)))
+        .thenReturn(MOCK_RATES);
+  }
+}
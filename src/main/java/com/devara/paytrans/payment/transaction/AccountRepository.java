@@ -1,9 +1,14 @@
 package com.devara.paytrans.payment.transaction;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
+
 @Repository
 public interface AccountRepository extends ReactiveCrudRepository<Account, Long> {
   
@@ -11,4 +16,203 @@ public interface AccountRepository extends ReactiveCrudRepository<Account, Long>
    * Find account by account number for transfers.
    */
   Mono<Account> findByAccountNumber(String accountNumber);
+
+  /**
+   * Moves {@code amount} from one account to another in a single statement.
+   *
+   * Both rows are locked in account-number order, so concurrent transfers in
+   * opposite directions cannot deadlock. The debit only applies while the locked
+   * balance covers it, and the credit only if the debit applied. Versions are
+   * bumped so entity saves holding a stale copy still fail optimistically, and
+   * each account's posting_seq advances for the leg's {@link LedgerPosting}.
+   *
+   * The accounts must differ: Postgres cannot update one row twice per statement.
+   */
+  @Query("""
+      WITH locked AS (
+             SELECT id, account_number, balance FROM accounts
+              WHERE account_number IN (:fromAccount, :toAccount)
+              ORDER BY account_number
+                FOR UPDATE),
+           debited AS (
+             UPDATE accounts a
+                SET balance = a.balance - :amount, posting_seq = a.posting_seq + 1,
+                    updated_at = now(), version = a.version + 1
+               FROM locked l
+              WHERE a.id = l.id
+                AND l.account_number = :fromAccount
+                AND l.balance >= :amount
+                AND EXISTS (SELECT 1 FROM locked WHERE account_number = :toAccount)
+             RETURNING a.balance, a.posting_seq),
+           credited AS (
+             UPDATE accounts a
+                SET balance = a.balance + :amount, posting_seq = a.posting_seq + 1,
+                    updated_at = now(), version = a.version + 1
+               FROM locked l
+              WHERE a.id = l.id
+                AND l.account_number = :toAccount
+                AND EXISTS (SELECT 1 FROM debited)
+             RETURNING a.balance, a.posting_seq)
+      SELECT EXISTS (SELECT 1 FROM locked WHERE account_number = :fromAccount) AS from_exists,
+             EXISTS (SELECT 1 FROM locked WHERE account_number = :toAccount) AS to_exists,
+             (SELECT balance FROM locked WHERE account_number = :fromAccount) AS available,
+             (SELECT balance FROM debited) AS from_balance,
+             (SELECT balance FROM credited) AS to_balance,
+             (SELECT posting_seq FROM debited) AS from_posting_seq,
+             (SELECT posting_seq FROM credited) AS to_posting_seq
+      """)
+  Mono<TransferOutcome> transfer(String fromAccount, String toAccount, BigDecimal amount);
+
+  /**
+   * Balance of the account as clients see it: the account row plus all of its
+   * stripes. Empty if the account does not exist.
+   */
+  @Query("""
+      SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripes s
+                                    WHERE s.account_number = a.account_number), 0)
+        FROM accounts a
+       WHERE a.account_number = :accountNumber
+      """)
+  Mono<BigDecimal> logicalBalance(String accountNumber);
+
+  /**
+   * Guarded debit of an unstriped account; empty if it is missing or short of funds.
+   */
+  @Query("""
+      UPDATE accounts
+         SET balance = balance - :amount, posting_seq = posting_seq + 1, updated_at = now(), version = version + 1
+       WHERE account_number = :accountNumber AND balance >= :amount
+      RETURNING balance, posting_seq
+      """)
+  Mono<PostedBalance> debit(String accountNumber, BigDecimal amount);
+
+  /**
+   * Credit of an unstriped account; empty if it is missing.
+   */
+  @Query("""
+      UPDATE accounts
+         SET balance = balance + :amount, posting_seq = posting_seq + 1, updated_at = now(), version = version + 1
+       WHERE account_number = :accountNumber
+      RETURNING balance, posting_seq
+      """)
+  Mono<PostedBalance> credit(String accountNumber, BigDecimal amount);
+
+  /**
+   * Creates stripes 0..stripes-1 for the account; existing stripes are kept.
+   */
+  @Modifying
+  @Query("""
+      INSERT INTO account_stripes (account_number, stripe)
+      SELECT :accountNumber, s FROM generate_series(0, :stripes - 1) s
+      ON CONFLICT (account_number, stripe) DO NOTHING
+      """)
+  Mono<Integer> seedStripes(String accountNumber, int stripes);
+
+  /**
+   * Moves the whole account-row balance into stripe 0. The logical balance is unchanged.
+   */
+  @Modifying
+  @Query("""
+      WITH locked AS (
+             SELECT id, balance FROM accounts WHERE account_number = :accountNumber FOR UPDATE),
+           drained AS (
+             UPDATE accounts a
+                SET balance = 0, updated_at = now(), version = a.version + 1
+               FROM locked l
+              WHERE a.id = l.id AND l.balance > 0
+             RETURNING l.balance)
+      UPDATE account_stripes
+         SET balance = balance + (SELECT balance FROM drained), updated_at = now()
+       WHERE account_number = :accountNumber AND stripe = 0 AND EXISTS (SELECT 1 FROM drained)
+      """)
+  Mono<Integer> moveBalanceToStripes(String accountNumber);
+
+  /**
+   * Moves every stripe back into the account row, for accounts no longer striped.
+   * Locks the account row before the stripes, like {@link #sweepStripes}.
+   */
+  @Modifying
+  @Query("""
+      WITH acct AS (
+             SELECT id FROM accounts WHERE account_number = :accountNumber FOR UPDATE),
+           locked AS (
+             SELECT stripe, balance FROM account_stripes
+              WHERE account_number = :accountNumber AND balance > 0 AND EXISTS (SELECT 1 FROM acct)
+              ORDER BY stripe
+                FOR UPDATE),
+           drained AS (
+             UPDATE account_stripes s
+                SET balance = 0, updated_at = now()
+               FROM locked l
+              WHERE s.account_number = :accountNumber AND s.stripe = l.stripe
+             RETURNING l.balance)
+      UPDATE accounts a
+         SET balance = a.balance + (SELECT SUM(balance) FROM drained), updated_at = now(), version = a.version + 1
+        FROM acct
+       WHERE a.id = acct.id AND EXISTS (SELECT 1 FROM drained)
+      """)
+  Mono<Integer> foldStripes(String accountNumber);
+
+  @Query("SELECT DISTINCT account_number FROM account_stripes WHERE balance > 0")
+  Flux<String> stripedAccountsWithFunds();
+
+  /**
+   * Credits one stripe; empty if the stripe does not exist.
+   */
+  @Query("""
+      UPDATE account_stripes
+         SET balance = balance + :amount, updated_at = now()
+       WHERE account_number = :accountNumber AND stripe = :stripe
+      RETURNING balance
+      """)
+  Mono<BigDecimal> creditStripe(String accountNumber, int stripe, BigDecimal amount);
+
+  /**
+   * Guarded debit of one stripe; empty if the stripe alone cannot cover it.
+   */
+  @Query("""
+      UPDATE account_stripes
+         SET balance = balance - :amount, updated_at = now()
+       WHERE account_number = :accountNumber AND stripe = :stripe AND balance >= :amount
+      RETURNING balance
+      """)
+  Mono<BigDecimal> debitStripe(String accountNumber, int stripe, BigDecimal amount);
+
+  /**
+   * Sweeps the funds of the account row and of all other stripes into
+   * {@code stripe} and returns its new balance. The row can still receive funds
+   * after striping, e.g. from nodes that have not striped the account yet, so
+   * debits must be able to reach them. Locks the account row, then every stripe
+   * in stripe order, so it is reserved for debits the target stripe could not
+   * cover on its own.
+   */
+  @Query("""
+      WITH acct AS (
+             SELECT id, balance FROM accounts WHERE account_number = :accountNumber FOR UPDATE),
+           row_drained AS (
+             UPDATE accounts a
+                SET balance = 0, updated_at = now(), version = a.version + 1
+               FROM acct l
+              WHERE a.id = l.id AND l.balance > 0
+             RETURNING l.balance),
+           locked AS (
+             SELECT stripe, balance FROM account_stripes
+              WHERE account_number = :accountNumber AND EXISTS (SELECT 1 FROM acct)
+              ORDER BY stripe
+                FOR UPDATE),
+           drained AS (
+             UPDATE account_stripes s
+                SET balance = 0, updated_at = now()
+               FROM locked l
+              WHERE s.account_number = :accountNumber AND s.stripe = l.stripe
+                AND l.stripe <> :stripe AND l.balance > 0
+             RETURNING l.balance)
+      UPDATE account_stripes
+         SET balance = balance + COALESCE((SELECT SUM(balance) FROM drained), 0)
+                               + COALESCE((SELECT balance FROM row_drained), 0),
+             updated_at = now()
+       WHERE account_number = :accountNumber AND stripe = :stripe
+      RETURNING balance
+      """)
+  Mono<BigDecimal> sweepStripes(String accountNumber, int stripe);
 }
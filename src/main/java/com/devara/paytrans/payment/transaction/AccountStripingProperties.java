@@ -0,0 +1,28 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Striped balances for hot accounts (paytrans.account-striping.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.account-striping")
+public class AccountStripingProperties {
+
+  /**
+   * Account numbers whose balance is spread over stripes. Accounts removed from
+   * this list have their stripes folded back into the account row at startup.
+   */
+  private List<String> accounts = new ArrayList<>();
+
+  /**
+   * Sub-balance rows per striped account.
+   */
+  private int stripes = 16;
+}
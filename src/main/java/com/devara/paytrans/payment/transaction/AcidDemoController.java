@@ -1,18 +1,24 @@
 package com.devara.paytrans.payment.transaction;
 
+import com.devara.paytrans.payment.balance.BalanceEngine;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,12 +26,15 @@ import java.util.Map;
  * 
  * Endpoints:
  * - POST /api/v1/acid/atomicity/transfer      - Atomic money transfer
+ * - POST /api/v1/acid/atomicity/settlement    - Netted batch of transfers
  * - POST /api/v1/acid/atomicity/multistep     - Multi-step with optional failure
  * - POST /api/v1/acid/consistency             - Validated transaction
  * - PUT  /api/v1/acid/isolation/{id}          - Optimistic locking update
  * - POST /api/v1/acid/isolation/serializable  - Serializable isolation
  * - POST /api/v1/acid/durability              - Transaction with audit
  * - GET  /api/v1/acid/durability/audit/{id}   - Get audit trail
+ * - GET  /api/v1/acid/durability/accounts/{n}/balance   - Balance as of a time
+ * - GET  /api/v1/acid/durability/accounts/{n}/statement - Postings over a time range
  */
 @RestController
 @RequestMapping("/api/v1/acid")
@@ -33,7 +42,10 @@ import java.util.Map;
 @Slf4j
 public class AcidDemoController {
 
+  private static final int MAX_STATEMENT_ROWS = 1000;
+
   private final AcidTransactionService acidService;
+  private final BatchSettlementService settlementService;
 
   // ============================================================
   // ATOMICITY ENDPOINTS
@@ -64,6 +76,57 @@ public class AcidDemoController {
                 "error", e.getMessage(),
                 "principle", "ATOMICITY - Transfer rolled back due to insufficient funds"
             ))))
+        .onErrorResume(BalanceEngine.EngineOverloadedException.class, e ->
+            Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                "success", false,
+                "error", e.getMessage()
+            ))))
+        .onErrorResume(ConcurrencyFailureException.class, e ->
+            Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "success", false,
+                "error", "Accounts are busy, please retry",
+                "principle", "ISOLATION - Conflicting transfers still collided after server-side retries"
+            ))))
+        .onErrorResume(e -> 
+            Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "error", e.getMessage(),
+                "principle", "ATOMICITY - All changes rolled back on failure"
+            ))));
+  }
+
+  /**
+   * ATOMICITY: Settle a batch of transfers in one transaction.
+   * Balances move once per account by its net position; every transfer keeps
+   * its own transaction and ledger entries.
+   */
+  @PostMapping("/atomicity/settlement")
+  public Mono<ResponseEntity<Object>> settleBatch(@Valid @RequestBody SettlementRequest request) {
+    log.info("API: Settlement batch of {} transfers received", request.getTransfers().size());
+    
+    List<SettlementTransfer> transfers = request.getTransfers().stream()
+        .map(t -> new SettlementTransfer(t.getFromAccount(), t.getToAccount(), t.getAmount()))
+        .toList();
+    
+    return settlementService.settle(transfers)
+        .map(result -> ResponseEntity.status(HttpStatus.CREATED).body((Object) Map.of(
+            "success", true,
+            "message", "Batch settled atomically",
+            "transactionIds", result.transactionIds(),
+            "netPositions", result.netPositions(),
+            "principle", "ATOMICITY - All transfers in the batch committed together"
+        )))
+        .onErrorResume(e -> e instanceof Account.InsufficientFundsException || e instanceof IllegalArgumentException, e ->
+            Mono.just(ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", e.getMessage(),
+                "principle", "ATOMICITY - No transfer in the batch was applied"
+            ))))
+        .onErrorResume(ConcurrencyFailureException.class, e ->
+            Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "success", false,
+                "error", "Accounts are busy, please retry"
+            ))))
         .onErrorResume(e -> 
             Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                 "success", false,
@@ -213,6 +276,57 @@ public class AcidDemoController {
         )));
   }
 
+  /**
+   * DURABILITY: Balance of an account as of a point in time.
+   */
+  @GetMapping("/durability/accounts/{accountNumber}/balance")
+  public Mono<ResponseEntity<Object>> balanceAsOf(@PathVariable String accountNumber,
+                                                  @RequestParam Instant asOf) {
+    log.info("API: Balance of {} as of {}", accountNumber, asOf);
+    
+    return acidService.balanceAsOf(accountNumber, asOf)
+        .map(balance -> ResponseEntity.ok((Object) Map.of(
+            "accountNumber", accountNumber,
+            "asOf", asOf,
+            "balance", balance,
+            "principle", "DURABILITY - Running balances kept with every posting"
+        )))
+        .onErrorResume(AcidTransactionService.BalanceHistoryUnavailableException.class, e ->
+            Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "success", false,
+                "error", e.getMessage()
+            ))))
+        .onErrorResume(IllegalArgumentException.class, e ->
+            Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "error", e.getMessage()
+            ))));
+  }
+
+  /**
+   * DURABILITY: Statement of an account's postings over a time range.
+   */
+  @GetMapping("/durability/accounts/{accountNumber}/statement")
+  public Mono<ResponseEntity<Object>> statement(@PathVariable String accountNumber,
+                                                @RequestParam Instant from,
+                                                @RequestParam Instant to,
+                                                @RequestParam(defaultValue = "100") int limit) {
+    log.info("API: Statement of {} from {} to {}", accountNumber, from, to);
+    
+    return acidService.statement(accountNumber, from, to, Math.clamp(limit, 1, MAX_STATEMENT_ROWS))
+        .collectList()
+        .map(postings -> ResponseEntity.ok((Object) Map.of(
+            "accountNumber", accountNumber,
+            "postings", postings,
+            "principle", "DURABILITY - Complete history preserved for recovery"
+        )))
+        .onErrorResume(IllegalArgumentException.class, e ->
+            Mono.just(ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", e.getMessage()
+            ))));
+  }
+
   // ============================================================
   // REQUEST DTOs
   // ============================================================
@@ -220,9 +334,11 @@ public class AcidDemoController {
   @Data
   public static class TransferRequest {
     @NotBlank(message = "Source account is required")
+    @Size(max = 20, message = "Source account must be at most 20 characters")
     private String fromAccount;
     
     @NotBlank(message = "Destination account is required")
+    @Size(max = 20, message = "Destination account must be at most 20 characters")
     private String toAccount;
     
     @NotNull(message = "Amount is required")
@@ -230,6 +346,13 @@ public class AcidDemoController {
     private BigDecimal amount;
   }
 
+  @Data
+  public static class SettlementRequest {
+    @NotEmpty(message = "At least one transfer is required")
+    @Size(max = 10000, message = "At most 10000 transfers per batch")
+    private List<@Valid TransferRequest> transfers;
+  }
+
   @Data
   public static class MultiStepRequest {
     @NotNull(message = "Amount is required")
@@ -1,15 +1,22 @@
 package com.devara.paytrans.payment.transaction;
 
-import lombok.RequiredArgsConstructor;
+import com.devara.paytrans.payment.balance.BalanceEngine;
+import com.devara.paytrans.payment.fee.FeeScheduleRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.List;
 
 /**
  * ============================================================
@@ -26,7 +33,9 @@ import java.time.Instant;
  * 
  * I = ISOLATION
  *     Concurrent transactions don't interfere with each other.
- *     Uses optimistic locking to detect conflicts.
+ *     Uses optimistic locking to detect conflicts; conflicting
+ *     operations are retried server-side in a fresh transaction
+ *     (see {@link ConflictRetryPolicy}).
  * 
  * D = DURABILITY
  *     Once committed, data survives system failures.
@@ -35,12 +44,47 @@ import java.time.Instant;
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class AcidTransactionService {
 
   private final TransactionRepository transactionRepository;
   private final AccountRepository accountRepository;
   private final TransactionLedgerRepository ledgerRepository;
+  private final FeeScheduleRegistry feeSchedules;
+  private final ConflictRetryPolicy conflictRetry;
+  private final GroupCommitWriter groupCommit;
+  private final StripedAccounts stripedAccounts;
+  private final LedgerPostingRepository postingRepository;
+  // Operations retried on conflict need a new transaction per attempt, so they
+  // use operators instead of @Transactional (which would wrap every attempt in one)
+  private final TransactionalOperator readCommitted;
+  private final TransactionalOperator serializable;
+  // Null unless paytrans.balance-engine.enabled
+  private final BalanceEngine balanceEngine;
+
+  public AcidTransactionService(TransactionRepository transactionRepository,
+                                AccountRepository accountRepository,
+                                TransactionLedgerRepository ledgerRepository,
+                                FeeScheduleRegistry feeSchedules,
+                                ConflictRetryPolicy conflictRetry,
+                                GroupCommitWriter groupCommit,
+                                StripedAccounts stripedAccounts,
+                                LedgerPostingRepository postingRepository,
+                                ReactiveTransactionManager transactionManager,
+                                ObjectProvider<BalanceEngine> balanceEngine) {
+    this.balanceEngine = balanceEngine.getIfAvailable();
+    this.transactionRepository = transactionRepository;
+    this.accountRepository = accountRepository;
+    this.ledgerRepository = ledgerRepository;
+    this.feeSchedules = feeSchedules;
+    this.conflictRetry = conflictRetry;
+    this.groupCommit = groupCommit;
+    this.stripedAccounts = stripedAccounts;
+    this.postingRepository = postingRepository;
+    this.readCommitted = TransactionalOperator.create(transactionManager,
+        isolation(TransactionDefinition.ISOLATION_READ_COMMITTED));
+    this.serializable = TransactionalOperator.create(transactionManager,
+        isolation(TransactionDefinition.ISOLATION_SERIALIZABLE));
+  }
 
   // ============================================================
   // ATOMICITY DEMONSTRATION
@@ -54,52 +98,80 @@ public class AcidTransactionService {
    * This prevents the "lost money" scenario where money is debited
    * from one account but never credited to another.
    * 
+   * The guarded debit and the credit run as one statement
+   * ({@link AccountRepository#transfer}), so the balances move in a single
+   * round trip under row locks taken in account-number order, instead of
+   * read-modify-write with optimistic retries on hot accounts.
+   * 
+   * Lock timeouts and deadlocks with other writers are retried in a new
+   * transaction.
+   * 
+   * Transfers touching a striped hot account apply their legs through
+   * {@link StripedAccounts} instead, so credits to it spread over several rows.
+   * 
+   * Both legs are posted to the double-entry ledger ({@link LedgerPosting}) with
+   * the running balance and sequence number returned by the balance update.
+   * 
+   * With the balance engine enabled, the transfer is applied in memory by the
+   * accounts' owning writer threads and journaled in batches instead.
+   * 
    * @param fromAccount Source account number
    * @param toAccount   Destination account number
    * @param amount      Amount to transfer
    * @return The completed transaction
    */
-  @Transactional
   public Mono<Transaction> atomicTransfer(String fromAccount, String toAccount, BigDecimal amount) {
     log.info("=== ATOMICITY DEMO: Starting atomic transfer ===");
     log.info("From: {}, To: {}, Amount: {}", fromAccount, toAccount, amount);
     
-    return Mono.zip(
-        accountRepository.findByAccountNumber(fromAccount)
-            .switchIfEmpty(Mono.error(new IllegalArgumentException("Source account not found: " + fromAccount))),
-        accountRepository.findByAccountNumber(toAccount)
-            .switchIfEmpty(Mono.error(new IllegalArgumentException("Destination account not found: " + toAccount)))
-    )
-    .flatMap(accounts -> {
-      Account source = accounts.getT1();
-      Account destination = accounts.getT2();
-      
-      log.info("Before transfer - Source balance: {}, Destination balance: {}", 
-          source.getBalance(), destination.getBalance());
-      
-      // ATOMICITY: Both operations are part of the same transaction
-      // If either fails, both are rolled back
-      try {
-        source.debit(amount);      // Step 1: Debit source
-        destination.credit(amount); // Step 2: Credit destination
-      } catch (Account.InsufficientFundsException e) {
-        log.error("ATOMICITY: Transfer failed - rolling back. Reason: {}", e.getMessage());
-        return Mono.error(e);
-      }
-      
-      // Save both accounts atomically
-      return accountRepository.save(source)
-          .then(accountRepository.save(destination))
-          .then(createTransactionWithLedger(amount, "USD", "TRANSFER: " + fromAccount + " -> " + toAccount))
-          .doOnSuccess(tx -> {
-            log.info("ATOMICITY: Transfer completed successfully");
-            log.info("After transfer - Source balance: {}, Destination balance: {}", 
-                source.getBalance(), destination.getBalance());
-          })
-          .doOnError(error -> {
-            log.error("ATOMICITY: Transfer failed, all changes rolled back: {}", error.getMessage());
-          });
-    });
+    if (fromAccount.equals(toAccount)) {
+      return Mono.error(new IllegalArgumentException("Source and destination accounts must differ"));
+    }
+    
+    if (balanceEngine != null) {
+      return balanceEngine.transfer(fromAccount, toAccount, amount)
+          .doOnSuccess(tx -> log.info("ATOMICITY: Transfer {} applied by the balance engine", tx.getId()))
+          .doOnError(error -> log.error("ATOMICITY: Transfer failed, no balances changed: {}", error.getMessage()));
+    }
+    
+    // Debit and credit legs as posted, for the double-entry ledger
+    Mono<List<PostedBalance>> legs = stripedAccounts.involves(fromAccount, toAccount)
+        ? stripedAccounts.transfer(fromAccount, toAccount, amount)
+        : Mono.defer(() -> accountRepository.transfer(fromAccount, toAccount, amount))
+            .flatMap(outcome -> {
+              if (!outcome.fromExists()) {
+                return Mono.error(new IllegalArgumentException("Source account not found: " + fromAccount));
+              }
+              if (!outcome.toExists()) {
+                return Mono.error(new IllegalArgumentException("Destination account not found: " + toAccount));
+              }
+              // CONSISTENCY: the guarded debit matched no row, so neither balance changed
+              if (!outcome.applied()) {
+                log.error("ATOMICITY: Transfer failed - rolling back. Reason: insufficient funds");
+                return Mono.error(new Account.InsufficientFundsException(
+                    "Insufficient funds in account " + fromAccount +
+                    ". Available: " + outcome.available() + ", Required: " + amount
+                ));
+              }
+              
+              log.info("After transfer - Source balance: {}, Destination balance: {}", 
+                  outcome.fromBalance(), outcome.toBalance());
+              return Mono.just(List.of(
+                  new PostedBalance(outcome.fromBalance(), outcome.fromPostingSeq()),
+                  new PostedBalance(outcome.toBalance(), outcome.toPostingSeq())));
+            });
+    
+    Mono<Transaction> transfer = legs
+        .flatMap(posted -> createTransactionWithLedger(amount, "USD", "TRANSFER: " + fromAccount + " -> " + toAccount)
+            .flatMap(tx -> postingRepository.postTransfer(tx.getId(), fromAccount, toAccount, amount,
+                    posted.get(0).postingSeq(), posted.get(0).balance(),
+                    posted.get(1).postingSeq(), posted.get(1).balance())
+                .thenReturn(tx)))
+        .as(readCommitted::transactional);
+    
+    return conflictRetry.apply("account", transfer)
+        .doOnSuccess(tx -> log.info("ATOMICITY: Transfer completed successfully"))
+        .doOnError(error -> log.error("ATOMICITY: Transfer failed, all changes rolled back: {}", error.getMessage()));
   }
 
   /**
@@ -154,10 +226,12 @@ public class AcidTransactionService {
    * Rules enforced:
    * 1. Amount must be positive
    * 2. Currency must be valid (USD, EUR, GBP, JPY, IDR)
-   * 3. Fee cannot exceed amount
+   * 3. Fee cannot exceed amount (fee comes from the shared fee schedule)
    * 4. Net amount must be positive
+   * 
+   * The transaction and its ledger entry are committed together, sharing the
+   * commit with concurrent writers (see {@link GroupCommitWriter}).
    */
-  @Transactional
   public Mono<Transaction> consistentTransaction(BigDecimal amount, String currency) {
     log.info("=== CONSISTENCY DEMO: Validating business rules ===");
     
@@ -173,10 +247,8 @@ public class AcidTransactionService {
       return Mono.error(new ConsistencyViolationException("Invalid currency: " + currency));
     }
     
-    // Rule 3: Calculate fee (2.5% + $0.30)
-    BigDecimal fee = amount.multiply(BigDecimal.valueOf(0.025))
-        .add(BigDecimal.valueOf(0.30))
-        .setScale(2, BigDecimal.ROUND_HALF_UP);
+    // Rule 3: Calculate fee from the shared fee schedule
+    BigDecimal fee = feeSchedules.quote(amount, currency).totalFee();
     
     // Rule 4: Net amount must be positive
     BigDecimal netAmount = amount.subtract(fee);
@@ -197,9 +269,7 @@ public class AcidTransactionService {
         .updatedAt(Instant.now())
         .build();
     
-    return transactionRepository.save(tx)
-        .flatMap(savedTx -> writeLedger(savedTx.getId(), null, Transaction.STATUS_COMPLETED, null, amount, "Consistent transaction created")
-            .thenReturn(savedTx))
+    return groupCommit.write(tx, ledgerEntry(null, Transaction.STATUS_COMPLETED, null, amount, "Consistent transaction created"))
         .doOnSuccess(savedTx -> log.info("CONSISTENCY: Transaction saved with valid state. ID: {}", savedTx.getId()));
   }
   
@@ -219,36 +289,39 @@ public class AcidTransactionService {
    * 
    * The @Version field in Transaction entity is used to detect if another
    * transaction has modified the same row. If so, OptimisticLockingFailureException
-   * is thrown and the operation can be retried.
+   * is thrown and the whole read-modify-write is retried with fresh data in a new
+   * transaction. Only when retries run out does the caller see a conflict.
    * 
    * Isolation Level: READ_COMMITTED (PostgreSQL default)
    * - Prevents dirty reads
    * - Allows non-repeatable reads (acceptable for most use cases)
    */
-  @Transactional(isolation = Isolation.READ_COMMITTED)
   public Mono<Transaction> isolatedUpdate(Long transactionId, String newStatus) {
     log.info("=== ISOLATION DEMO: Optimistic locking update ===");
     log.info("Transaction ID: {}, New Status: {}", transactionId, newStatus);
     
-    return transactionRepository.findById(transactionId)
+    Mono<Transaction> update = Mono.defer(() -> transactionRepository.findById(transactionId))
         .switchIfEmpty(Mono.error(new IllegalArgumentException("Transaction not found: " + transactionId)))
         .flatMap(tx -> {
           String oldStatus = tx.getStatus();
           log.info("ISOLATION: Current version: {}, Status: {}", tx.getVersion(), oldStatus);
           
-          // Simulate some processing time (increases chance of concurrent modification)
           tx.setStatus(newStatus);
           tx.setUpdatedAt(Instant.now());
           
           return transactionRepository.save(tx)
               .flatMap(savedTx -> writeLedger(savedTx.getId(), oldStatus, newStatus, savedTx.getAmount(), savedTx.getAmount(), "Status updated")
                   .thenReturn(savedTx))
-              .doOnSuccess(savedTx -> log.info("ISOLATION: Update successful. New version: {}", savedTx.getVersion()))
-              .onErrorResume(OptimisticLockingFailureException.class, e -> {
-                log.warn("ISOLATION: Concurrent modification detected! Another transaction modified this row.");
-                log.warn("ISOLATION: Retry the operation with fresh data.");
-                return Mono.error(new ConcurrentModificationException("Transaction was modified by another process. Please retry."));
-              });
+              .doOnError(ConcurrencyFailureException.class, e ->
+                  log.warn("ISOLATION: Concurrent modification detected! Retrying with fresh data."));
+        })
+        .as(readCommitted::transactional);
+    
+    return conflictRetry.apply("transaction", update)
+        .doOnSuccess(savedTx -> log.info("ISOLATION: Update successful. New version: {}", savedTx.getVersion()))
+        .onErrorResume(ConcurrencyFailureException.class, e -> {
+          log.warn("ISOLATION: Still conflicting after retries, giving up.");
+          return Mono.error(new ConcurrentModificationException("Transaction was modified by another process. Please retry."));
         });
   }
 
@@ -258,13 +331,17 @@ public class AcidTransactionService {
    * Uses SERIALIZABLE isolation level for operations that require
    * the highest level of isolation (e.g., financial reconciliation).
    * This prevents phantom reads and ensures complete isolation.
+   * Serialization failures are retried in a new transaction.
    */
-  @Transactional(isolation = Isolation.SERIALIZABLE)
   public Mono<Transaction> serializedCriticalOperation(BigDecimal amount, String currency) {
     log.info("=== ISOLATION DEMO: SERIALIZABLE isolation level ===");
     log.info("This operation has the highest isolation level");
     
-    return createTransactionWithLedger(amount, currency, "Critical operation with SERIALIZABLE isolation")
+    Mono<Transaction> operation = Mono.defer(() ->
+            createTransactionWithLedger(amount, currency, "Critical operation with SERIALIZABLE isolation"))
+        .as(serializable::transactional);
+    
+    return conflictRetry.apply("transaction", operation)
         .doOnSuccess(tx -> log.info("ISOLATION: Serializable transaction completed. ID: {}", tx.getId()));
   }
 
@@ -284,26 +361,25 @@ public class AcidTransactionService {
    * 
    * Even if the main transaction table is corrupted, the ledger
    * allows reconstruction of the transaction history.
+   * 
+   * Both rows are written in one group commit: concurrent requests share a
+   * single WAL flush, and each caller returns only after that flush.
    */
-  @Transactional
   public Mono<Transaction> durableTransactionWithAudit(BigDecimal amount, String currency, String reason) {
     log.info("=== DURABILITY DEMO: Transaction with full audit trail ===");
     
-    return createTransaction(amount, currency, Transaction.STATUS_COMPLETED)
-        .flatMap(tx -> {
-          log.info("DURABILITY: Transaction created. ID: {}", tx.getId());
-          
-          // Create immutable audit record
-          return writeLedger(
-              tx.getId(), 
-              null, 
-              Transaction.STATUS_COMPLETED, 
-              null, 
-              amount, 
-              reason != null ? reason : "Transaction created via durable operation"
-          ).thenReturn(tx);
-        })
+    // Create immutable audit record together with the transaction
+    TransactionLedger audit = ledgerEntry(
+        null, 
+        Transaction.STATUS_COMPLETED, 
+        null, 
+        amount, 
+        reason != null ? reason : "Transaction created via durable operation"
+    );
+    
+    return groupCommit.write(newTransaction(amount, currency, Transaction.STATUS_COMPLETED), audit)
         .doOnSuccess(tx -> {
+          log.info("DURABILITY: Transaction created. ID: {}", tx.getId());
           log.info("DURABILITY: Audit trail created");
           log.info("DURABILITY: Data is now persisted to PostgreSQL WAL");
           log.info("DURABILITY: Even after system crash, this transaction will survive");
@@ -338,12 +414,52 @@ public class AcidTransactionService {
         });
   }
 
+  /**
+   * DURABILITY: Balance of an account as of a point in time, read from the
+   * running balance of its last posting at or before it.
+   * 
+   * Refused rather than answered with an outdated figure when postings do not
+   * track the balance: engine transfers write no postings, striped accounts
+   * move money outside the account row, and their legs carry no running balance.
+   */
+  public Mono<BigDecimal> balanceAsOf(String accountNumber, Instant at) {
+    if (balanceEngine != null) {
+      return Mono.error(new BalanceHistoryUnavailableException(
+          "Balance history is not recorded while the balance engine is enabled"));
+    }
+    if (stripedAccounts.isStriped(accountNumber)) {
+      return Mono.error(new BalanceHistoryUnavailableException(
+          "Account " + accountNumber + " is striped; its postings carry no running balance"));
+    }
+    return postingRepository.lastPostingAsOf(accountNumber, at)
+        .switchIfEmpty(Mono.error(() -> new IllegalArgumentException(
+            "No postings for account " + accountNumber + " at or before " + at)))
+        .flatMap(posting -> posting.getBalanceAfter() != null
+            ? Mono.just(posting.getBalanceAfter())
+            : Mono.error(new BalanceHistoryUnavailableException(
+                "Account " + accountNumber + " was striped at " + at + "; its postings carry no running balance")));
+  }
+
+  /**
+   * DURABILITY: Postings of an account in [from, to), oldest first.
+   */
+  public Flux<LedgerPosting> statement(String accountNumber, Instant from, Instant to, int limit) {
+    if (!from.isBefore(to)) {
+      return Flux.error(new IllegalArgumentException("Statement start must be before its end"));
+    }
+    return postingRepository.statement(accountNumber, from, to, limit);
+  }
+
   // ============================================================
   // HELPER METHODS
   // ============================================================
   
   private Mono<Transaction> createTransaction(BigDecimal amount, String currency, String status) {
-    Transaction tx = Transaction.builder()
+    return transactionRepository.save(newTransaction(amount, currency, status));
+  }
+  
+  private static Transaction newTransaction(BigDecimal amount, String currency, String status) {
+    return Transaction.builder()
         .amount(amount)
         .currency(currency)
         .status(status)
@@ -352,8 +468,6 @@ public class AcidTransactionService {
         .createdAt(Instant.now())
         .updatedAt(Instant.now())
         .build();
-    
-    return transactionRepository.save(tx);
   }
   
   private Mono<Transaction> createTransactionWithLedger(BigDecimal amount, String currency, String reason) {
@@ -364,8 +478,14 @@ public class AcidTransactionService {
   
   private Mono<TransactionLedger> writeLedger(Long transactionId, String oldStatus, String newStatus, 
                                                BigDecimal oldAmount, BigDecimal newAmount, String reason) {
-    TransactionLedger ledger = TransactionLedger.builder()
-        .transactionId(transactionId)
+    TransactionLedger ledger = ledgerEntry(oldStatus, newStatus, oldAmount, newAmount, reason);
+    ledger.setTransactionId(transactionId);
+    return ledgerRepository.save(ledger);
+  }
+  
+  private static TransactionLedger ledgerEntry(String oldStatus, String newStatus,
+                                               BigDecimal oldAmount, BigDecimal newAmount, String reason) {
+    return TransactionLedger.builder()
         .operation(oldStatus == null ? TransactionLedger.OP_CREATE : TransactionLedger.OP_UPDATE)
         .oldStatus(oldStatus)
         .newStatus(newStatus)
@@ -375,8 +495,12 @@ public class AcidTransactionService {
         .changedAt(Instant.now())
         .reason(reason)
         .build();
-    
-    return ledgerRepository.save(ledger);
+  }
+
+  private static TransactionDefinition isolation(int level) {
+    DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+    definition.setIsolationLevel(level);
+    return definition;
   }
 
   // ============================================================
@@ -394,4 +518,10 @@ public class AcidTransactionService {
       super(message);
     }
   }
+  
+  public static class BalanceHistoryUnavailableException extends RuntimeException {
+    public BalanceHistoryUnavailableException(String message) {
+      super(message);
+    }
+  }
 }
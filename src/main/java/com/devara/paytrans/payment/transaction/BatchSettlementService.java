@@ -0,0 +1,287 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.payment.balance.BalanceEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Settles a batch of transfers by netting.
+ *
+ * Instead of one debit and one credit per transfer, the batch is reduced to a
+ * net position per account and applied with a single
+ * UPDATE ... FROM (VALUES ...), so row updates scale with the number of accounts
+ * rather than transfers. Each transfer still gets its own transaction,
+ * DEBIT/CREDIT ledger rows and double-entry postings, inserted in bulk in the
+ * same database transaction. Running balances of the postings are derived from
+ * the locked balances in request order, so they may dip below zero inside the
+ * batch where the net position does not.
+ *
+ * Only net positions must be covered: an account may pay out within the batch
+ * what it receives in the same batch. The batch is all-or-nothing.
+ */
+@Slf4j
+@Service
+public class BatchSettlementService {
+
+  private static final String CHANGED_BY = "SETTLEMENT";
+
+  private final DatabaseClient db;
+  private final LedgerBatchInserter inserter;
+  private final StripedAccounts stripedAccounts;
+  private final ConflictRetryPolicy conflictRetry;
+  private final TransactionalOperator transactionalOperator;
+  // Null unless paytrans.balance-engine.enabled
+  private final BalanceEngine balanceEngine;
+
+  public BatchSettlementService(DatabaseClient db,
+                                LedgerBatchInserter inserter,
+                                StripedAccounts stripedAccounts,
+                                ConflictRetryPolicy conflictRetry,
+                                TransactionalOperator transactionalOperator,
+                                ObjectProvider<BalanceEngine> balanceEngine) {
+    this.db = db;
+    this.inserter = inserter;
+    this.stripedAccounts = stripedAccounts;
+    this.conflictRetry = conflictRetry;
+    this.transactionalOperator = transactionalOperator;
+    this.balanceEngine = balanceEngine.getIfAvailable();
+  }
+
+  public Mono<SettlementResult> settle(List<SettlementTransfer> transfers) {
+    if (balanceEngine != null) {
+      // The engine holds balances in memory; a direct UPDATE would be overwritten by its next flush
+      return Mono.error(new IllegalStateException("Batch settlement is unavailable while the balance engine is enabled"));
+    }
+    if (transfers.isEmpty()) {
+      return Mono.error(new IllegalArgumentException("Settlement batch is empty"));
+    }
+    for (SettlementTransfer transfer : transfers) {
+      if (transfer.fromAccount().equals(transfer.toAccount())) {
+        return Mono.error(new IllegalArgumentException(
+            "Source and destination accounts must differ: " + transfer.fromAccount()));
+      }
+    }
+
+    SortedMap<String, BigDecimal> net = netPositions(transfers);
+    log.info("Settling {} transfers as {} net positions", transfers.size(), net.size());
+
+    Mono<SettlementResult> settlement = Mono.defer(() -> applyNetPositions(transfers, net))
+        .flatMap(positions -> record(transfers, positions))
+        .map(ids -> new SettlementResult(ids, Collections.unmodifiableSortedMap(net)))
+        .as(transactionalOperator::transactional);
+
+    return conflictRetry.apply("account", settlement)
+        .doOnSuccess(result -> log.info("Settled {} transfers", result.transactionIds().size()))
+        .doOnError(error -> log.error("Settlement failed, no balances changed: {}", error.getMessage()));
+  }
+
+  /**
+   * Net balance change per account, sorted by account number (the lock order).
+   */
+  static SortedMap<String, BigDecimal> netPositions(List<SettlementTransfer> transfers) {
+    SortedMap<String, BigDecimal> net = new TreeMap<>();
+    for (SettlementTransfer transfer : transfers) {
+      net.merge(transfer.fromAccount(), transfer.amount().negate(), BigDecimal::add);
+      net.merge(transfer.toAccount(), transfer.amount(), BigDecimal::add);
+    }
+    return net;
+  }
+
+  /**
+   * Applies the net positions and returns the position of every unstriped
+   * account as locked before the update, by account number.
+   */
+  private Mono<Map<String, NetPosition>> applyNetPositions(List<SettlementTransfer> transfers,
+                                                          SortedMap<String, BigDecimal> net) {
+    Map<String, Integer> legs = new HashMap<>();
+    transfers.forEach(transfer -> {
+      legs.merge(transfer.fromAccount(), 1, Integer::sum);
+      legs.merge(transfer.toAccount(), 1, Integer::sum);
+    });
+    SortedMap<String, BigDecimal> rows = new TreeMap<>();
+    List<Mono<Void>> striped = new ArrayList<>();
+    net.forEach((account, delta) -> {
+      if (stripedAccounts.isStriped(account)) {
+        striped.add(stripedAccounts.adjust(account, CHANGED_BY, delta));
+      } else {
+        rows.put(account, delta);
+      }
+    });
+    return updateBalances(rows, legs).flatMap(positions -> Flux.concat(striped).then(Mono.just(positions)));
+  }
+
+  /**
+   * One statement for all unstriped accounts. The rows are locked in
+   * account-number order and only updated if every account exists and every
+   * net debit is covered; otherwise the returned rows say which check failed.
+   * Each account's posting_seq advances by its number of legs in the batch.
+   */
+  private Mono<Map<String, NetPosition>> updateBalances(SortedMap<String, BigDecimal> net, Map<String, Integer> legs) {
+    if (net.isEmpty()) {
+      return Mono.just(Map.of());
+    }
+    List<Object> params = new ArrayList<>(net.size() * 3);
+    StringBuilder values = new StringBuilder();
+    for (Map.Entry<String, BigDecimal> entry : net.entrySet()) {
+      if (!values.isEmpty()) {
+        values.append(", ");
+      }
+      values.append("($").append(params.size() + 1).append("::varchar, $").append(params.size() + 2)
+          .append("::numeric, $").append(params.size() + 3).append("::int)");
+      params.add(entry.getKey());
+      params.add(entry.getValue());
+      params.add(legs.get(entry.getKey()));
+    }
+    DatabaseClient.GenericExecuteSpec spec = db.sql("""
+        WITH v(account_number, delta, legs) AS (VALUES %s),
+             locked AS (
+               SELECT id, account_number, balance, posting_seq FROM accounts
+                WHERE account_number IN (SELECT account_number FROM v)
+                ORDER BY account_number
+                  FOR UPDATE),
+             guard AS (
+               SELECT (SELECT count(*) FROM locked) = (SELECT count(*) FROM v)
+                  AND NOT EXISTS (SELECT 1 FROM locked l JOIN v ON v.account_number = l.account_number
+                                   WHERE l.balance + v.delta < 0) AS ok),
+             updated AS (
+               UPDATE accounts a
+                  SET balance = a.balance + v.delta, posting_seq = a.posting_seq + v.legs,
+                      updated_at = now(), version = a.version + 1
+                 FROM locked l JOIN v ON v.account_number = l.account_number
+                WHERE a.id = l.id AND (SELECT ok FROM guard))
+        SELECT v.account_number, v.delta, l.balance AS available, l.posting_seq,
+               (SELECT ok FROM guard) AS applied
+          FROM v LEFT JOIN locked l ON l.account_number = v.account_number
+         ORDER BY v.account_number
+        """.formatted(values));
+    for (int i = 0; i < params.size(); i++) {
+      spec = spec.bind(i, params.get(i));
+    }
+    return spec
+        .map(row -> new NetPosition(
+            row.get("account_number", String.class),
+            row.get("delta", BigDecimal.class),
+            row.get("available", BigDecimal.class),
+            row.get("posting_seq", Long.class),
+            Boolean.TRUE.equals(row.get("applied", Boolean.class))))
+        .all()
+        .collectList()
+        .flatMap(BatchSettlementService::checkApplied);
+  }
+
+  private static Mono<Map<String, NetPosition>> checkApplied(List<NetPosition> positions) {
+    if (positions.stream().allMatch(NetPosition::applied)) {
+      Map<String, NetPosition> byAccount = new HashMap<>();
+      positions.forEach(position -> byAccount.put(position.accountNumber(), position));
+      return Mono.just(byAccount);
+    }
+    for (NetPosition position : positions) {
+      if (position.available() == null) {
+        return Mono.error(new IllegalArgumentException("Account not found: " + position.accountNumber()));
+      }
+    }
+    for (NetPosition position : positions) {
+      if (position.available().add(position.delta()).signum() < 0) {
+        return Mono.error(new Account.InsufficientFundsException(
+            "Insufficient funds in account " + position.accountNumber() +
+            ". Available: " + position.available() + ", Required: " + position.delta().negate()));
+      }
+    }
+    return Mono.error(new IllegalStateException("Settlement was not applied"));
+  }
+
+  private Mono<List<Long>> record(List<SettlementTransfer> transfers, Map<String, NetPosition> positions) {
+    return inserter.reserveTransactionIds(transfers.size())
+        .flatMap(ids -> {
+          Instant now = Instant.now();
+          List<Transaction> transactions = new ArrayList<>(transfers.size());
+          List<TransactionLedger> ledger = new ArrayList<>(transfers.size() * 2);
+          List<LedgerPosting> postings = new ArrayList<>(transfers.size() * 2);
+          Map<String, PostedBalance> running = new HashMap<>();
+          positions.forEach((account, position) ->
+              running.put(account, new PostedBalance(position.available(), position.postingSeq())));
+          for (int i = 0; i < transfers.size(); i++) {
+            SettlementTransfer transfer = transfers.get(i);
+            Long id = ids.get(i);
+            transactions.add(Transaction.builder()
+                .id(id)
+                .amount(transfer.amount())
+                .currency("USD")
+                .status(Transaction.STATUS_COMPLETED)
+                .fee(BigDecimal.ZERO)
+                .netAmount(transfer.amount())
+                .createdAt(now)
+                .build());
+            String reason = "SETTLEMENT: " + transfer.fromAccount() + " -> " + transfer.toAccount();
+            ledger.add(leg(id, TransactionLedger.OP_DEBIT, transfer.fromAccount(), transfer.toAccount(), transfer.amount(), reason, now));
+            ledger.add(leg(id, TransactionLedger.OP_CREDIT, transfer.toAccount(), transfer.fromAccount(), transfer.amount(), reason, now));
+            postings.add(posting(id, LedgerPosting.DEBIT, transfer.fromAccount(), transfer.toAccount(),
+                transfer.amount(), running));
+            postings.add(posting(id, LedgerPosting.CREDIT, transfer.toAccount(), transfer.fromAccount(),
+                transfer.amount(), running));
+          }
+          return inserter.insertTransactions(transactions)
+              .then(inserter.insertLedger(ledger))
+              .then(inserter.insertPostings(postings))
+              .thenReturn(ids);
+        });
+  }
+
+  private static TransactionLedger leg(Long transactionId, String operation, String accountNumber,
+                                       String counterparty, BigDecimal amount, String reason, Instant now) {
+    // balance_after is left empty: balances move once per account, not per transfer
+    return TransactionLedger.builder()
+        .transactionId(transactionId)
+        .operation(operation)
+        .newStatus(Transaction.STATUS_COMPLETED)
+        .newAmount(amount)
+        .changedBy(CHANGED_BY)
+        .changedAt(now)
+        .reason(reason)
+        .accountNumber(accountNumber)
+        .counterparty(counterparty)
+        .build();
+  }
+
+  /**
+   * Next posting on an account, advancing its running balance and sequence.
+   * Striped accounts have no entry in {@code running} and post unsequenced.
+   */
+  static LedgerPosting posting(Long transactionId, String direction, String accountNumber,
+                                       String counterparty, BigDecimal amount, Map<String, PostedBalance> running) {
+    PostedBalance posted = running.computeIfPresent(accountNumber, (account, previous) -> new PostedBalance(
+        LedgerPosting.DEBIT.equals(direction) ? previous.balance().subtract(amount) : previous.balance().add(amount),
+        previous.postingSeq() + 1));
+    if (posted == null) {
+      posted = PostedBalance.UNSEQUENCED;
+    }
+    return LedgerPosting.builder()
+        .transactionId(transactionId)
+        .accountNumber(accountNumber)
+        .sequenceNo(posted.postingSeq())
+        .direction(direction)
+        .amount(amount)
+        .balanceAfter(posted.balance())
+        .counterparty(counterparty)
+        .build();
+  }
+
+  private record NetPosition(String accountNumber, BigDecimal delta, BigDecimal available, Long postingSeq,
+                             boolean applied) {
+  }
+}
@@ -0,0 +1,75 @@
+package com.devara.paytrans.payment.transaction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries an operation that lost a concurrency race: optimistic-lock failures,
+ * lock timeouts, deadlocks and serialization failures (all
+ * {@link ConcurrencyFailureException}s).
+ *
+ * The operation is re-subscribed on each attempt, so it must be cold and start
+ * its own transaction, re-reading fresh state. Retries wait a random time between
+ * zero and an exponentially growing ceiling ("full jitter"), which spreads
+ * competing writers apart instead of having them collide again in lockstep.
+ *
+ * Conflicts are counted as acid.conflicts{entity, outcome=retried|exhausted}.
+ */
+@Component
+public class ConflictRetryPolicy {
+
+  private final ConflictRetryProperties properties;
+  private final MeterRegistry meterRegistry;
+
+  public ConflictRetryPolicy(ConflictRetryProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @param entity   what the operation contends on, used as the metric tag
+   * @param operation cold operation, re-subscribed on each attempt
+   * @return the operation's result, or its last conflict once attempts run out
+   */
+  public <T> Mono<T> apply(String entity, Mono<T> operation) {
+    Counter retried = counter(entity, "retried");
+    Counter exhausted = counter(entity, "exhausted");
+    return operation.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+      Throwable failure = signal.failure();
+      if (!(failure instanceof ConcurrencyFailureException)) {
+        return Mono.error(failure);
+      }
+      if (signal.totalRetries() + 1 >= properties.getMaxAttempts()) {
+        exhausted.increment();
+        return Mono.error(failure);
+      }
+      retried.increment();
+      return Mono.delay(backoff(signal.totalRetries()));
+    })));
+  }
+
+  /**
+   * Random delay in [0, min(maxBackoff, baseBackoff * 2^retry)].
+   */
+  Duration backoff(long retry) {
+    long base = properties.getBaseBackoff().toNanos();
+    long max = properties.getMaxBackoff().toNanos();
+    long ceiling = retry >= 62 || base > (max >> retry) ? max : base << retry;
+    return Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+  }
+
+  private Counter counter(String entity, String outcome) {
+    return Counter.builder("acid.conflicts")
+        .description("Concurrency conflicts in ACID operations")
+        .tag("entity", entity)
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+}
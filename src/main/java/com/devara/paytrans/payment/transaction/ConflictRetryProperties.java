@@ -0,0 +1,31 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Server-side retry of concurrency conflicts (paytrans.conflict-retry.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.conflict-retry")
+public class ConflictRetryProperties {
+
+  /**
+   * Attempts per operation, including the first. 1 disables retrying.
+   */
+  private int maxAttempts = 5;
+
+  /**
+   * Backoff ceiling for the first retry; doubles on each further retry.
+   */
+  private Duration baseBackoff = Duration.ofMillis(10);
+
+  /**
+   * Upper bound on the backoff ceiling.
+   */
+  private Duration maxBackoff = Duration.ofMillis(500);
+}
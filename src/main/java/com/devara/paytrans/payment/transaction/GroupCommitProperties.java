@@ -0,0 +1,48 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Group commit of transaction and ledger inserts (paytrans.group-commit.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.group-commit")
+public class GroupCommitProperties {
+
+  /**
+   * When false, every write commits on its own.
+   */
+  private boolean enabled = true;
+
+  /**
+   * Longest a write waits for others to share its commit.
+   */
+  private Duration maxDelay = Duration.ofMillis(2);
+
+  /**
+   * Most writes per commit.
+   */
+  private int maxRows = 200;
+
+  /**
+   * Group commits in progress at once (each holds a connection).
+   */
+  private int concurrency = 4;
+
+  /**
+   * Writes that may queue before new ones are rejected.
+   */
+  private int bufferSize = 8192;
+
+  /**
+   * Longest a write may wait in the queue. A write still queued after that is
+   * dropped and its caller fails with a TimeoutException; a write already in a
+   * commit is not affected.
+   */
+  private Duration writeTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,170 @@
+package com.devara.paytrans.payment.transaction;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Writes a transaction together with its ledger entry, sharing one database
+ * commit with concurrent writers.
+ *
+ * Writes are queued in a shared, bounded sink and grouped for up to max-delay or
+ * max-rows, whichever comes first. Each group is written as multi-row INSERTs
+ * ({@link LedgerBatchInserter}) in one database transaction, so concurrent
+ * requests pay for one commit (and one WAL flush) between them. A caller's Mono
+ * completes after the shared commit.
+ *
+ * If a group fails, its writes are retried one by one so a single bad row only
+ * fails its own caller. A caller whose write is still queued after write-timeout
+ * fails with a TimeoutException, and the write is dropped from its group, so a
+ * timed-out caller never has a committed row. A write already taken into a
+ * commit is not abandoned; its caller waits for that commit's outcome.
+ */
+@Slf4j
+@Component
+public class GroupCommitWriter {
+
+  private static final Duration RESTART_DELAY = Duration.ofSeconds(1);
+
+  private final LedgerBatchInserter inserter;
+  private final TransactionalOperator transactionalOperator;
+  private final GroupCommitProperties properties;
+
+  private volatile Sinks.Many<PendingWrite> pending;
+  private volatile boolean stopped;
+
+  public GroupCommitWriter(LedgerBatchInserter inserter, TransactionalOperator transactionalOperator,
+                           GroupCommitProperties properties) {
+    this.inserter = inserter;
+    this.transactionalOperator = transactionalOperator;
+    this.properties = properties;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    Sinks.Many<PendingWrite> sink = Sinks.many().unicast().onBackpressureBuffer(
+        Queues.<PendingWrite>get(properties.getBufferSize()).get());
+    pending = sink;
+    sink.asFlux()
+        .bufferTimeout(properties.getMaxRows(), properties.getMaxDelay(), true)
+        .map(group -> group.stream().filter(PendingWrite::claim).toList())
+        .filter(group -> !group.isEmpty())
+        .flatMap(this::commit, properties.getConcurrency())
+        .subscribe(null, this::restart);
+  }
+
+  @PreDestroy
+  public void stop() {
+    stopped = true;
+    if (pending != null) {
+      // Writes already queued are still committed
+      pending.tryEmitComplete();
+    }
+  }
+
+  /**
+   * Inserts the transaction and its ledger entry; the ledger entry's transaction
+   * id is filled in. With group commit disabled, commits on its own.
+   *
+   * @return the transaction with its id assigned, once committed
+   */
+  public Mono<Transaction> write(Transaction transaction, TransactionLedger ledger) {
+    return Mono.defer(() -> {
+      PendingWrite write = new PendingWrite(transaction, ledger, Sinks.one(), new AtomicBoolean());
+      if (pending == null) {
+        return commit(List.of(write)).then(write.result().asMono());
+      }
+      Sinks.EmitResult result;
+      // Unicast sinks reject concurrent emitters; the critical section is one enqueue
+      synchronized (this) {
+        result = pending.tryEmitNext(write);
+      }
+      if (result.isFailure()) {
+        return Mono.error(new WriteRejectedException("Group commit queue rejected write: " + result));
+      }
+      return write.result().asMono().timeout(properties.getWriteTimeout(), Mono.defer(() -> write.abandon()
+          ? Mono.error(new TimeoutException("Write not committed within " + properties.getWriteTimeout()))
+          // Already part of a commit: failing now would report a row that may still be written
+          : write.result().asMono()));
+    });
+  }
+
+  /**
+   * Commits one group and reports the outcome to each caller. Never fails.
+   */
+  private Mono<Void> commit(List<PendingWrite> group) {
+    return insert(group)
+        .as(transactionalOperator::transactional)
+        .doOnSuccess(done -> group.forEach(write -> write.result().tryEmitValue(write.transaction())))
+        .onErrorResume(error -> {
+          if (group.size() > 1) {
+            log.warn("Group commit of {} writes failed, retrying individually: {}", group.size(), error.getMessage());
+            return Flux.fromIterable(group).concatMap(write -> commit(List.of(write))).then();
+          }
+          group.get(0).result().tryEmitError(error);
+          return Mono.empty();
+        });
+  }
+
+  private Mono<Void> insert(List<PendingWrite> group) {
+    return inserter.reserveTransactionIds(group.size())
+        .flatMap(ids -> {
+          IntStream.range(0, group.size()).forEach(i -> {
+            group.get(i).transaction().setId(ids.get(i));
+            group.get(i).ledger().setTransactionId(ids.get(i));
+          });
+          return inserter.insertTransactions(group.stream().map(PendingWrite::transaction).toList())
+              .then(inserter.insertLedger(group.stream().map(PendingWrite::ledger).toList()));
+        });
+  }
+
+  /**
+   * Callers still queued in the old sink time out; this only runs on a bug,
+   * since {@link #commit} never fails.
+   */
+  private void restart(Throwable error) {
+    if (stopped) {
+      return;
+    }
+    log.error("Group commit pipeline failed, restarting in {}", RESTART_DELAY, error);
+    Mono.delay(RESTART_DELAY).subscribe(tick -> start());
+  }
+
+  /**
+   * A queued write. {@code decided} is taken once, either by the pipeline when
+   * the write joins a commit or by its caller's timeout, so exactly one of the
+   * two happens.
+   */
+  private record PendingWrite(Transaction transaction, TransactionLedger ledger, Sinks.One<Transaction> result,
+                              AtomicBoolean decided) {
+
+    boolean claim() {
+      return decided.compareAndSet(false, true);
+    }
+
+    boolean abandon() {
+      return decided.compareAndSet(false, true);
+    }
+  }
+
+  public static class WriteRejectedException extends RuntimeException {
+    public WriteRejectedException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded in-process cache of completed idempotency results.
+ *
+ * Clients retrying the same key within seconds are answered from memory without
+ * a store round trip or deserialization. Each entry expires at the earlier of the
+ * configured near-cache TTL and the remaining TTL of the key in the store, so the
+ * near-cache never serves a result the store has already expired.
+ *
+ * Size, hits, misses and evictions are exported as idempotency.near-cache metrics.
+ */
+@Component
+public class IdempotencyNearCache {
+
+  private final boolean enabled;
+  private final long maxTtlNanos;
+  private final Cache<String, Entry> cache;
+
+  public IdempotencyNearCache(IdempotencyProperties properties, MeterRegistry meterRegistry) {
+    IdempotencyProperties.NearCache config = properties.getNearCache();
+    this.enabled = config.isEnabled();
+    this.maxTtlNanos = config.getTtl().toNanos();
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(config.getMaxSize())
+        .expireAfter(new Expiry<String, Entry>() {
+          @Override
+          public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return entry.ttlNanos();
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return entry.ttlNanos();
+          }
+
+          @Override
+          public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotency.near-cache");
+  }
+
+  /**
+   * @return the cached result, or null on a miss
+   */
+  public Transaction get(String idempotencyKey) {
+    if (!enabled) {
+      return null;
+    }
+    Entry entry = cache.getIfPresent(idempotencyKey);
+    return entry != null ? entry.transaction() : null;
+  }
+
+  /**
+   * Caches a completed result.
+   *
+   * @param remainingTtl how much longer the key lives in the store
+   */
+  public void put(String idempotencyKey, Transaction transaction, Duration remainingTtl) {
+    if (!enabled || remainingTtl.isNegative() || remainingTtl.isZero()) {
+      return;
+    }
+    cache.put(idempotencyKey, new Entry(transaction, Math.min(maxTtlNanos, remainingTtl.toNanos())));
+  }
+
+  public void invalidate(String idempotencyKey) {
+    cache.invalidate(idempotencyKey);
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private record Entry(Transaction transaction, long ttlNanos) {
+  }
+}
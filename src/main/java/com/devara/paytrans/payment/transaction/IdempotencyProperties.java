@@ -0,0 +1,83 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Idempotency settings (paytrans.idempotency.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.idempotency")
+public class IdempotencyProperties {
+
+  /**
+   * Backing store: redis (shared, default) or memory (single node).
+   */
+  private String store = "redis";
+
+  /**
+   * What a request does when another request holds its key:
+   * reject (409 immediately) or wait (share the original's result).
+   */
+  private String duplicateMode = "reject";
+
+  /**
+   * In wait mode, how long a duplicate waits before falling back to 409.
+   */
+  private Duration waitTimeout = Duration.ofSeconds(10);
+
+  /**
+   * In wait mode, how often a waiting duplicate re-checks the store in case a
+   * completion notification was missed.
+   */
+  private Duration waitPollInterval = Duration.ofMillis(500);
+
+  private NearCache nearCache = new NearCache();
+
+  private Memory memory = new Memory();
+
+  /**
+   * In-process cache of completed results in front of the shared store.
+   */
+  @Data
+  public static class NearCache {
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of results kept in memory.
+     */
+    private long maxSize = 10_000;
+
+    /**
+     * Upper bound on how long a result stays in memory. An entry never outlives
+     * the remaining TTL of the same key in Redis.
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+  }
+
+  /**
+   * Embedded store settings, used when store=memory.
+   */
+  @Data
+  public static class Memory {
+    /**
+     * Number of lock shards; must be a power of two.
+     */
+    private int shards = 64;
+
+    /**
+     * Upper bound on locks plus results held; new claims fail beyond it.
+     */
+    private int maxEntries = 1_000_000;
+
+    /**
+     * Expiry wheel resolution and number of slots (one revolution = tick * wheel-size).
+     */
+    private Duration tick = Duration.ofSeconds(1);
+    private int wheelSize = 3600;
+  }
+}
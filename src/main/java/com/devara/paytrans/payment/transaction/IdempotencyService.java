@@ -1,29 +1,52 @@
 package com.devara.paytrans.payment.transaction;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Service to handle idempotent transaction processing using Redis.
+ * Service to handle idempotent transaction processing.
  * Prevents duplicate transactions by caching results based on idempotency keys.
+ * Results are stored in the compact binary form of {@link TransactionResultCodec}
+ * in the configured {@link IdempotencyStore}.
+ *
+ * Duplicates of a request that is still processing are handled according to
+ * paytrans.idempotency.duplicate-mode:
+ * - reject: fail fast with {@link DuplicateRequestException} (409)
+ * - wait:   duplicates on the same node share the original's Mono; duplicates of
+ *           a request running on another node wait for the store to report the
+ *           key completed or released, up to wait-timeout, then fall back to 409
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class IdempotencyService {
 
-  private final ReactiveRedisTemplate<String, String> redisTemplate;
-  private final ObjectMapper objectMapper;
+  private final IdempotencyStore store;
+  private final TransactionResultCodec codec;
+  private final IdempotencyNearCache nearCache;
+  private final boolean waitForDuplicates;
+  private final Duration waitTimeout;
+  private final Duration waitPollInterval;
+
+  /**
+   * Requests currently executing on this node, by idempotency key (wait mode only).
+   */
+  private final ConcurrentHashMap<String, Mono<Transaction>> inFlight = new ConcurrentHashMap<>();
+
+  public IdempotencyService(IdempotencyStore store, TransactionResultCodec codec,
+                            IdempotencyNearCache nearCache, IdempotencyProperties properties) {
+    this.store = store;
+    this.codec = codec;
+    this.nearCache = nearCache;
+    this.waitForDuplicates = "wait".equalsIgnoreCase(properties.getDuplicateMode());
+    this.waitTimeout = properties.getWaitTimeout();
+    this.waitPollInterval = properties.getWaitPollInterval();
+  }
 
-  private static final String IDEMPOTENCY_PREFIX = "idempotency:";
-  private static final String PROCESSING_SUFFIX = ":processing";
   private static final Duration TTL = Duration.ofHours(24); // Keep results for 24 hours
   private static final Duration PROCESSING_TTL = Duration.ofMinutes(5); // Lock duration
 
@@ -31,102 +54,118 @@ public class IdempotencyService {
    * Executes an operation with idempotency guarantee.
    * If the idempotency key already exists:
    * - Returns cached result if operation completed
-   * - Returns error if operation is still processing
+   * - Returns error if operation is still processing (or, in wait mode, waits for it)
    * If the key doesn't exist, executes the operation and caches the result
    *
+   * The result lookup and lock claim are one atomic store call, and so are
+   * storing the result and releasing the lock. The lock holds a per-request
+   * owner token, so a request can only ever release its own lock.
+   *
    * @param idempotencyKey Unique key identifying this operation
    * @param operation The operation to execute
    * @return Mono containing the operation result (cached or fresh)
    */
   public Mono<Transaction> executeIdempotent(String idempotencyKey, Mono<Transaction> operation) {
-    String resultKey = IDEMPOTENCY_PREFIX + idempotencyKey;
-    String processingKey = resultKey + PROCESSING_SUFFIX;
+    String owner = UUID.randomUUID().toString();
 
     log.info("Checking idempotency for key: {}", idempotencyKey);
 
-    // Step 1: Check if we already have a result
-    return redisTemplate.opsForValue().get(resultKey)
-        .flatMap(cachedResult -> {
-          log.info("Found cached result for key: {}", idempotencyKey);
-          return deserializeTransaction(cachedResult)
-              .doOnSuccess(tx -> log.info("Returning cached transaction ID: {}", tx.getId()));
-        })
-        // Step 2: If no result, check if operation is processing
-        .switchIfEmpty(Mono.defer(() -> 
-            redisTemplate.opsForValue().setIfAbsent(processingKey, "true", PROCESSING_TTL)
-                .flatMap(acquired -> {
-                  if (Boolean.TRUE.equals(acquired)) {
-                    log.info("Acquired processing lock for key: {}", idempotencyKey);
-                    // We got the lock, execute the operation
-                    return executeAndCache(idempotencyKey, resultKey, processingKey, operation);
-                  } else {
-                    log.warn("Duplicate request detected (processing) for key: {}", idempotencyKey);
-                    // Another request is processing
-                    return Mono.error(new DuplicateRequestException(
-                        "A request with the same idempotency key is currently being processed. Please try again later."
-                    ));
-                  }
-                })
-        ));
+    // Hot retries are answered from memory
+    Transaction nearCached = nearCache.get(idempotencyKey);
+    if (nearCached != null) {
+      log.info("Returning near-cached transaction ID: {}", nearCached.getId());
+      return Mono.just(nearCached);
+    }
+
+    if (!waitForDuplicates) {
+      return claimAndExecute(idempotencyKey, owner, operation, 0L);
+    }
+
+    // Attach to an identical request already running on this node. The shared
+    // Mono is cached, so the operation runs once and late subscribers replay its
+    // outcome; it is unregistered as soon as it terminates.
+    return Mono.defer(() -> {
+      long deadline = System.nanoTime() + waitTimeout.toNanos();
+      return inFlight.computeIfAbsent(idempotencyKey, key ->
+          claimAndExecute(key, owner, operation, deadline)
+              .doFinally(signal -> inFlight.remove(key))
+              .cache());
+    });
   }
 
   /**
-   * Executes the operation and caches the result in Redis
+   * @param deadline System.nanoTime() after which a waiting duplicate gives up;
+   *                 only used in wait mode
    */
-  private Mono<Transaction> executeAndCache(String idempotencyKey, String resultKey, 
-                                             String processingKey, Mono<Transaction> operation) {
-    return operation
-        .flatMap(transaction -> 
-            // Serialize and cache the result
-            serializeTransaction(transaction)
-                .flatMap(serialized -> 
-                    redisTemplate.opsForValue().set(resultKey, serialized, TTL)
-                        .then(Mono.just(transaction))
-                )
-                .doOnSuccess(tx -> 
-                    log.info("Cached transaction result for key: {} with ID: {}", 
-                        idempotencyKey, tx.getId())
-                )
-        )
-        .doFinally(signal -> {
-          // Always release the processing lock
-          redisTemplate.delete(processingKey)
-              .subscribe(deleted -> 
-                  log.info("Released processing lock for key: {}", idempotencyKey)
-              );
-        })
-        .onErrorResume(error -> {
-          log.error("Error during idempotent execution for key: {}", idempotencyKey, error);
-          // Clean up on error
-          return redisTemplate.delete(processingKey)
-              .then(Mono.error(error));
+  private Mono<Transaction> claimAndExecute(String idempotencyKey, String owner,
+                                            Mono<Transaction> operation, long deadline) {
+    return store.claim(idempotencyKey, owner, PROCESSING_TTL)
+        .flatMap(claim -> switch (claim.outcome()) {
+          case CLAIMED -> {
+            log.info("Acquired processing lock for key: {}", idempotencyKey);
+            yield executeAndCache(idempotencyKey, owner, operation);
+          }
+          case BUSY -> {
+            if (waitForDuplicates && deadline - System.nanoTime() > 0) {
+              yield awaitOriginal(idempotencyKey, owner, operation, deadline);
+            }
+            log.warn("Duplicate request detected (processing) for key: {}", idempotencyKey);
+            yield Mono.error(new DuplicateRequestException(
+                "A request with the same idempotency key is currently being processed. Please try again later."
+            ));
+          }
+          case COMPLETED -> {
+            log.info("Found cached result for key: {}", idempotencyKey);
+            yield Mono.fromCallable(() -> codec.decode(claim.result()))
+                .doOnSuccess(tx -> {
+                  nearCache.put(idempotencyKey, tx, claim.remainingTtl());
+                  log.info("Returning cached transaction ID: {}", tx.getId());
+                });
+          }
         });
   }
 
   /**
-   * Serializes a Transaction object to JSON string
+   * Waits until the request holding the key on another node completes or gives
+   * up the lock, then claims again: that either returns the original's result or,
+   * if the original failed, lets this request run the operation itself.
    */
-  private Mono<String> serializeTransaction(Transaction transaction) {
-    return Mono.fromCallable(() -> {
-      try {
-        return objectMapper.writeValueAsString(transaction);
-      } catch (JsonProcessingException e) {
-        throw new RuntimeException("Failed to serialize transaction", e);
-      }
-    });
+  private Mono<Transaction> awaitOriginal(String idempotencyKey, String owner,
+                                          Mono<Transaction> operation, long deadline) {
+    long remaining = deadline - System.nanoTime();
+    Duration maxWait = Duration.ofNanos(Math.min(remaining, waitPollInterval.toNanos()));
+    log.info("Waiting for in-flight request with key: {}", idempotencyKey);
+    return store.awaitChange(idempotencyKey, maxWait)
+        .then(Mono.defer(() -> claimAndExecute(idempotencyKey, owner, operation, deadline)));
   }
 
   /**
-   * Deserializes a JSON string to Transaction object
+   * Executes the operation, then caches the result and releases the lock in one store call.
+   * On error or cancellation, only the lock is released (if still ours).
    */
-  private Mono<Transaction> deserializeTransaction(String json) {
-    return Mono.fromCallable(() -> {
-      try {
-        return objectMapper.readValue(json, Transaction.class);
-      } catch (JsonProcessingException e) {
-        throw new RuntimeException("Failed to deserialize transaction", e);
-      }
-    });
+  private Mono<Transaction> executeAndCache(String idempotencyKey, String owner, Mono<Transaction> operation) {
+    return operation
+        .flatMap(transaction ->
+            Mono.fromCallable(() -> codec.encode(transaction))
+                .flatMap(encoded -> store.complete(idempotencyKey, owner, encoded, TTL))
+                .then(Mono.just(transaction))
+                .doOnSuccess(tx -> {
+                  nearCache.put(idempotencyKey, tx, TTL);
+                  log.info("Cached transaction result for key: {} with ID: {}",
+                      idempotencyKey, tx.getId());
+                })
+        )
+        .onErrorResume(error -> {
+          log.error("Error during idempotent execution for key: {}", idempotencyKey, error);
+          return releaseLock(idempotencyKey, owner)
+              .then(Mono.error(error));
+        })
+        .doOnCancel(() -> releaseLock(idempotencyKey, owner).subscribe());
+  }
+
+  private Mono<Void> releaseLock(String idempotencyKey, String owner) {
+    return store.release(idempotencyKey, owner)
+        .doOnSuccess(v -> log.info("Released processing lock for key: {}", idempotencyKey));
   }
 
   /**
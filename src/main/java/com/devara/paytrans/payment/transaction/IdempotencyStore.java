@@ -0,0 +1,76 @@
+package com.devara.paytrans.payment.transaction;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Storage behind {@link IdempotencyService}: completed results plus a
+ * per-key processing lock.
+ *
+ * Implementations are selected with paytrans.idempotency.store:
+ * - redis  (default) shared across nodes, see {@link RedisIdempotencyStore}
+ * - memory single-node, no network hop, see {@link InMemoryIdempotencyStore}
+ *
+ * Each operation must be atomic for its key. Lock owners are opaque tokens; a
+ * lock is only released or replaced by the owner that claimed it.
+ */
+public interface IdempotencyStore {
+
+  /**
+   * Returns the completed result for the key if there is one. Otherwise tries to
+   * take the processing lock for the owner.
+   */
+  Mono<ClaimResult> claim(String idempotencyKey, String owner, Duration processingTtl);
+
+  /**
+   * Stores the result and releases the owner's processing lock.
+   */
+  Mono<Void> complete(String idempotencyKey, String owner, byte[] result, Duration ttl);
+
+  /**
+   * Releases the processing lock if it is still held by the owner.
+   */
+  Mono<Void> release(String idempotencyKey, String owner);
+
+  /**
+   * Completes when the key is completed or its lock released after this call,
+   * or empty once maxWait has passed, whichever comes first. Notifications are
+   * best effort; callers re-check with {@link #claim} either way.
+   */
+  Mono<Void> awaitChange(String idempotencyKey, Duration maxWait);
+
+  /**
+   * Outcome of {@link #claim}.
+   *
+   * @param outcome      what the store found for the key
+   * @param result       encoded result when COMPLETED, otherwise null
+   * @param remainingTtl remaining lifetime of the result when COMPLETED, otherwise null
+   */
+  record ClaimResult(Outcome outcome, byte[] result, Duration remainingTtl) {
+
+    private static final ClaimResult CLAIMED = new ClaimResult(Outcome.CLAIMED, null, null);
+    private static final ClaimResult BUSY = new ClaimResult(Outcome.BUSY, null, null);
+
+    public static ClaimResult claimed() {
+      return CLAIMED;
+    }
+
+    public static ClaimResult busy() {
+      return BUSY;
+    }
+
+    public static ClaimResult completed(byte[] result, Duration remainingTtl) {
+      return new ClaimResult(Outcome.COMPLETED, result, remainingTtl);
+    }
+  }
+
+  enum Outcome {
+    /** A result is already stored. */
+    COMPLETED,
+    /** The caller now holds the processing lock. */
+    CLAIMED,
+    /** Another caller holds the processing lock. */
+    BUSY
+  }
+}
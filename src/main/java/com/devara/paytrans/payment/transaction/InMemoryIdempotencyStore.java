@@ -0,0 +1,290 @@
+package com.devara.paytrans.payment.transaction;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded idempotency store for single-node deployments and tests.
+ *
+ * Keys are spread over a power-of-two number of shards, each a plain map guarded
+ * by its own monitor, so claims on different keys rarely contend. Every
+ * operation is atomic within its shard.
+ *
+ * Expiry uses a hashed timing wheel: each write drops a ticket into the slot of
+ * its expiry tick, and a sweeper drains one slot per tick. Tickets whose entry
+ * has since been replaced are discarded; tickets due in a later revolution go
+ * back into their slot. Expired entries are also dropped lazily on access.
+ *
+ * Memory is bounded by max-entries. At the limit new claims fail with
+ * {@link StoreFullException} instead of evicting live results, which would
+ * silently break the idempotency guarantee.
+ */
+@Component
+@ConditionalOnProperty(prefix = "paytrans.idempotency", name = "store", havingValue = "memory")
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+  private final Clock clock;
+  private final Shard[] shards;
+  private final int shardMask;
+  private final int maxEntries;
+  private final AtomicInteger size = new AtomicInteger();
+  private final KeyWaiters waiters = new KeyWaiters();
+
+  private final Queue<Ticket>[] wheel;
+  private final long tickMillis;
+  private long lastSweptTick;
+  private Disposable sweeper;
+
+  @Autowired
+  public InMemoryIdempotencyStore(IdempotencyProperties properties) {
+    this(properties.getMemory(), Clock.systemUTC());
+  }
+
+  @SuppressWarnings("unchecked")
+  InMemoryIdempotencyStore(IdempotencyProperties.Memory config, Clock clock) {
+    if (Integer.bitCount(config.getShards()) != 1) {
+      throw new IllegalArgumentException("paytrans.idempotency.memory.shards must be a power of two");
+    }
+    this.clock = clock;
+    this.shards = new Shard[config.getShards()];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
+    this.shardMask = shards.length - 1;
+    this.maxEntries = config.getMaxEntries();
+    this.tickMillis = config.getTick().toMillis();
+    this.wheel = new Queue[config.getWheelSize()];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new ConcurrentLinkedQueue<>();
+    }
+    this.lastSweptTick = clock.millis() / tickMillis;
+  }
+
+  @PostConstruct
+  public void start() {
+    sweeper = Flux.interval(Duration.ofMillis(tickMillis), Schedulers.single())
+        .subscribe(tick -> sweep());
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (sweeper != null) {
+      sweeper.dispose();
+    }
+  }
+
+  @Override
+  public Mono<ClaimResult> claim(String idempotencyKey, String owner, Duration processingTtl) {
+    return Mono.fromCallable(() -> {
+      long now = clock.millis();
+      Shard shard = shardFor(idempotencyKey);
+      Entry created;
+      synchronized (shard) {
+        Entry existing = shard.live(idempotencyKey, now, size);
+        if (existing != null) {
+          return existing.result != null
+              ? ClaimResult.completed(existing.result, Duration.ofMillis(existing.expiresAt - now))
+              : ClaimResult.busy();
+        }
+        if (size.get() >= maxEntries) {
+          throw new StoreFullException("Idempotency store is full (" + maxEntries + " entries)");
+        }
+        created = new Entry(owner, null, now + processingTtl.toMillis());
+        shard.entries.put(idempotencyKey, created);
+        size.incrementAndGet();
+      }
+      schedule(idempotencyKey, created.expiresAt);
+      return ClaimResult.claimed();
+    });
+  }
+
+  @Override
+  public Mono<Void> complete(String idempotencyKey, String owner, byte[] result, Duration ttl) {
+    return Mono.fromRunnable(() -> {
+      Shard shard = shardFor(idempotencyKey);
+      Entry completed = new Entry(null, result, clock.millis() + ttl.toMillis());
+      synchronized (shard) {
+        if (shard.entries.put(idempotencyKey, completed) == null) {
+          size.incrementAndGet();
+        }
+      }
+      schedule(idempotencyKey, completed.expiresAt);
+      waiters.signal(idempotencyKey);
+    });
+  }
+
+  @Override
+  public Mono<Void> release(String idempotencyKey, String owner) {
+    return Mono.fromRunnable(() -> {
+      Shard shard = shardFor(idempotencyKey);
+      synchronized (shard) {
+        Entry entry = shard.entries.get(idempotencyKey);
+        if (entry != null && entry.result == null && owner.equals(entry.owner)) {
+          shard.entries.remove(idempotencyKey);
+          size.decrementAndGet();
+        }
+      }
+      waiters.signal(idempotencyKey);
+    });
+  }
+
+  @Override
+  public Mono<Void> awaitChange(String idempotencyKey, Duration maxWait) {
+    return waiters.await(idempotencyKey, maxWait);
+  }
+
+  /**
+   * Completed result for the key, or empty.
+   */
+  Mono<byte[]> findResult(String idempotencyKey) {
+    return Mono.fromCallable(() -> {
+      Entry entry = liveEntry(idempotencyKey);
+      return entry != null ? entry.result : null;
+    });
+  }
+
+  /**
+   * Remaining lifetime of the completed result for the key, or empty.
+   */
+  Mono<Duration> remainingTtl(String idempotencyKey) {
+    return Mono.fromCallable(() -> {
+      Entry entry = liveEntry(idempotencyKey);
+      return entry != null && entry.result != null
+          ? Duration.ofMillis(entry.expiresAt - clock.millis())
+          : null;
+    });
+  }
+
+  /**
+   * Number of entries currently held, including not yet swept expired ones.
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Drops every entry. Intended for tests.
+   */
+  void clear() {
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        size.addAndGet(-shard.entries.size());
+        shard.entries.clear();
+      }
+    }
+    for (Queue<Ticket> slot : wheel) {
+      slot.clear();
+    }
+  }
+
+  /**
+   * Advances the wheel to the current tick, expiring due entries.
+   */
+  synchronized void sweep() {
+    long now = clock.millis();
+    long currentTick = now / tickMillis;
+    // A stalled sweeper never needs to walk more than one full revolution
+    long fromTick = Math.max(lastSweptTick + 1, currentTick - wheel.length + 1);
+    for (long tick = fromTick; tick <= currentTick; tick++) {
+      Queue<Ticket> slot = wheel[(int) (tick % wheel.length)];
+      int pending = slot.size();
+      for (int i = 0; i < pending; i++) {
+        Ticket ticket = slot.poll();
+        if (ticket == null) {
+          break;
+        }
+        if (!expire(ticket, now)) {
+          continue;
+        }
+        if (ticket.expiresAt > now) {
+          // Due in a later revolution
+          slot.offer(ticket);
+        }
+      }
+    }
+    lastSweptTick = currentTick;
+  }
+
+  /**
+   * @return true if the ticket is still current but not yet due
+   */
+  private boolean expire(Ticket ticket, long now) {
+    Shard shard = shardFor(ticket.key);
+    synchronized (shard) {
+      Entry entry = shard.entries.get(ticket.key);
+      if (entry == null || entry.expiresAt != ticket.expiresAt) {
+        return false;
+      }
+      if (entry.expiresAt <= now) {
+        shard.entries.remove(ticket.key);
+        size.decrementAndGet();
+        return false;
+      }
+      return true;
+    }
+  }
+
+  private Entry liveEntry(String idempotencyKey) {
+    Shard shard = shardFor(idempotencyKey);
+    synchronized (shard) {
+      return shard.live(idempotencyKey, clock.millis(), size);
+    }
+  }
+
+  private void schedule(String key, long expiresAt) {
+    wheel[(int) ((expiresAt / tickMillis) % wheel.length)].offer(new Ticket(key, expiresAt));
+  }
+
+  private Shard shardFor(String key) {
+    int h = key.hashCode();
+    return shards[(h ^ (h >>> 16)) & shardMask];
+  }
+
+  private static final class Shard {
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Returns the unexpired entry for the key, removing it if it has expired.
+     * Caller holds the shard monitor.
+     */
+    Entry live(String key, long now, AtomicInteger size) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.expiresAt <= now) {
+        entries.remove(key);
+        size.decrementAndGet();
+        return null;
+      }
+      return entry;
+    }
+  }
+
+  /**
+   * Either a processing lock (owner set) or a completed result.
+   */
+  private record Entry(String owner, byte[] result, long expiresAt) {
+  }
+
+  private record Ticket(String key, long expiresAt) {
+  }
+
+  public static class StoreFullException extends RuntimeException {
+    public StoreFullException(String message) {
+      super(message);
+    }
+  }
+}
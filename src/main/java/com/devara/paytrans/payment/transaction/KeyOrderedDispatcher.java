@@ -0,0 +1,136 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Processes a batch of records concurrently while keeping per-key order.
+ *
+ * Records are grouped by key in arrival order. Each group runs sequentially on
+ * its own virtual thread, so events for one key are handled in order while
+ * different keys proceed in parallel. At most max-concurrency groups run at
+ * once. Records without a key have no ordering requirement and each form their
+ * own group.
+ *
+ * {@link #dispatch} returns only once every record has been handled (or handed
+ * to the retry tiers), which lets the caller commit the batch afterwards.
+ */
+@Component
+@ConditionalOnProperty(prefix = "paytrans.kafka.consumer", name = "mode", havingValue = "batch")
+public class KeyOrderedDispatcher {
+
+  private final Consumer<ConsumerRecord<String, TransactionEvent>> handler;
+  private final Semaphore permits;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  @Autowired
+  public KeyOrderedDispatcher(TransactionEventRetryRouter router, KafkaClientProperties properties) {
+    this(router::process, properties.getConsumer().getMaxConcurrency());
+  }
+
+  KeyOrderedDispatcher(Consumer<ConsumerRecord<String, TransactionEvent>> handler, int maxConcurrency) {
+    this.handler = handler;
+    this.permits = new Semaphore(maxConcurrency);
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Handles every record, then returns.
+   *
+   * @throws KeyGroupFailedException if any group failed; other groups still ran to completion
+   */
+  public void dispatch(List<ConsumerRecord<String, TransactionEvent>> records) {
+    List<Future<?>> running = new ArrayList<>();
+    try {
+      for (List<ConsumerRecord<String, TransactionEvent>> group : groupByKey(records)) {
+        permits.acquire();
+        try {
+          running.add(executor.submit(() -> runGroup(group)));
+        } catch (RuntimeException e) {
+          permits.release();
+          throw e;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running.forEach(future -> future.cancel(true));
+      throw new KeyGroupFailedException("Interrupted while dispatching batch", e);
+    }
+    awaitAll(running);
+  }
+
+  private void runGroup(List<ConsumerRecord<String, TransactionEvent>> group) {
+    try {
+      for (ConsumerRecord<String, TransactionEvent> record : group) {
+        handler.accept(record);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  private static List<List<ConsumerRecord<String, TransactionEvent>>> groupByKey(
+      List<ConsumerRecord<String, TransactionEvent>> records) {
+    Map<String, List<ConsumerRecord<String, TransactionEvent>>> byKey = new LinkedHashMap<>();
+    List<List<ConsumerRecord<String, TransactionEvent>>> groups = new ArrayList<>();
+    for (ConsumerRecord<String, TransactionEvent> record : records) {
+      if (record.key() == null) {
+        groups.add(List.of(record));
+      } else {
+        byKey.computeIfAbsent(record.key(), key -> {
+          List<ConsumerRecord<String, TransactionEvent>> group = new ArrayList<>();
+          groups.add(group);
+          return group;
+        }).add(record);
+      }
+    }
+    return groups;
+  }
+
+  private static void awaitAll(List<Future<?>> running) {
+    Throwable failure = null;
+    for (Future<?> future : running) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        } else {
+          failure.addSuppressed(e.getCause());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        running.forEach(f -> f.cancel(true));
+        throw new KeyGroupFailedException("Interrupted while waiting for batch", e);
+      }
+    }
+    if (failure != null) {
+      throw new KeyGroupFailedException("Batch processing failed", failure);
+    }
+  }
+
+  public static class KeyGroupFailedException extends RuntimeException {
+    public KeyGroupFailedException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.devara.paytrans.payment.transaction;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Requests parked until an idempotency key changes, used by the stores to
+ * implement {@link IdempotencyStore#awaitChange}.
+ *
+ * All waiters on a key share one sink, which is removed and fired on the next
+ * signal for that key.
+ */
+final class KeyWaiters {
+
+  private final ConcurrentHashMap<String, Sinks.Empty<Void>> waiters = new ConcurrentHashMap<>();
+
+  Mono<Void> await(String key, Duration maxWait) {
+    Sinks.Empty<Void> sink = waiters.computeIfAbsent(key, k -> Sinks.empty());
+    return sink.asMono()
+        .timeout(maxWait, Mono.empty())
+        // On timeout, drop the sink so idle keys do not accumulate; any other
+        // waiter on it falls back to polling
+        .doOnCancel(() -> waiters.remove(key, sink))
+        .doOnSuccess(v -> waiters.remove(key, sink));
+  }
+
+  void signal(String key) {
+    Sinks.Empty<Void> sink = waiters.remove(key);
+    if (sink != null) {
+      sink.tryEmitEmpty();
+    }
+  }
+
+  int size() {
+    return waiters.size();
+  }
+}
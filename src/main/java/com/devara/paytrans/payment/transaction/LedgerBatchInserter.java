@@ -0,0 +1,149 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Multi-row INSERTs for transactions, transaction_ledger and ledger_postings rows.
+ *
+ * One statement per table and chunk replaces a round trip per row. Transaction
+ * ids are reserved up front from transactions_id_seq, so ledger rows can
+ * reference their transaction without reading ids back. Callers provide the
+ * surrounding database transaction.
+ */
+@Component
+public class LedgerBatchInserter {
+
+  // Keeps the widest statement (ledger, 12 columns) far below PostgreSQL's 65535 bind limit
+  private static final int MAX_ROWS_PER_STATEMENT = 1_000;
+
+  private final DatabaseClient db;
+
+  public LedgerBatchInserter(DatabaseClient db) {
+    this.db = db;
+  }
+
+  public Mono<List<Long>> reserveTransactionIds(int count) {
+    return db.sql("SELECT nextval('transactions_id_seq') AS id FROM generate_series(1, $1)")
+        .bind(0, count)
+        .map(row -> row.get("id", Long.class))
+        .all()
+        .collectList();
+  }
+
+  /**
+   * Inserts transactions whose ids were reserved with {@link #reserveTransactionIds}.
+   * Missing timestamps default to now and the version starts at 0.
+   */
+  public Mono<Void> insertTransactions(List<Transaction> transactions) {
+    Instant now = Instant.now();
+    return insert("INSERT INTO transactions (id, amount, currency, status, fee, net_amount, created_at, updated_at, version) VALUES ",
+        9, transactions, (tx, params) -> {
+          if (tx.getCreatedAt() == null) {
+            tx.setCreatedAt(now);
+          }
+          if (tx.getUpdatedAt() == null) {
+            tx.setUpdatedAt(tx.getCreatedAt());
+          }
+          if (tx.getVersion() == null) {
+            tx.setVersion(0);
+          }
+          params.add(Parameter.from(tx.getId()));
+          params.add(Parameter.from(tx.getAmount()));
+          params.add(Parameter.from(tx.getCurrency()));
+          params.add(Parameter.from(tx.getStatus()));
+          params.add(Parameter.fromOrEmpty(tx.getFee() != null ? tx.getFee() : BigDecimal.ZERO, BigDecimal.class));
+          params.add(Parameter.from(tx.getNetAmount()));
+          params.add(Parameter.from(tx.getCreatedAt()));
+          params.add(Parameter.from(tx.getUpdatedAt()));
+          params.add(Parameter.from(tx.getVersion()));
+        });
+  }
+
+  /**
+   * Inserts ledger rows. Missing changed-at and changed-by default to now and SYSTEM.
+   */
+  public Mono<Void> insertLedger(List<TransactionLedger> entries) {
+    Instant now = Instant.now();
+    return insert("INSERT INTO transaction_ledger (transaction_id, operation, old_status, new_status, old_amount, "
+            + "new_amount, changed_by, changed_at, reason, account_number, counterparty, balance_after) VALUES ",
+        12, entries, (entry, params) -> {
+          params.add(Parameter.from(entry.getTransactionId()));
+          params.add(Parameter.from(entry.getOperation()));
+          params.add(Parameter.fromOrEmpty(entry.getOldStatus(), String.class));
+          params.add(Parameter.from(entry.getNewStatus()));
+          params.add(Parameter.fromOrEmpty(entry.getOldAmount(), BigDecimal.class));
+          params.add(Parameter.from(entry.getNewAmount()));
+          params.add(Parameter.from(entry.getChangedBy() != null ? entry.getChangedBy() : "SYSTEM"));
+          params.add(Parameter.from(entry.getChangedAt() != null ? entry.getChangedAt() : now));
+          params.add(Parameter.fromOrEmpty(entry.getReason(), String.class));
+          params.add(Parameter.fromOrEmpty(entry.getAccountNumber(), String.class));
+          params.add(Parameter.fromOrEmpty(entry.getCounterparty(), String.class));
+          params.add(Parameter.fromOrEmpty(entry.getBalanceAfter(), BigDecimal.class));
+        });
+  }
+
+  /**
+   * Inserts double-entry postings. posted_at is left to the column default
+   * (clock_timestamp()), i.e. taken while the caller still holds the account locks.
+   */
+  public Mono<Void> insertPostings(List<LedgerPosting> postings) {
+    return insert("INSERT INTO ledger_postings (transaction_id, account_number, sequence_no, direction, amount, "
+            + "balance_after, counterparty) VALUES ",
+        7, postings, (posting, params) -> {
+          params.add(Parameter.from(posting.getTransactionId()));
+          params.add(Parameter.from(posting.getAccountNumber()));
+          params.add(Parameter.fromOrEmpty(posting.getSequenceNo(), Long.class));
+          params.add(Parameter.from(posting.getDirection()));
+          params.add(Parameter.from(posting.getAmount()));
+          params.add(Parameter.fromOrEmpty(posting.getBalanceAfter(), BigDecimal.class));
+          params.add(Parameter.from(posting.getCounterparty()));
+        });
+  }
+
+  private <T> Mono<Void> insert(String prefix, int columns, List<T> rows, BiConsumer<T, List<Parameter>> binder) {
+    if (rows.isEmpty()) {
+      return Mono.empty();
+    }
+    List<List<T>> chunks = new ArrayList<>();
+    for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+      chunks.add(rows.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, rows.size())));
+    }
+    return Flux.fromIterable(chunks)
+        .concatMap(chunk -> {
+          List<Parameter> params = new ArrayList<>(chunk.size() * columns);
+          chunk.forEach(row -> binder.accept(row, params));
+          DatabaseClient.GenericExecuteSpec spec = db.sql(prefix + values(chunk.size(), columns));
+          for (int i = 0; i < params.size(); i++) {
+            spec = spec.bind(i, params.get(i));
+          }
+          return spec.fetch().rowsUpdated();
+        })
+        .then();
+  }
+
+  /**
+   * "($1, $2), ($3, $4), ..." for a multi-row VALUES list.
+   */
+  static String values(int rows, int columns) {
+    StringBuilder sql = new StringBuilder();
+    int param = 1;
+    for (int row = 0; row < rows; row++) {
+      sql.append(row == 0 ? "(" : ", (");
+      for (int column = 0; column < columns; column++) {
+        sql.append(column == 0 ? "$" : ", $").append(param++);
+      }
+      sql.append(')');
+    }
+    return sql.toString();
+  }
+}
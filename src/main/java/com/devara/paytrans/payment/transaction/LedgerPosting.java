@@ -0,0 +1,51 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One leg of a transfer in the double-entry ledger.
+ *
+ * Every transfer posts a DEBIT on the source and a CREDIT on the destination.
+ * Each posting carries the account's balance right after it and a sequence
+ * number that increases by one per posting on that account, so balance history
+ * is read from a single row instead of being replayed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("ledger_postings")
+public class LedgerPosting {
+  @Id
+  private Long id;
+
+  @Column("transaction_id")
+  private Long transactionId;
+
+  @Column("account_number")
+  private String accountNumber;
+
+  // Null (like balanceAfter) for legs on striped accounts
+  @Column("sequence_no")
+  private Long sequenceNo;
+
+  private String direction;  // DEBIT, CREDIT
+
+  private BigDecimal amount;
+
+  @Column("balance_after")
+  private BigDecimal balanceAfter;
+
+  private String counterparty;
+
+  @Column("posted_at")
+  private Instant postedAt;
+
+  public static final String DEBIT = "DEBIT";
+  public static final String CREDIT = "CREDIT";
+}
@@ -0,0 +1,54 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Repository
+public interface LedgerPostingRepository extends ReactiveCrudRepository<LedgerPosting, Long> {
+
+  /**
+   * Posts both legs of a transfer in one statement. Must run in the transaction
+   * that moved the balances, while the account rows are still locked.
+   */
+  @Modifying
+  @Query("""
+      INSERT INTO ledger_postings (transaction_id, account_number, sequence_no, direction, amount, balance_after, counterparty)
+      VALUES (:transactionId, :fromAccount, :fromSeq, 'DEBIT', :amount, :fromBalance, :toAccount),
+             (:transactionId, :toAccount, :toSeq, 'CREDIT', :amount, :toBalance, :fromAccount)
+      """)
+  Mono<Integer> postTransfer(Long transactionId, String fromAccount, String toAccount, BigDecimal amount,
+                             Long fromSeq, BigDecimal fromBalance, Long toSeq, BigDecimal toBalance);
+
+  /**
+   * Last posting at or before {@code at}, whose balance_after is the balance at
+   * that time: one backward step on idx_postings_account_time. Unsequenced
+   * (striped) legs sort first among equal timestamps, so the caller sees them
+   * rather than an older figure. Empty if the account had no posting by then.
+   */
+  @Query("""
+      SELECT * FROM ledger_postings
+       WHERE account_number = :accountNumber AND posted_at <= :at
+       ORDER BY posted_at DESC, sequence_no DESC
+       LIMIT 1
+      """)
+  Mono<LedgerPosting> lastPostingAsOf(String accountNumber, Instant at);
+
+  /**
+   * Postings of one account in [from, to), oldest first, as a range scan on
+   * idx_postings_account_time.
+   */
+  @Query("""
+      SELECT * FROM ledger_postings
+       WHERE account_number = :accountNumber AND posted_at >= :from AND posted_at < :to
+       ORDER BY posted_at, sequence_no
+       LIMIT :limit
+      """)
+  Flux<LedgerPosting> statement(String accountNumber, Instant from, Instant to, int limit);
+}
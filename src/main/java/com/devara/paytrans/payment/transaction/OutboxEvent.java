@@ -0,0 +1,68 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Transaction event waiting in the outbox.
+ *
+ * Written in the same database transaction as its Transaction row, so an event
+ * exists if and only if the transaction was committed. OutboxRelay moves rows
+ * PENDING -> IN_FLIGHT (leased) -> PUBLISHED.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("transaction_outbox")
+public class OutboxEvent {
+  @Id
+  private Long id;
+
+  @Column("transaction_id")
+  private Long transactionId;
+
+  @Column("event_key")
+  private String eventKey;
+
+  private BigDecimal amount;
+
+  private String status;
+
+  private String state;
+
+  private Integer attempts;
+
+  @Column("created_at")
+  private Instant createdAt;
+
+  @Column("claimed_until")
+  private Instant claimedUntil;
+
+  @Column("published_at")
+  private Instant publishedAt;
+
+  public static final String STATE_PENDING = "PENDING";
+  public static final String STATE_IN_FLIGHT = "IN_FLIGHT";
+  public static final String STATE_PUBLISHED = "PUBLISHED";
+
+  public static OutboxEvent pending(Transaction transaction, String eventKey) {
+    return OutboxEvent.builder()
+        .transactionId(transaction.getId())
+        .eventKey(eventKey)
+        .amount(transaction.getAmount())
+        .status(transaction.getStatus())
+        .state(STATE_PENDING)
+        .attempts(0)
+        .createdAt(Instant.now())
+        .build();
+  }
+
+  public TransactionEvent toEvent() {
+    return new TransactionEvent(transactionId, amount, status);
+  }
+}
@@ -0,0 +1,54 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+
+@Repository
+public interface OutboxEventRepository extends ReactiveCrudRepository<OutboxEvent, Long> {
+
+  /**
+   * Claims up to {@code limit} unpublished rows for this relay, oldest first.
+   *
+   * Rows locked by another relay are skipped rather than waited on, so several
+   * relays can drain the outbox concurrently. IN_FLIGHT rows whose lease ran
+   * out (their relay died mid-batch) are claimed again. RETURNING does not
+   * keep the subquery's order; callers sort by id.
+   */
+  @Query("""
+      UPDATE transaction_outbox
+         SET state = 'IN_FLIGHT',
+             claimed_until = now() + (:leaseSeconds * interval '1 second'),
+             attempts = attempts + 1
+       WHERE id IN (
+             SELECT id FROM transaction_outbox
+              WHERE state = 'PENDING'
+                 OR (state = 'IN_FLIGHT' AND claimed_until < now())
+              ORDER BY id
+              LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+      RETURNING *
+      """)
+  Flux<OutboxEvent> claimBatch(int limit, long leaseSeconds);
+
+  @Modifying
+  @Query("UPDATE transaction_outbox SET state = 'PUBLISHED', published_at = now(), claimed_until = NULL WHERE id IN (:ids)")
+  Mono<Integer> markPublished(Collection<Long> ids);
+
+  /**
+   * Hands rows that failed to publish back to the next batch.
+   */
+  @Modifying
+  @Query("UPDATE transaction_outbox SET state = 'PENDING', claimed_until = NULL WHERE id IN (:ids)")
+  Mono<Integer> releaseClaims(Collection<Long> ids);
+
+  @Modifying
+  @Query("DELETE FROM transaction_outbox WHERE state = 'PUBLISHED' AND published_at < :before")
+  Mono<Integer> purgePublishedBefore(Instant before);
+}
@@ -0,0 +1,43 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Transaction event outbox settings (paytrans.outbox.*).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "paytrans.outbox")
+public class OutboxProperties {
+
+  /**
+   * When true, events are written to the outbox with the transaction and relayed
+   * to Kafka in the background. When false, payments publish directly.
+   */
+  private boolean enabled = true;
+
+  /**
+   * Rows claimed per relay round trip.
+   */
+  private int batchSize = 500;
+
+  /**
+   * How often the relay looks for new rows once the outbox is drained.
+   */
+  private Duration pollInterval = Duration.ofMillis(100);
+
+  /**
+   * How long a claimed batch stays reserved for one relay before another may
+   * take it over.
+   */
+  private Duration lease = Duration.ofSeconds(30);
+
+  /**
+   * How long published rows are kept before being purged.
+   */
+  private Duration retention = Duration.ofHours(1);
+}
@@ -0,0 +1,189 @@
+package com.devara.paytrans.payment.transaction;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the transaction outbox to Kafka.
+ *
+ * Each poll claims batches with FOR UPDATE SKIP LOCKED until the outbox is empty,
+ * so any number of nodes can relay without double-claiming rows. A batch is
+ * handed to the shared {@link TransactionEventPublisher} pipeline with one
+ * in-order stream per event key, keys in parallel, and acknowledged rows are
+ * marked PUBLISHED with a single UPDATE. Once a row fails, the later rows of its
+ * key are not sent; they go back to PENDING with it, so a key's events are never
+ * published out of order.
+ *
+ * With paytrans.kafka.producer.transactional-id set, each batch is instead sent
+ * in one Kafka transaction: read_committed consumers see all of it or none of
+ * it, and a failed batch is released whole.
+ *
+ * Delivery is at-least-once: a relay that dies after publishing but before
+ * marking its batch leaves the rows to be re-sent when their lease expires.
+ * The idempotent producer rules out duplicates from its own retries, so this
+ * is the only source of repeats and consumers de-duplicate by transaction id.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "paytrans.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+  private static final Duration PURGE_INTERVAL = Duration.ofMinutes(1);
+
+  private final OutboxEventRepository outboxRepository;
+  private final TransactionEventPublisher eventPublisher;
+  private final OutboxProperties properties;
+  private final KafkaSender<String, TransactionEvent> transactionalSender;
+
+  private Disposable relayLoop;
+  private Disposable purgeLoop;
+
+  public OutboxRelay(OutboxEventRepository outboxRepository,
+                     TransactionEventPublisher eventPublisher,
+                     OutboxProperties properties,
+                     @Qualifier("outboxSender") Optional<KafkaSender<String, TransactionEvent>> transactionalSender) {
+    this.outboxRepository = outboxRepository;
+    this.eventPublisher = eventPublisher;
+    this.properties = properties;
+    this.transactionalSender = transactionalSender.orElse(null);
+  }
+
+  @PostConstruct
+  public void start() {
+    relayLoop = Flux.interval(properties.getPollInterval())
+        .onBackpressureDrop()
+        .concatMap(tick -> drain(), 1)
+        .subscribe();
+    purgeLoop = Flux.interval(PURGE_INTERVAL)
+        .onBackpressureDrop()
+        .concatMap(tick -> purge(), 1)
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (relayLoop != null) {
+      relayLoop.dispose();
+    }
+    if (purgeLoop != null) {
+      purgeLoop.dispose();
+    }
+  }
+
+  /**
+   * Relays full batches back to back until a short batch shows the outbox is empty.
+   *
+   * @return number of rows claimed
+   */
+  Mono<Integer> drain() {
+    return relayBatch()
+        .expand(claimed -> claimed == properties.getBatchSize() ? relayBatch() : Mono.empty())
+        .reduce(0, Integer::sum)
+        .onErrorResume(error -> {
+          log.warn("Outbox relay round failed: {}", error.getMessage());
+          return Mono.just(0);
+        });
+  }
+
+  private Mono<Integer> relayBatch() {
+    return outboxRepository.claimBatch(properties.getBatchSize(), properties.getLease().toSeconds())
+        // RETURNING gives no row order
+        .collectSortedList(Comparator.comparing(OutboxEvent::getId))
+        .flatMap(batch -> batch.isEmpty() ? Mono.just(0) : publish(batch).thenReturn(batch.size()));
+  }
+
+  private Mono<Void> publish(List<OutboxEvent> batch) {
+    return transactionalSender != null ? publishTransactionally(batch) : publishEach(batch);
+  }
+
+  private Mono<Void> publishTransactionally(List<OutboxEvent> batch) {
+    List<Long> ids = batch.stream().map(OutboxEvent::getId).toList();
+    Flux<SenderRecord<String, TransactionEvent, Long>> records = Flux.fromIterable(batch)
+        .map(row -> SenderRecord.create(
+            new ProducerRecord<>(TransactionEventPublisher.TOPIC, row.getEventKey(), row.toEvent()), row.getId()));
+    return transactionalSender.sendTransactionally(Flux.just(records))
+        .concatMap(Flux::then)
+        .then(Mono.defer(() -> outboxRepository.markPublished(ids)))
+        .onErrorResume(error -> {
+          log.warn("Outbox relay: transaction for {} events aborted, will retry: {}", batch.size(), error.getMessage());
+          return outboxRepository.releaseClaims(ids);
+        })
+        .then();
+  }
+
+  private Mono<Void> publishEach(List<OutboxEvent> batch) {
+    Map<String, List<OutboxEvent>> byKey = batch.stream()
+        .collect(Collectors.groupingBy(OutboxEvent::getEventKey, LinkedHashMap::new, Collectors.toList()));
+    ConcurrentLinkedQueue<Long> published = new ConcurrentLinkedQueue<>();
+    ConcurrentLinkedQueue<Long> failed = new ConcurrentLinkedQueue<>();
+    return Flux.fromIterable(byKey.values())
+        .flatMap(rows -> publishInOrder(rows, published, failed), byKey.size())
+        .then(Mono.defer(() -> {
+          Mono<Integer> mark = published.isEmpty()
+              ? Mono.just(0)
+              : outboxRepository.markPublished(new ArrayList<>(published));
+          Mono<Integer> release = failed.isEmpty()
+              ? Mono.just(0)
+              : outboxRepository.releaseClaims(new ArrayList<>(failed));
+          if (!failed.isEmpty()) {
+            log.warn("Outbox relay: {} of {} events not published, will retry", failed.size(), batch.size());
+          }
+          return mark.then(release).then();
+        }));
+  }
+
+  /**
+   * Sends one key's rows one after another; after the first failure the rest
+   * are only released.
+   */
+  private Mono<Void> publishInOrder(List<OutboxEvent> rows, Collection<Long> published, Collection<Long> failed) {
+    AtomicBoolean blocked = new AtomicBoolean();
+    return Flux.fromIterable(rows)
+        .concatMap(row -> {
+          if (blocked.get()) {
+            failed.add(row.getId());
+            return Mono.empty();
+          }
+          return eventPublisher.publish(row.getEventKey(), row.toEvent())
+              .doOnSuccess(metadata -> published.add(row.getId()))
+              .then()
+              .onErrorResume(error -> {
+                blocked.set(true);
+                failed.add(row.getId());
+                return Mono.empty();
+              });
+        })
+        .then();
+  }
+
+  private Mono<Integer> purge() {
+    return outboxRepository.purgePublishedBefore(Instant.now().minus(properties.getRetention()))
+        .onErrorResume(error -> {
+          log.warn("Outbox purge failed: {}", error.getMessage());
+          return Mono.just(0);
+        });
+  }
+}
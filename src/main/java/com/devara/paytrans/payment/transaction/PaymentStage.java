@@ -0,0 +1,29 @@
+package com.devara.paytrans.payment.transaction;
+
+/**
+ * Downstream stages of the payment pipeline.
+ *
+ * Each stage maps to named Resilience4j instances (see resilience4j.* in
+ * application.yml): a bulkhead that bounds how many calls may be in flight for
+ * that stage, and a time limiter that caps how long a single call may take, so a
+ * slow dependency sheds load instead of piling up requests.
+ */
+public enum PaymentStage {
+  FRAUD_DETECTION("fraudDetection"),
+  CURRENCY_CONVERSION("currencyConversion"),
+  FEE_CALCULATION("feeCalculation"),
+  NOTIFICATION("notification");
+
+  private final String instanceName;
+
+  PaymentStage(String instanceName) {
+    this.instanceName = instanceName;
+  }
+
+  /**
+   * Name of the Resilience4j instance configured for this stage.
+   */
+  public String instanceName() {
+    return instanceName;
+  }
+}
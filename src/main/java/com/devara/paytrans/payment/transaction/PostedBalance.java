@@ -0,0 +1,18 @@
+package com.devara.paytrans.payment.transaction;
+
+import java.math.BigDecimal;
+
+/**
+ * An account's balance and posting sequence number right after a balance leg.
+ *
+ * @param balance    balance after the leg
+ * @param postingSeq the leg's sequence number on the account (accounts.posting_seq)
+ */
+public record PostedBalance(BigDecimal balance, Long postingSeq) {
+
+  /**
+   * Leg on a striped account: the stripe row knows neither the account's total
+   * nor a sequence, and assigning one would serialize its legs again.
+   */
+  public static final PostedBalance UNSEQUENCED = new PostedBalance(null, null);
+}
@@ -0,0 +1,146 @@
+package com.devara.paytrans.payment.transaction;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Redis-backed idempotency store, shared by all nodes.
+ *
+ * Each operation is a single atomic Lua script call (see resources/redis).
+ * Keys: idempotency:&lt;key&gt; holds the result, idempotency:&lt;key&gt;:processing the lock.
+ *
+ * Completing or releasing a key publishes it on idempotency:events. A node only
+ * subscribes to that channel once one of its requests first waits on a key.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "paytrans.idempotency", name = "store", havingValue = "redis", matchIfMissing = true)
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+  private static final String IDEMPOTENCY_PREFIX = "idempotency:";
+  private static final String PROCESSING_SUFFIX = ":processing";
+  private static final String EVENTS_CHANNEL = "idempotency:events";
+
+  private static final RedisScript<byte[]> CLAIM_SCRIPT =
+      RedisScript.of(new ClassPathResource("redis/idempotency-claim.lua"), byte[].class);
+  private static final RedisScript<Long> COMPLETE_SCRIPT =
+      RedisScript.of(new ClassPathResource("redis/idempotency-complete.lua"), Long.class);
+  private static final RedisScript<Long> RELEASE_SCRIPT =
+      RedisScript.of(new ClassPathResource("redis/idempotency-release.lua"), Long.class);
+  private static final byte[] CLAIMED = ascii("__CLAIMED__");
+  private static final byte[] BUSY = ascii("__BUSY__");
+
+  private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+  private final ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer;
+
+  private final KeyWaiters waiters = new KeyWaiters();
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+  private volatile Disposable subscription;
+
+  @PreDestroy
+  public void stop() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  @Override
+  public Mono<ClaimResult> claim(String idempotencyKey, String owner, Duration processingTtl) {
+    String resultKey = IDEMPOTENCY_PREFIX + idempotencyKey;
+    return redisTemplate.execute(CLAIM_SCRIPT,
+            List.of(resultKey, resultKey + PROCESSING_SUFFIX),
+            List.of(ascii(owner), ascii(String.valueOf(processingTtl.toMillis()))))
+        .next()
+        .map(reply -> {
+          if (Arrays.equals(CLAIMED, reply)) {
+            return ClaimResult.claimed();
+          }
+          if (Arrays.equals(BUSY, reply)) {
+            return ClaimResult.busy();
+          }
+          // '<remaining TTL ms>:<result>'
+          int separator = indexOf(reply, (byte) ':');
+          return ClaimResult.completed(
+              Arrays.copyOfRange(reply, separator + 1, reply.length),
+              parseMillis(reply, separator));
+        });
+  }
+
+  @Override
+  public Mono<Void> complete(String idempotencyKey, String owner, byte[] result, Duration ttl) {
+    String resultKey = IDEMPOTENCY_PREFIX + idempotencyKey;
+    return redisTemplate.execute(COMPLETE_SCRIPT,
+            List.of(resultKey, resultKey + PROCESSING_SUFFIX),
+            List.of(ascii(owner), result, ascii(String.valueOf(ttl.toMillis())),
+                ascii(EVENTS_CHANNEL), ascii(idempotencyKey)))
+        .then();
+  }
+
+  @Override
+  public Mono<Void> release(String idempotencyKey, String owner) {
+    return redisTemplate.execute(RELEASE_SCRIPT,
+            List.of(IDEMPOTENCY_PREFIX + idempotencyKey + PROCESSING_SUFFIX),
+            List.of(ascii(owner), ascii(EVENTS_CHANNEL), ascii(idempotencyKey)))
+        .then();
+  }
+
+  @Override
+  public Mono<Void> awaitChange(String idempotencyKey, Duration maxWait) {
+    ensureSubscribed();
+    return waiters.await(idempotencyKey, maxWait);
+  }
+
+  private void ensureSubscribed() {
+    if (!subscribed.compareAndSet(false, true)) {
+      return;
+    }
+    subscription = listenerContainer.getObject()
+        .receive(ChannelTopic.of(EVENTS_CHANNEL))
+        .subscribe(message -> waiters.signal(message.getMessage()),
+            error -> {
+              // Waiters keep polling; the next wait subscribes again
+              log.warn("Idempotency event subscription failed: {}", error.getMessage());
+              subscribed.set(false);
+            });
+  }
+
+  private static Duration parseMillis(byte[] reply, int end) {
+    boolean negative = reply[0] == '-';
+    long millis = 0;
+    for (int i = negative ? 1 : 0; i < end; i++) {
+      millis = millis * 10 + (reply[i] - '0');
+    }
+    return Duration.ofMillis(negative ? -millis : millis);
+  }
+
+  private static int indexOf(byte[] bytes, byte value) {
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
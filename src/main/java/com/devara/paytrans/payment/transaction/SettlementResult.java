@@ -0,0 +1,14 @@
+package com.devara.paytrans.payment.transaction;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a settled batch.
+ *
+ * @param transactionIds one transaction per transfer, in request order
+ * @param netPositions   net balance change per account, by account number
+ */
+public record SettlementResult(List<Long> transactionIds, Map<String, BigDecimal> netPositions) {
+}
@@ -0,0 +1,9 @@
+package com.devara.paytrans.payment.transaction;
+
+import java.math.BigDecimal;
+
+/**
+ * One movement in a settlement batch ({@link BatchSettlementService}).
+ */
+public record SettlementTransfer(String fromAccount, String toAccount, BigDecimal amount) {
+}
@@ -0,0 +1,171 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.payment.balance.BalanceEngineProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Balance legs of transfers that touch a striped (hot) account.
+ *
+ * A striped account keeps its funds in {@code account_stripes} rows instead of
+ * its accounts row. Credits land on one stripe chosen by hashing the account and
+ * the counterparty, so concurrent payers update different rows rather than queue
+ * on one row version. Debits try the same way first; when that stripe alone is
+ * short, the account row and the other stripes are swept into it under locks
+ * and the debit retried once. Clients see the sum through
+ * {@link AccountRepository#logicalBalance}.
+ *
+ * Only the SQL transfer path is striping-aware; the balance engine owns the
+ * accounts row of every account it serves, so start() refuses to combine them.
+ */
+@Slf4j
+@Component
+public class StripedAccounts {
+
+  private final AccountRepository accountRepository;
+  private final TransactionalOperator transactionalOperator;
+  private final AccountStripingProperties properties;
+  private final boolean balanceEngineEnabled;
+  // Accounts whose stripes exist and hold the balance; until then they transfer unstriped
+  private final Set<String> striped = ConcurrentHashMap.newKeySet();
+
+  public StripedAccounts(AccountRepository accountRepository,
+                         TransactionalOperator transactionalOperator,
+                         AccountStripingProperties properties,
+                         BalanceEngineProperties balanceEngineProperties) {
+    this.accountRepository = accountRepository;
+    this.transactionalOperator = transactionalOperator;
+    this.properties = properties;
+    this.balanceEngineEnabled = balanceEngineProperties.isEnabled();
+  }
+
+  /**
+   * Creates the stripes of configured accounts and moves their balance in, and
+   * folds stripes of accounts no longer configured back into the account row.
+   * Runs in the background; transfers use the account row until it finishes,
+   * which is safe because the logical balance counts both.
+   *
+   * Refuses to start when the balance engine is enabled: the engine caches row
+   * balances and writes them back as absolute values, so money moved into
+   * stripes would exist twice. Leftover stripes are not folded in that mode
+   * either, for the same reason.
+   */
+  @PostConstruct
+  public void start() {
+    Set<String> configured = Set.copyOf(properties.getAccounts());
+    if (balanceEngineEnabled) {
+      if (!configured.isEmpty()) {
+        throw new IllegalStateException(
+            "paytrans.account-striping.accounts cannot be combined with paytrans.balance-engine.enabled");
+      }
+      return;
+    }
+    Flux.fromIterable(configured)
+        .concatMap(account -> stripe(account)
+            .doOnSuccess(v -> {
+              striped.add(account);
+              log.info("Account {} striped over {} rows", account, properties.getStripes());
+            })
+            .onErrorResume(e -> {
+              log.error("Could not stripe account {}: {}", account, e.getMessage());
+              return Mono.empty();
+            }))
+        .thenMany(accountRepository.stripedAccountsWithFunds())
+        .filter(account -> !configured.contains(account))
+        .concatMap(account -> accountRepository.foldStripes(account)
+            .as(transactionalOperator::transactional)
+            .doOnSuccess(rows -> log.info("Account {} no longer striped; stripes folded back", account)))
+        .subscribe(v -> { }, e -> log.error("Account striping setup failed: {}", e.getMessage()));
+  }
+
+  public boolean isStriped(String accountNumber) {
+    return striped.contains(accountNumber);
+  }
+
+  public boolean involves(String fromAccount, String toAccount) {
+    return isStriped(fromAccount) || isStriped(toAccount);
+  }
+
+  /**
+   * Applies both balance legs. Must run inside the caller's transaction so a
+   * failed second leg rolls back the first. Legs run in account-number order,
+   * matching {@link AccountRepository#transfer}, to keep lock order consistent.
+   *
+   * @return the debit and credit legs, in that order; striped legs are
+   *         {@link PostedBalance#UNSEQUENCED}
+   */
+  public Mono<List<PostedBalance>> transfer(String fromAccount, String toAccount, BigDecimal amount) {
+    Mono<PostedBalance> debit = debit(fromAccount, toAccount, amount);
+    Mono<PostedBalance> credit = credit(toAccount, fromAccount, amount);
+    return fromAccount.compareTo(toAccount) < 0
+        ? debit.zipWhen(debited -> credit, List::of)
+        : credit.zipWhen(credited -> debit, (credited, debited) -> List.of(debited, credited));
+  }
+
+  /**
+   * Applies a net balance change to a striped account, e.g. its position in a
+   * settlement batch. Negative deltas are guarded debits.
+   */
+  public Mono<Void> adjust(String accountNumber, String counterparty, BigDecimal delta) {
+    int sign = delta.signum();
+    if (sign == 0) {
+      return Mono.empty();
+    }
+    return sign > 0
+        ? credit(accountNumber, counterparty, delta).then()
+        : debit(accountNumber, counterparty, delta.negate()).then();
+  }
+
+  private Mono<Void> stripe(String accountNumber) {
+    return accountRepository.seedStripes(accountNumber, properties.getStripes())
+        .then(accountRepository.moveBalanceToStripes(accountNumber))
+        .as(transactionalOperator::transactional)
+        .then();
+  }
+
+  private Mono<PostedBalance> debit(String accountNumber, String counterparty, BigDecimal amount) {
+    if (!isStriped(accountNumber)) {
+      return Mono.defer(() -> accountRepository.debit(accountNumber, amount))
+          .switchIfEmpty(Mono.defer(() -> insufficientFunds(accountNumber, amount)));
+    }
+    int stripe = stripeFor(accountNumber, counterparty, properties.getStripes());
+    return Mono.defer(() -> accountRepository.debitStripe(accountNumber, stripe, amount))
+        // Fallback: gather the account row and all stripes into this stripe and try once more
+        .switchIfEmpty(Mono.defer(() -> accountRepository.sweepStripes(accountNumber, stripe)
+            .filter(swept -> swept.compareTo(amount) >= 0)
+            .flatMap(swept -> accountRepository.debitStripe(accountNumber, stripe, amount))))
+        .map(debited -> PostedBalance.UNSEQUENCED)
+        .switchIfEmpty(Mono.defer(() -> insufficientFunds(accountNumber, amount)));
+  }
+
+  private Mono<PostedBalance> credit(String accountNumber, String counterparty, BigDecimal amount) {
+    Mono<PostedBalance> credited = isStriped(accountNumber)
+        ? Mono.defer(() -> accountRepository.creditStripe(accountNumber,
+                stripeFor(accountNumber, counterparty, properties.getStripes()), amount))
+            .map(stripeBalance -> PostedBalance.UNSEQUENCED)
+        : Mono.defer(() -> accountRepository.credit(accountNumber, amount));
+    return credited
+        .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Destination account not found: " + accountNumber)));
+  }
+
+  private Mono<PostedBalance> insufficientFunds(String accountNumber, BigDecimal amount) {
+    return accountRepository.logicalBalance(accountNumber)
+        .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Source account not found: " + accountNumber)))
+        .flatMap(available -> Mono.error(new Account.InsufficientFundsException(
+            "Insufficient funds in account " + accountNumber +
+            ". Available: " + available + ", Required: " + amount)));
+  }
+
+  static int stripeFor(String accountNumber, String counterparty, int stripes) {
+    return Math.floorMod(31 * accountNumber.hashCode() + counterparty.hashCode(), stripes);
+  }
+}
@@ -0,0 +1,32 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Whole poll batches, fanned out by key (paytrans.kafka.consumer.mode=batch).
+ *
+ * The batch's offsets are committed only after this method returns, that is
+ * after every record in it has been handled. Records that fail are handed to the
+ * retry tiers; only if that hand-off fails is the batch redelivered, so handling
+ * must be idempotent.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "paytrans.kafka.consumer", name = "mode", havingValue = "batch")
+public class TransactionBatchListener {
+
+  private final KeyOrderedDispatcher dispatcher;
+
+  @KafkaListener(topics = TransactionEventPublisher.TOPIC,
+      groupId = "${paytrans.kafka.consumer.group-id:paytrans-group}",
+      containerFactory = "batchKafkaListenerContainerFactory")
+  public void handleTransactionEvents(List<ConsumerRecord<String, TransactionEvent>> records) {
+    dispatcher.dispatch(records);
+  }
+}
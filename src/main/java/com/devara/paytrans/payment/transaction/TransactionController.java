@@ -1,11 +1,15 @@
 package com.devara.paytrans.payment.transaction;
 
+import com.devara.paytrans.payment.fraud.FraudEngine;
+import com.devara.paytrans.payment.fx.FxRateCache;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
 import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
 import io.github.resilience4j.reactor.ratelimiter.operator.RateLimiterOperator;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +19,7 @@ import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/v1/transactions")
@@ -34,7 +39,17 @@ public class TransactionController {
    * The idempotency key should be a unique identifier (e.g., UUID) that the client
    * generates and sends with the request. If the same key is used within 24 hours:
    * - Returns the cached result if the transaction completed
-   * - Returns 409 Conflict if the transaction is still processing
+   * - If it is still processing, depends on paytrans.idempotency.duplicate-mode:
+   *   reject returns 409 Conflict at once; wait returns the original's result
+   *   once it completes, or 409 Conflict if it is still running after wait-timeout
+   *
+   * Other responses:
+   * - 400 Bad Request: invalid body or a currency without an FX rate
+   * - 422 Unprocessable Entity: rejected by fraud checks
+   * - 429 Too Many Requests: ingestion rate limit exceeded
+   * - 503 Service Unavailable: FX rates too stale, idempotency store full, or a
+   *   payment stage's bulkhead saturated
+   * - 504 Gateway Timeout: a payment stage timed out
    */
   @PostMapping
   @ResponseStatus(HttpStatus.CREATED)
@@ -43,7 +58,8 @@ public class TransactionController {
         request.getIdempotencyKey(), request.getAmount());
 
     // Wrap the payment processing in idempotency check
-    Mono<Transaction> paymentOperation = service.processPayment(request.getAmount(), request.getCurrency())
+    Mono<Transaction> paymentOperation = service.processPayment(
+            request.getAmount(), request.getCurrency(), request.getAccountNumber())
         .transformDeferred(RateLimiterOperator.of(rateLimiterRegistry.rateLimiter("ingestionLimiter")))
         .onErrorResume(io.github.resilience4j.ratelimiter.RequestNotPermitted.class, ex -> {
           log.warn("Rate limit exceeded for currency: {}", request.getCurrency());
@@ -51,6 +67,33 @@ public class TransactionController {
               HttpStatus.TOO_MANY_REQUESTS,
               "System is currently busy. Please try again later."
           ));
+        })
+        .onErrorResume(BulkheadFullException.class, ex -> {
+          log.warn("Payment stage saturated: {}", ex.getMessage());
+          return Mono.error(new ResponseStatusException(
+              HttpStatus.SERVICE_UNAVAILABLE,
+              "A downstream payment stage is saturated. Please try again later."
+          ));
+        })
+        .onErrorResume(TimeoutException.class, ex -> {
+          log.warn("Payment stage timed out: {}", ex.getMessage());
+          return Mono.error(new ResponseStatusException(
+              HttpStatus.GATEWAY_TIMEOUT,
+              "A downstream payment stage timed out. Please try again later."
+          ));
+        })
+        .onErrorResume(FxRateCache.UnsupportedCurrencyException.class, ex ->
+            Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage())))
+        .onErrorResume(FxRateCache.StaleRatesException.class, ex -> {
+          log.warn("FX rates unavailable: {}", ex.getMessage());
+          return Mono.error(new ResponseStatusException(
+              HttpStatus.SERVICE_UNAVAILABLE,
+              "Exchange rates are temporarily unavailable. Please try again later."
+          ));
+        })
+        .onErrorResume(FraudEngine.FraudRejectedException.class, ex -> {
+          log.warn("Payment rejected by fraud checks: {}", ex.getMessage());
+          return Mono.error(new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ex.getMessage()));
         });
 
     // Execute with idempotency guarantee
@@ -61,6 +104,13 @@ public class TransactionController {
               HttpStatus.CONFLICT,
               ex.getMessage()
           ));
+        })
+        .onErrorResume(InMemoryIdempotencyStore.StoreFullException.class, ex -> {
+          log.warn("Idempotency store full: {}", ex.getMessage());
+          return Mono.error(new ResponseStatusException(
+              HttpStatus.SERVICE_UNAVAILABLE,
+              "System is currently busy. Please try again later."
+          ));
         });
   }
 
@@ -79,5 +129,11 @@ public class TransactionController {
 
     @NotNull(message = "Currency is required")
     private String currency;
+
+    /**
+     * Optional paying account. Enables per-account velocity checks in fraud detection.
+     */
+    @Size(max = 20, message = "Account number must be at most 20 characters")
+    private String accountNumber;
   }
 }
@@ -0,0 +1,25 @@
+package com.devara.paytrans.payment.transaction;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Business handling of one consumed transaction event, shared by every
+ * consumption mode.
+ *
+ * Blocking is allowed here: callers run it on a listener thread or a virtual thread.
+ */
+@Component
+@Slf4j
+public class TransactionEventHandler {
+
+  public void handle(TransactionEvent event) {
+    log.info("Received Kafka Event: Processing fraud check for Tx ID: {}", event.getId());
+    // Simulate heavy processing
+    try {
+      Thread.sleep(100);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
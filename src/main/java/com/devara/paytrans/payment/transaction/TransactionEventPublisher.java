@@ -0,0 +1,126 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+
+/**
+ * Publishes transaction events through one long-lived Kafka send pipeline.
+ *
+ * Every caller's record goes into a shared, bounded sink that feeds a single
+ * kafkaSender.send(...) subscription, so events from concurrent payments are
+ * batched by the producer (linger.ms / batch.size) instead of each payment
+ * opening its own send. The caller's Mono completes when its own record is
+ * acknowledged; acknowledgements are routed back via the record's correlation
+ * metadata.
+ *
+ * Records are keyed, so all events for one key land on one partition in order.
+ */
+@Slf4j
+@Component
+public class TransactionEventPublisher {
+
+  public static final String TOPIC = "transaction-events";
+
+  private static final Duration RESTART_DELAY = Duration.ofSeconds(1);
+
+  private final KafkaSender<String, TransactionEvent> kafkaSender;
+  private final int bufferSize;
+  private final Duration sendTimeout;
+
+  private volatile Sinks.Many<SenderRecord<String, TransactionEvent, Sinks.One<RecordMetadata>>> outbound;
+  private volatile boolean stopped;
+
+  public TransactionEventPublisher(KafkaSender<String, TransactionEvent> kafkaSender,
+                                   KafkaClientProperties properties) {
+    this.kafkaSender = kafkaSender;
+    this.bufferSize = properties.getProducer().getBufferSize();
+    this.sendTimeout = properties.getProducer().getSendTimeout();
+  }
+
+  @PostConstruct
+  public void start() {
+    Sinks.Many<SenderRecord<String, TransactionEvent, Sinks.One<RecordMetadata>>> sink =
+        Sinks.many().unicast().onBackpressureBuffer(
+            Queues.<SenderRecord<String, TransactionEvent, Sinks.One<RecordMetadata>>>get(bufferSize).get());
+    outbound = sink;
+    kafkaSender.send(sink.asFlux())
+        .subscribe(TransactionEventPublisher::acknowledge, this::restart);
+  }
+
+  @PreDestroy
+  public void stop() {
+    stopped = true;
+    // Completing the sink lets records already queued drain before the sender closes
+    outbound.tryEmitComplete();
+  }
+
+  /**
+   * Queues an event for the shared pipeline.
+   *
+   * @param key partition key; events with the same key stay in order
+   * @return metadata of the acknowledged record
+   */
+  public Mono<RecordMetadata> publish(String key, TransactionEvent event) {
+    return send(new ProducerRecord<>(TOPIC, key, event));
+  }
+
+  /**
+   * Queues a prepared record, e.g. for a retry or dead-letter topic.
+   */
+  public Mono<RecordMetadata> send(ProducerRecord<String, TransactionEvent> producerRecord) {
+    return Mono.defer(() -> {
+      Sinks.One<RecordMetadata> ack = Sinks.one();
+      SenderRecord<String, TransactionEvent, Sinks.One<RecordMetadata>> record =
+          SenderRecord.create(producerRecord, ack);
+
+      Sinks.EmitResult result;
+      // Unicast sinks reject concurrent emitters; the critical section is one enqueue
+      synchronized (this) {
+        result = outbound.tryEmitNext(record);
+      }
+      if (result.isFailure()) {
+        return Mono.error(new PublishRejectedException("Event pipeline rejected record: " + result));
+      }
+      return ack.asMono().timeout(sendTimeout);
+    });
+  }
+
+  private static void acknowledge(SenderResult<Sinks.One<RecordMetadata>> result) {
+    if (result.exception() != null) {
+      result.correlationMetadata().tryEmitError(result.exception());
+    } else {
+      result.correlationMetadata().tryEmitValue(result.recordMetadata());
+    }
+  }
+
+  /**
+   * Per-record failures are reported through {@link #acknowledge}; this only runs
+   * if the producer itself fails. Callers still queued in the old sink time out.
+   */
+  private void restart(Throwable error) {
+    if (stopped) {
+      return;
+    }
+    log.error("Kafka send pipeline failed, restarting in {}", RESTART_DELAY, error);
+    Mono.delay(RESTART_DELAY).subscribe(tick -> start());
+  }
+
+  public static class PublishRejectedException extends RuntimeException {
+    public PublishRejectedException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Reactive consumer for transaction-events (paytrans.kafka.consumer.mode=reactive).
+ *
+ * Records are grouped by partition; each partition is processed in order on the
+ * event scheduler while partitions run in parallel. Demand is backpressured
+ * into the receiver, which pauses its partitions when processing falls behind,
+ * so a backlog stays in Kafka rather than piling up in memory.
+ *
+ * Offsets are acknowledged after a record is handled and committed in batches
+ * (commit-batch-size records or commit-interval, whichever comes first). A
+ * record that fails to process is handed to the retry tiers and acknowledged;
+ * if even that fails, the pipeline restarts from the last committed offset after
+ * a backoff, so delivery is at-least-once.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "paytrans.kafka.consumer", name = "mode", havingValue = "reactive")
+public class TransactionEventReceiver {
+
+  private static final Duration RESTART_BACKOFF = Duration.ofSeconds(1);
+  private static final Duration MAX_RESTART_BACKOFF = Duration.ofSeconds(30);
+
+  private final ReceiverOptions<String, TransactionEvent> receiverOptions;
+  private final TransactionEventRetryRouter router;
+  private final Scheduler scheduler;
+  private final int maxPartitions;
+  private Disposable pipeline;
+
+  public TransactionEventReceiver(ReceiverOptions<String, TransactionEvent> receiverOptions,
+                                  TransactionEventRetryRouter router,
+                                  KafkaClientProperties properties) {
+    this.receiverOptions = receiverOptions;
+    this.router = router;
+    this.scheduler = Schedulers.newBoundedElastic(
+        properties.getConsumer().getMaxConcurrency(), Integer.MAX_VALUE, "transaction-events");
+    this.maxPartitions = properties.getConsumer().getMaxPartitions();
+  }
+
+  @PostConstruct
+  public void start() {
+    pipeline = KafkaReceiver.create(receiverOptions)
+        .receive()
+        .groupBy(record -> record.receiverOffset().topicPartition())
+        // Partition groups never complete, so each needs its own slot
+        .flatMap(partition -> partition
+            .publishOn(scheduler)
+            .concatMap(this::process), maxPartitions)
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, RESTART_BACKOFF)
+            .maxBackoff(MAX_RESTART_BACKOFF)
+            .doBeforeRetry(signal -> log.warn("Transaction event consumer failed, restarting: {}",
+                signal.failure().getMessage())))
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (pipeline != null) {
+      pipeline.dispose();
+    }
+    scheduler.dispose();
+  }
+
+  private Mono<Void> process(ReceiverRecord<String, TransactionEvent> record) {
+    return Mono.fromRunnable(() -> {
+      router.process(record);
+      record.receiverOffset().acknowledge();
+    });
+  }
+}
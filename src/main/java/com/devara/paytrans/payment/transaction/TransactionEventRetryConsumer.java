@@ -0,0 +1,96 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Consumes the retry tiers of transaction-events.
+ *
+ * Each tier has its own receiver. Records within a tier partition are processed
+ * in order, each after waiting until its not-before time; since every record in
+ * a tier was delayed by the same amount, the head of the partition is always the
+ * first one due. Waiting is a timer, not a blocked thread, and only holds back
+ * that tier's partition.
+ *
+ * A record that fails again moves on to the next tier or the dead-letter topic
+ * via {@link TransactionEventRetryRouter}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "paytrans.kafka.retry", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TransactionEventRetryConsumer {
+
+  private static final Duration RESTART_BACKOFF = Duration.ofSeconds(1);
+  private static final Duration MAX_RESTART_BACKOFF = Duration.ofSeconds(30);
+
+  private final ReceiverOptions<String, TransactionEvent> baseOptions;
+  private final TransactionEventRetryRouter router;
+  private final String groupId;
+  private final Scheduler scheduler;
+  private final int maxPartitions;
+  private final Disposable.Composite pipelines = Disposables.composite();
+
+  public TransactionEventRetryConsumer(ReceiverOptions<String, TransactionEvent> transactionEventReceiverOptions,
+                                       TransactionEventRetryRouter router,
+                                       KafkaClientProperties properties) {
+    this.baseOptions = transactionEventReceiverOptions;
+    this.router = router;
+    this.groupId = properties.getConsumer().getGroupId() + "-retry";
+    this.scheduler = Schedulers.newBoundedElastic(
+        properties.getConsumer().getMaxConcurrency(), Integer.MAX_VALUE, "transaction-events-retry");
+    this.maxPartitions = properties.getConsumer().getMaxPartitions();
+  }
+
+  @PostConstruct
+  public void start() {
+    for (String topic : router.retryTopics()) {
+      ReceiverOptions<String, TransactionEvent> options = baseOptions
+          .consumerProperty(ConsumerConfig.GROUP_ID_CONFIG, groupId)
+          .subscription(List.of(topic));
+      pipelines.add(KafkaReceiver.create(options)
+          .receive()
+          .groupBy(record -> record.receiverOffset().topicPartition())
+          // Partition groups never complete, so each needs its own slot
+          .flatMap(partition -> partition.concatMap(this::processWhenDue), maxPartitions)
+          .retryWhen(Retry.backoff(Long.MAX_VALUE, RESTART_BACKOFF)
+              .maxBackoff(MAX_RESTART_BACKOFF)
+              .doBeforeRetry(signal -> log.warn("Retry consumer for {} failed, restarting: {}",
+                  topic, signal.failure().getMessage())))
+          .subscribe());
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    pipelines.dispose();
+    scheduler.dispose();
+  }
+
+  private Mono<Void> processWhenDue(ReceiverRecord<String, TransactionEvent> record) {
+    long wait = TransactionEventRetryRouter.notBefore(record) - System.currentTimeMillis();
+    Mono<Long> due = wait > 0 ? Mono.delay(Duration.ofMillis(wait)) : Mono.just(0L);
+    return due
+        .publishOn(scheduler)
+        .then(Mono.fromRunnable(() -> {
+          router.process(record);
+          record.receiverOffset().acknowledge();
+        }));
+  }
+}
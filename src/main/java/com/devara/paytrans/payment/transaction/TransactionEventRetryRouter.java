@@ -0,0 +1,204 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import com.devara.paytrans.config.TransactionEventDeserializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the event handler for a consumed record and, if it fails, moves the record
+ * on instead of retrying it in place.
+ *
+ * A failed record is forwarded to the next retry tier, &lt;topic&gt;.retry.N, with
+ * a header saying when it becomes due; after the last tier it goes to
+ * &lt;topic&gt;.dlt. Records that cannot even be deserialized go straight to the
+ * dead-letter topic as raw bytes. Either way the source offset can be committed,
+ * so one bad record never stalls its partition.
+ *
+ * Retried records are no longer ordered with later records of the same key.
+ */
+@Slf4j
+@Component
+public class TransactionEventRetryRouter {
+
+  public static final String ATTEMPT_HEADER = "paytrans-attempt";
+  public static final String NOT_BEFORE_HEADER = "paytrans-not-before";
+  public static final String ERROR_HEADER = "paytrans-error";
+  public static final String ORIGIN_HEADER = "paytrans-origin";
+
+  private static final int MAX_ERROR_LENGTH = 512;
+
+  private final TransactionEventHandler handler;
+  private final TransactionEventPublisher publisher;
+  private final KafkaSender<String, byte[]> rawSender;
+  private final boolean enabled;
+  private final List<Duration> delays;
+  private final Duration sendTimeout;
+  private final Clock clock;
+
+  public TransactionEventRetryRouter(TransactionEventHandler handler,
+                                     TransactionEventPublisher publisher,
+                                     @Qualifier("deadLetterSender") KafkaSender<String, byte[]> rawSender,
+                                     KafkaClientProperties properties) {
+    this(handler, publisher, rawSender, properties, Clock.systemUTC());
+  }
+
+  TransactionEventRetryRouter(TransactionEventHandler handler,
+                              TransactionEventPublisher publisher,
+                              KafkaSender<String, byte[]> rawSender,
+                              KafkaClientProperties properties,
+                              Clock clock) {
+    this.handler = handler;
+    this.publisher = publisher;
+    this.rawSender = rawSender;
+    this.enabled = properties.getRetry().isEnabled();
+    this.delays = List.copyOf(properties.getRetry().getDelays());
+    // Forwarding waits for the broker ack before the source offset may be committed
+    this.sendTimeout = properties.getProducer().getSendTimeout().multipliedBy(2);
+    this.clock = clock;
+  }
+
+  public static String retryTopic(int tier) {
+    return TransactionEventPublisher.TOPIC + ".retry." + tier;
+  }
+
+  public static String deadLetterTopic() {
+    return TransactionEventPublisher.TOPIC + ".dlt";
+  }
+
+  public List<String> retryTopics() {
+    return IntStream.range(0, delays.size()).mapToObj(TransactionEventRetryRouter::retryTopic).toList();
+  }
+
+  /**
+   * Handles the record, routing it onwards on failure. Blocks until the record is
+   * either handled or safely forwarded; throws only if forwarding itself failed,
+   * in which case the record must not be committed. With retry topics disabled
+   * the handler's own failure is thrown, and the record is retried in place.
+   */
+  public void process(ConsumerRecord<String, TransactionEvent> record) {
+    if (record.value() == null) {
+      deadLetterUnreadable(record);
+      return;
+    }
+    try {
+      handler.handle(record.value());
+    } catch (RuntimeException e) {
+      if (!enabled) {
+        throw e;
+      }
+      forward(record, e).block(sendTimeout);
+    }
+  }
+
+  private Mono<Void> forward(ConsumerRecord<String, TransactionEvent> record, RuntimeException error) {
+    int attempt = attempt(record);
+    boolean exhausted = attempt >= delays.size();
+    String target = exhausted ? deadLetterTopic() : retryTopic(attempt);
+
+    Headers headers = new RecordHeaders();
+    headers.add(ORIGIN_HEADER, ascii(origin(record)));
+    headers.add(ATTEMPT_HEADER, ascii(String.valueOf(attempt + 1)));
+    headers.add(ERROR_HEADER, truncate(error.getClass().getName() + ": " + error.getMessage()));
+    if (!exhausted) {
+      long notBefore = clock.millis() + delays.get(attempt).toMillis();
+      headers.add(NOT_BEFORE_HEADER, ascii(String.valueOf(notBefore)));
+    }
+
+    if (exhausted) {
+      log.error("Transaction event {} failed after {} attempts, dead-lettering to {}",
+          record.value().getId(), attempt + 1, target, error);
+    } else {
+      log.warn("Transaction event {} failed (attempt {}), retrying via {}: {}",
+          record.value().getId(), attempt + 1, target, error.getMessage());
+    }
+    return publisher.send(new ProducerRecord<>(target, null, record.key(), record.value(), headers)).then();
+  }
+
+  private void deadLetterUnreadable(ConsumerRecord<String, TransactionEvent> record) {
+    Header raw = record.headers().lastHeader(TransactionEventDeserializer.RAW_VALUE_HEADER);
+    if (raw == null) {
+      // Tombstone: nothing to process
+      return;
+    }
+    Header reason = record.headers().lastHeader(TransactionEventDeserializer.ERROR_HEADER);
+    log.error("Unreadable transaction event at {}, dead-lettering to {}", origin(record), deadLetterTopic());
+
+    Headers headers = new RecordHeaders();
+    headers.add(ORIGIN_HEADER, ascii(origin(record)));
+    if (reason != null) {
+      headers.add(ERROR_HEADER, reason.value());
+    }
+    ProducerRecord<String, byte[]> deadLetter =
+        new ProducerRecord<>(deadLetterTopic(), null, record.key(), raw.value(), headers);
+    rawSender.send(Mono.just(SenderRecord.<String, byte[], Void>create(deadLetter, null)))
+        .next()
+        .flatMap(result -> result.exception() != null ? Mono.error(result.exception()) : Mono.empty())
+        .block(sendTimeout);
+  }
+
+  /**
+   * Epoch millis at which a retried record becomes due, or 0 if it carries none
+   * or an unreadable one: such a record is due now rather than never.
+   */
+  public static long notBefore(ConsumerRecord<?, ?> record) {
+    Header header = record.headers().lastHeader(NOT_BEFORE_HEADER);
+    if (header == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(new String(header.value(), StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring malformed {} header at {}", NOT_BEFORE_HEADER, origin(record));
+      return 0;
+    }
+  }
+
+  /**
+   * Attempts already made. An unreadable count is treated as exhausted, so the
+   * record is dead-lettered instead of cycling through the tiers again.
+   */
+  private int attempt(ConsumerRecord<?, ?> record) {
+    Header header = record.headers().lastHeader(ATTEMPT_HEADER);
+    if (header == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Integer.parseInt(new String(header.value(), StandardCharsets.US_ASCII)));
+    } catch (NumberFormatException e) {
+      log.warn("Malformed {} header at {}, dead-lettering", ATTEMPT_HEADER, origin(record));
+      return delays.size();
+    }
+  }
+
+  private static String origin(ConsumerRecord<?, ?> record) {
+    Header origin = record.headers().lastHeader(ORIGIN_HEADER);
+    return origin != null
+        ? new String(origin.value(), StandardCharsets.US_ASCII)
+        : record.topic() + "-" + record.partition() + "@" + record.offset();
+  }
+
+  private static byte[] truncate(String value) {
+    String truncated = value.length() > MAX_ERROR_LENGTH ? value.substring(0, MAX_ERROR_LENGTH) : value;
+    return truncated.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
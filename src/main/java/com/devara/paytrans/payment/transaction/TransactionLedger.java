@@ -51,8 +51,20 @@ public class TransactionLedger {
   
   private String reason;
   
+  // Balance movements only (DEBIT, CREDIT, REVERSAL); null for status changes
+  @Column("account_number")
+  private String accountNumber;
+  
+  private String counterparty;
+  
+  @Column("balance_after")
+  private BigDecimal balanceAfter;
+  
   // Operation constants
   public static final String OP_CREATE = "CREATE";
   public static final String OP_UPDATE = "UPDATE";
   public static final String OP_ROLLBACK = "ROLLBACK";
+  public static final String OP_DEBIT = "DEBIT";
+  public static final String OP_CREDIT = "CREDIT";
+  public static final String OP_REVERSAL = "REVERSAL";
 }
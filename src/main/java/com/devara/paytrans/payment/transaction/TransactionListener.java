@@ -1,21 +1,24 @@
 package com.devara.paytrans.payment.transaction;
 
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+/**
+ * One record at a time per partition (paytrans.kafka.consumer.mode=record).
+ * Failed records are handed to the retry tiers, so the partition moves on.
+ */
 @Service
-@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "paytrans.kafka.consumer", name = "mode", havingValue = "record", matchIfMissing = true)
 public class TransactionListener {
 
-  @KafkaListener(topics = "transaction-events", groupId = "paytrans-group")
-  public void handleTransactionEvent(TransactionEvent event) {
-    log.info("Received Kafka Event: Processing fraud check for Tx ID: {}", event.getId());
-    // Simulate heavy processing
-    try {
-      Thread.sleep(100);
-    } catch (InterruptedException e) {
+  private final TransactionEventRetryRouter router;
 
-    }
+  @KafkaListener(topics = TransactionEventPublisher.TOPIC, groupId = "${paytrans.kafka.consumer.group-id:paytrans-group}")
+  public void handleTransactionEvent(ConsumerRecord<String, TransactionEvent> record) {
+    router.process(record);
   }
 }
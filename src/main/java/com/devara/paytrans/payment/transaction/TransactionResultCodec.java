@@ -0,0 +1,220 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Compact binary encoding for cached idempotency results.
+ *
+ * Layout (version 1, big-endian):
+ * <pre>
+ *   byte    version (0x01)
+ *   byte    presence flags, one bit per nullable field
+ *   long    id
+ *   long+byte  amount     (unscaled value, scale)
+ *   byte+N  currency      (length, US-ASCII)
+ *   byte    status code   (index into STATUSES; 0xFF = custom, followed by length + US-ASCII)
+ *   long+byte  fee
+ *   long+byte  netAmount
+ *   long    createdAt     (epoch millis)
+ *   long    updatedAt     (epoch millis)
+ *   byte+int   version    (presence marker, then value if present)
+ * </pre>
+ * Absent fields are skipped entirely. A typical result is under 80 bytes, against
+ * roughly 250 for the JSON form.
+ *
+ * Migration: values written before this codec existed are JSON objects, which
+ * always start with '{'. {@link #decode(byte[])} still reads them, so existing
+ * entries stay valid until their TTL runs out.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionResultCodec {
+
+  static final byte VERSION_1 = 0x01;
+  private static final byte JSON_START = '{';
+  private static final int CUSTOM_STATUS = 0xFF;
+
+  /**
+   * Status codes shared by the compact encodings. Append only: a code's meaning
+   * must never change once written.
+   */
+  static final List<String> STATUSES = List.of(
+      Transaction.STATUS_PENDING,
+      Transaction.STATUS_PROCESSING,
+      Transaction.STATUS_COMPLETED,
+      Transaction.STATUS_FAILED,
+      Transaction.STATUS_ROLLED_BACK
+  );
+
+  private static final int HAS_ID = 1;
+  private static final int HAS_AMOUNT = 1 << 1;
+  private static final int HAS_CURRENCY = 1 << 2;
+  private static final int HAS_STATUS = 1 << 3;
+  private static final int HAS_FEE = 1 << 4;
+  private static final int HAS_NET_AMOUNT = 1 << 5;
+  private static final int HAS_CREATED_AT = 1 << 6;
+  private static final int HAS_UPDATED_AT = 1 << 7;
+
+  private final ObjectMapper objectMapper;
+
+  public byte[] encode(Transaction tx) {
+    byte[] currency = ascii(tx.getCurrency());
+    int statusCode = tx.getStatus() == null ? -1 : STATUSES.indexOf(tx.getStatus());
+    byte[] customStatus = statusCode < 0 && tx.getStatus() != null ? ascii(tx.getStatus()) : null;
+
+    int flags = (tx.getId() != null ? HAS_ID : 0)
+        | (tx.getAmount() != null ? HAS_AMOUNT : 0)
+        | (currency != null ? HAS_CURRENCY : 0)
+        | (tx.getStatus() != null ? HAS_STATUS : 0)
+        | (tx.getFee() != null ? HAS_FEE : 0)
+        | (tx.getNetAmount() != null ? HAS_NET_AMOUNT : 0)
+        | (tx.getCreatedAt() != null ? HAS_CREATED_AT : 0)
+        | (tx.getUpdatedAt() != null ? HAS_UPDATED_AT : 0);
+
+    int size = 2
+        + (tx.getId() != null ? 8 : 0)
+        + (tx.getAmount() != null ? 9 : 0)
+        + (currency != null ? 1 + currency.length : 0)
+        + (tx.getStatus() != null ? 1 + (customStatus != null ? 1 + customStatus.length : 0) : 0)
+        + (tx.getFee() != null ? 9 : 0)
+        + (tx.getNetAmount() != null ? 9 : 0)
+        + (tx.getCreatedAt() != null ? 8 : 0)
+        + (tx.getUpdatedAt() != null ? 8 : 0)
+        + 1 + (tx.getVersion() != null ? 4 : 0);
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.put(VERSION_1);
+    buffer.put((byte) flags);
+    if (tx.getId() != null) {
+      buffer.putLong(tx.getId());
+    }
+    if (tx.getAmount() != null) {
+      putDecimal(buffer, tx.getAmount());
+    }
+    if (currency != null) {
+      putShortBytes(buffer, currency);
+    }
+    if (tx.getStatus() != null) {
+      if (customStatus != null) {
+        buffer.put((byte) CUSTOM_STATUS);
+        putShortBytes(buffer, customStatus);
+      } else {
+        buffer.put((byte) statusCode);
+      }
+    }
+    if (tx.getFee() != null) {
+      putDecimal(buffer, tx.getFee());
+    }
+    if (tx.getNetAmount() != null) {
+      putDecimal(buffer, tx.getNetAmount());
+    }
+    if (tx.getCreatedAt() != null) {
+      buffer.putLong(tx.getCreatedAt().toEpochMilli());
+    }
+    if (tx.getUpdatedAt() != null) {
+      buffer.putLong(tx.getUpdatedAt().toEpochMilli());
+    }
+    if (tx.getVersion() != null) {
+      buffer.put((byte) 1);
+      buffer.putInt(tx.getVersion());
+    } else {
+      buffer.put((byte) 0);
+    }
+    return buffer.array();
+  }
+
+  public Transaction decode(byte[] bytes) {
+    if (bytes.length == 0) {
+      throw new IllegalArgumentException("Empty cached transaction");
+    }
+    if (bytes[0] == JSON_START) {
+      return decodeJson(bytes);
+    }
+    if (bytes[0] != VERSION_1) {
+      throw new IllegalArgumentException("Unknown cached transaction format: " + bytes[0]);
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+    int flags = buffer.get() & 0xFF;
+    Transaction.TransactionBuilder tx = Transaction.builder();
+    if ((flags & HAS_ID) != 0) {
+      tx.id(buffer.getLong());
+    }
+    if ((flags & HAS_AMOUNT) != 0) {
+      tx.amount(getDecimal(buffer));
+    }
+    if ((flags & HAS_CURRENCY) != 0) {
+      tx.currency(getShortString(buffer));
+    }
+    if ((flags & HAS_STATUS) != 0) {
+      int code = buffer.get() & 0xFF;
+      tx.status(code == CUSTOM_STATUS ? getShortString(buffer) : STATUSES.get(code));
+    }
+    if ((flags & HAS_FEE) != 0) {
+      tx.fee(getDecimal(buffer));
+    }
+    if ((flags & HAS_NET_AMOUNT) != 0) {
+      tx.netAmount(getDecimal(buffer));
+    }
+    if ((flags & HAS_CREATED_AT) != 0) {
+      tx.createdAt(Instant.ofEpochMilli(buffer.getLong()));
+    }
+    if ((flags & HAS_UPDATED_AT) != 0) {
+      tx.updatedAt(Instant.ofEpochMilli(buffer.getLong()));
+    }
+    if (buffer.get() != 0) {
+      tx.version(buffer.getInt());
+    }
+    return tx.build();
+  }
+
+  private Transaction decodeJson(byte[] bytes) {
+    try {
+      return objectMapper.readValue(bytes, Transaction.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to deserialize legacy JSON transaction", e);
+    }
+  }
+
+  private static void putDecimal(ByteBuffer buffer, BigDecimal value) {
+    buffer.putLong(value.unscaledValue().longValueExact());
+    buffer.put((byte) value.scale());
+  }
+
+  private static BigDecimal getDecimal(ByteBuffer buffer) {
+    long unscaled = buffer.getLong();
+    return BigDecimal.valueOf(unscaled, buffer.get());
+  }
+
+  private static void putShortBytes(ByteBuffer buffer, byte[] value) {
+    buffer.put((byte) value.length);
+    buffer.put(value);
+  }
+
+  private static String getShortString(ByteBuffer buffer) {
+    int length = buffer.get() & 0xFF;
+    String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.US_ASCII);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+
+  private static byte[] ascii(String value) {
+    if (value == null) {
+      return null;
+    }
+    if (value.length() > 255) {
+      throw new IllegalArgumentException("Value too long for compact encoding: " + value);
+    }
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -1,109 +1,161 @@
 package com.devara.paytrans.payment.transaction;
 
+import com.devara.paytrans.payment.fee.FeeQuote;
+import com.devara.paytrans.payment.fee.FeeScheduleRegistry;
+import com.devara.paytrans.payment.fraud.FraudAssessment;
+import com.devara.paytrans.payment.fraud.FraudEngine;
+import com.devara.paytrans.payment.fx.FxRateCache;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.StatusCode;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
-import reactor.kafka.sender.KafkaSender;
-import reactor.kafka.sender.SenderRecord;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Random;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class TransactionService {
 
   private final TransactionRepository repository;
+  private final FxRateCache fxRateCache;
+  private final FraudEngine fraudEngine;
+  private final FeeScheduleRegistry feeSchedules;
   private final Tracer tracer;
-  private final KafkaSender<String, TransactionEvent> kafkaSender;
-  private static final String TOPIC = "transaction-events";
-  private final Random random = new Random();
+  private final TransactionEventPublisher eventPublisher;
+  private final OutboxEventRepository outboxRepository;
+  private final TransactionalOperator transactionalOperator;
+  private final boolean outboxEnabled;
 
-  public TransactionService(TransactionRepository repository, OpenTelemetry openTelemetry,
-                            KafkaSender<String, TransactionEvent> kafkaSender) {
+  /**
+   * One bulkhead and one time limiter per downstream stage, resolved once so
+   * the hot path does not hit the registries on every payment.
+   */
+  private final Map<PaymentStage, Bulkhead> stageBulkheads = new EnumMap<>(PaymentStage.class);
+  private final Map<PaymentStage, TimeLimiter> stageTimeLimiters = new EnumMap<>(PaymentStage.class);
+
+  public TransactionService(TransactionRepository repository, FxRateCache fxRateCache,
+                            FraudEngine fraudEngine, FeeScheduleRegistry feeSchedules,
+                            OpenTelemetry openTelemetry,
+                            TransactionEventPublisher eventPublisher,
+                            OutboxEventRepository outboxRepository,
+                            TransactionalOperator transactionalOperator,
+                            OutboxProperties outboxProperties,
+                            BulkheadRegistry bulkheadRegistry,
+                            TimeLimiterRegistry timeLimiterRegistry) {
     this.repository = repository;
+    this.fxRateCache = fxRateCache;
+    this.fraudEngine = fraudEngine;
+    this.feeSchedules = feeSchedules;
     this.tracer = openTelemetry.getTracer("paytrans-service");
-    this.kafkaSender = kafkaSender;
+    this.eventPublisher = eventPublisher;
+    this.outboxRepository = outboxRepository;
+    this.transactionalOperator = transactionalOperator;
+    this.outboxEnabled = outboxProperties.isEnabled();
+    for (PaymentStage stage : PaymentStage.values()) {
+      stageBulkheads.put(stage, bulkheadRegistry.bulkhead(stage.instanceName()));
+      stageTimeLimiters.put(stage, timeLimiterRegistry.timeLimiter(stage.instanceName()));
+    }
   }
 
-  public Mono<Transaction> processPayment(BigDecimal amount, String currency) {
+  /**
+   * Runs the payment pipeline. Stages only wait for the stages they depend on:
+   *
+   * <pre>
+   *                       +--> fraud detection -+
+   *   currency conversion +                     +--> save --+--> notification
+   *                       +--> fee calculation -+           +--> Kafka publish
+   * </pre>
+   *
+   * End-to-end latency is therefore the critical path, not the sum of all stages.
+   * A failure in any branch cancels its sibling.
+   *
+   * With the outbox enabled (the default) there is no Kafka publish step: the
+   * event is written with the transaction row and relayed by OutboxRelay.
+   *
+   * @param requestedCurrency ISO code in any case; upper-cased once here so FX,
+   *                          fraud limits, fees and the stored row see the same code
+   * @param accountNumber     paying account, used for velocity checks and as the
+   *                          event key; may be null
+   */
+  public Mono<Transaction> processPayment(BigDecimal amount, String requestedCurrency, String accountNumber) {
+    String currency = requestedCurrency.toUpperCase(Locale.ROOT);
     log.info("Starting payment processing for amount: {} {}", amount, currency);
 
-    // Step 1: Fraud Detection
-    return detectFraud(amount, currency)
-        // Step 2: Currency Conversion
-        .flatMap(fraudScore -> convertCurrency(amount, currency))
-        // Step 3: Calculate Fees
-        .flatMap(convertedAmount -> calculateFees(convertedAmount))
+    // Steps 1-3: Currency Conversion feeds both Fraud Detection and Fee Calculation,
+    // which then run alongside each other. The conversion is a cache lookup and runs once.
+    Mono<BigDecimal> usdAmount = convertCurrency(amount, currency).cache();
+    Mono<Double> fraudCheck = usdAmount.flatMap(usd -> detectFraud(amount, currency, usd, accountNumber));
+    Mono<FeeInfo> pricing = usdAmount.flatMap(this::calculateFees);
+
+    return Mono.zip(fraudCheck, pricing)
         // Step 4: Save Transaction
-        .flatMap(feeInfo -> saveTransaction(amount, currency, feeInfo))
-        // Step 5: Send Notification
-        .flatMap(this::sendNotification)
-        // Step 6: Publish to Kafka
-        .flatMap(this::publishEvent);
+        .flatMap(results -> saveTransaction(amount, currency, accountNumber, results.getT2()))
+        // Steps 5-6: Send Notification and Publish to Kafka concurrently
+        .flatMap(transaction -> Mono.when(sendNotification(transaction),
+                outboxEnabled ? Mono.empty() : publishEvent(transaction, accountNumber))
+            .thenReturn(transaction));
   }
 
   /**
    * Step 1: Fraud Detection
-   * Simulates fraud detection service with random delay
+   * Scores the payment with the in-process rule engine (USD amount thresholds,
+   * currency limits, per-account velocity). Each rule's contribution is recorded on the span.
    */
-  private Mono<Double> detectFraud(BigDecimal amount, String currency) {
+  private Mono<Double> detectFraud(BigDecimal amount, String currency, BigDecimal amountUsd, String accountNumber) {
     Span span = tracer.spanBuilder("fraud-detection").startSpan();
     span.setAttribute("transaction.amount", amount.doubleValue());
     span.setAttribute("transaction.currency", currency);
 
     return Mono.fromCallable(() -> {
-          // Simulate fraud detection processing time (50-150ms)
-          Thread.sleep(50 + random.nextInt(100));
-
-          // Calculate fraud score (0.0 - 1.0)
-          double fraudScore = random.nextDouble() * 0.3; // Max 30% risk
+          FraudAssessment assessment = fraudEngine.assess(accountNumber, amount, currency, amountUsd);
+          double fraudScore = assessment.score();
           log.info("Fraud detection completed. Risk score: {}", fraudScore);
 
           span.setAttribute("fraud.score", fraudScore);
-          span.setAttribute("fraud.status", fraudScore < 0.2 ? "low_risk" : "medium_risk");
+          span.setAttribute("fraud.status", assessment.status());
+          assessment.contributions().forEach((rule, contribution) ->
+              span.setAttribute("fraud.rule." + rule, contribution));
 
-          if (fraudScore > 0.8) {
+          if (assessment.blocked()) {
             span.setStatus(StatusCode.ERROR, "High fraud risk detected");
-            throw new RuntimeException("Transaction blocked: High fraud risk");
+            throw new FraudEngine.FraudRejectedException("Transaction blocked: High fraud risk");
           }
 
           return fraudScore;
         })
+        .transform(guarded(PaymentStage.FRAUD_DETECTION))
         .doFinally(signal -> span.end());
   }
 
   /**
    * Step 2: Currency Conversion
-   * Simulates currency conversion service
+   * Looks up the rate in the in-process FX cache; no remote call on the hot path.
    */
   private Mono<BigDecimal> convertCurrency(BigDecimal amount, String currency) {
     Span span = tracer.spanBuilder("currency-conversion").startSpan();
     span.setAttribute("original.currency", currency);
     span.setAttribute("target.currency", "USD");
 
-    return Mono.fromCallable(() -> {
-          // Simulate external API call delay (30-100ms)
-          Thread.sleep(30 + random.nextInt(70));
-
-          // Mock exchange rates
-          BigDecimal exchangeRate = switch (currency.toUpperCase()) {
-            case "USD" -> BigDecimal.ONE;
-            case "EUR" -> BigDecimal.valueOf(1.10);
-            case "GBP" -> BigDecimal.valueOf(1.27);
-            case "JPY" -> BigDecimal.valueOf(0.0091);
-            case "IDR" -> BigDecimal.valueOf(0.000064);
-            default -> BigDecimal.ONE;
-          };
-
+    return fxRateCache.rateToUsd(currency)
+        .map(exchangeRate -> {
           BigDecimal convertedAmount = amount.multiply(exchangeRate)
               .setScale(2, RoundingMode.HALF_UP);
 
@@ -115,26 +167,23 @@ public class TransactionService {
 
           return convertedAmount;
         })
+        .transform(guarded(PaymentStage.CURRENCY_CONVERSION))
         .doFinally(signal -> span.end());
   }
 
   /**
    * Step 3: Fee Calculation
-   * Calculates processing fees based on amount
+   * Quotes the fee for the USD amount from the compiled fee schedule.
    */
   private Mono<FeeInfo> calculateFees(BigDecimal amount) {
     Span span = tracer.spanBuilder("calculate-fees").startSpan();
     span.setAttribute("transaction.amount", amount.doubleValue());
 
     return Mono.fromCallable(() -> {
-          // Simulate fee calculation processing (20-60ms)
-          Thread.sleep(20 + random.nextInt(40));
-
-          // Calculate fees: 2.5% + $0.30
-          BigDecimal percentageFee = amount.multiply(BigDecimal.valueOf(0.025));
-          BigDecimal fixedFee = BigDecimal.valueOf(0.30);
-          BigDecimal totalFee = percentageFee.add(fixedFee)
-              .setScale(2, RoundingMode.HALF_UP);
+          FeeQuote quote = feeSchedules.quote(amount, "USD");
+          BigDecimal percentageFee = quote.percentageFee();
+          BigDecimal fixedFee = quote.fixedFee();
+          BigDecimal totalFee = quote.totalFee();
 
           BigDecimal netAmount = amount.subtract(totalFee);
 
@@ -147,13 +196,17 @@ public class TransactionService {
 
           return new FeeInfo(amount, totalFee, netAmount);
         })
+        .transform(guarded(PaymentStage.FEE_CALCULATION))
         .doFinally(signal -> span.end());
   }
 
   /**
    * Step 4: Save Transaction to Database
+   * With the outbox enabled, the transaction and its event row are inserted in
+   * one database transaction.
    */
-  private Mono<Transaction> saveTransaction(BigDecimal amount, String currency, FeeInfo feeInfo) {
+  private Mono<Transaction> saveTransaction(BigDecimal amount, String currency, String accountNumber,
+                                            FeeInfo feeInfo) {
     Span span = tracer.spanBuilder("save-transaction").startSpan();
     span.setAttribute("transaction.amount", amount.doubleValue());
     span.setAttribute("transaction.currency", currency);
@@ -165,7 +218,15 @@ public class TransactionService {
         .createdAt(Instant.now())
         .build();
 
-    return repository.save(tx)
+    Mono<Transaction> save = repository.save(tx);
+    if (outboxEnabled) {
+      save = save
+          .flatMap(savedTx -> outboxRepository.save(OutboxEvent.pending(savedTx, eventKey(savedTx, accountNumber)))
+              .thenReturn(savedTx))
+          .as(transactionalOperator::transactional);
+    }
+
+    return save
         .doOnSuccess(savedTx -> {
           log.info("Transaction saved with ID: {}", savedTx.getId());
           span.setAttribute("transaction.id", savedTx.getId());
@@ -183,10 +244,9 @@ public class TransactionService {
     span.setAttribute("transaction.id", transaction.getId());
     span.setAttribute("notification.type", "email");
 
-    return Mono.fromCallable(() -> {
-          // Simulate notification service delay (40-120ms)
-          Thread.sleep(40 + random.nextInt(80));
-
+    // Simulate notification service delay (40-120ms)
+    return Mono.delay(simulatedLatency(40, 80))
+        .map(tick -> {
           log.info("Notification sent for transaction ID: {}", transaction.getId());
 
           span.setAttribute("notification.status", "sent");
@@ -194,30 +254,29 @@ public class TransactionService {
 
           return transaction;
         })
+        .transform(guarded(PaymentStage.NOTIFICATION))
         .doFinally(signal -> span.end());
   }
 
   /**
    * Step 6: Publish Event to Kafka
+   * Direct delivery (outbox disabled), through the shared publisher pipeline.
    */
-  private Mono<Transaction> publishEvent(Transaction transaction) {
+  private Mono<Transaction> publishEvent(Transaction transaction, String accountNumber) {
     Span span = tracer.spanBuilder("publish-kafka-event").startSpan();
     span.setAttribute("transaction.id", transaction.getId());
-    span.setAttribute("kafka.topic", TOPIC);
+    span.setAttribute("kafka.topic", TransactionEventPublisher.TOPIC);
 
     TransactionEvent event = new TransactionEvent(
         transaction.getId(),
         transaction.getAmount(),
         transaction.getStatus()
     );
-
-    ProducerRecord<String, TransactionEvent> record = new ProducerRecord<>(TOPIC, event);
-
-    return kafkaSender.send(Mono.just(SenderRecord.create(record, transaction.getId())))
-        .doOnNext(result -> {
+    return eventPublisher.publish(eventKey(transaction, accountNumber), event)
+        .doOnNext(metadata -> {
           log.info("Published transaction event to Kafka for ID: {}", transaction.getId());
-          span.setAttribute("kafka.partition", result.recordMetadata().partition());
-          span.setAttribute("kafka.offset", result.recordMetadata().offset());
+          span.setAttribute("kafka.partition", metadata.partition());
+          span.setAttribute("kafka.offset", metadata.offset());
         })
         .doOnError(error -> {
           log.error("Failed to publish to Kafka", error);
@@ -227,6 +286,35 @@ public class TransactionService {
         .doFinally(signal -> span.end());
   }
 
+  /**
+   * Kafka key for a transaction's events: the account when known, otherwise the
+   * transaction id, so each account's events stay in order.
+   */
+  private static String eventKey(Transaction transaction, String accountNumber) {
+    return accountNumber != null ? accountNumber : String.valueOf(transaction.getId());
+  }
+
+  /**
+   * Applies the stage's bulkhead and time limiter.
+   * The bulkhead rejects immediately with BulkheadFullException when the stage is
+   * saturated; the time limiter fails the stage with a TimeoutException (and
+   * releases its bulkhead permit) when it runs past its configured duration.
+   */
+  private <T> Function<Mono<T>, Mono<T>> guarded(PaymentStage stage) {
+    BulkheadOperator<T> bulkhead = BulkheadOperator.of(stageBulkheads.get(stage));
+    TimeLimiterOperator<T> timeLimiter = TimeLimiterOperator.of(stageTimeLimiters.get(stage));
+    return mono -> mono
+        .transformDeferred(bulkhead)
+        .transformDeferred(timeLimiter);
+  }
+
+  /**
+   * Random simulated latency in [minMillis, minMillis + spreadMillis).
+   */
+  private static Duration simulatedLatency(int minMillis, int spreadMillis) {
+    return Duration.ofMillis(minMillis + ThreadLocalRandom.current().nextInt(spreadMillis));
+  }
+
   /**
    * Helper class to hold fee calculation results
    */
@@ -0,0 +1,24 @@
+package com.devara.paytrans.payment.transaction;
+
+import java.math.BigDecimal;
+
+/**
+ * Result of {@link AccountRepository#transfer}: which accounts exist, the source
+ * balance seen under lock, and the new balances if the transfer was applied.
+ *
+ * @param fromExists     source account exists
+ * @param toExists       destination account exists
+ * @param available      source balance before the transfer, null if it does not exist
+ * @param fromBalance    source balance after the debit, null if nothing was applied
+ * @param toBalance      destination balance after the credit, null if nothing was applied
+ * @param fromPostingSeq sequence number of the debit posting, null if nothing was applied
+ * @param toPostingSeq   sequence number of the credit posting, null if nothing was applied
+ */
+public record TransferOutcome(boolean fromExists, boolean toExists, BigDecimal available,
+                              BigDecimal fromBalance, BigDecimal toBalance,
+                              Long fromPostingSeq, Long toPostingSeq) {
+
+  public boolean applied() {
+    return fromBalance != null && toBalance != null;
+  }
+}
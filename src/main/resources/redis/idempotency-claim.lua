@@ -0,0 +1,14 @@
+-- Check-and-claim for an idempotency key, in one round trip.
+-- KEYS[1] = result key, KEYS[2] = processing key
+-- ARGV[1] = owner token, ARGV[2] = processing lock TTL (ms)
+-- Returns '<remaining TTL ms>:<cached result>' if a result is present,
+-- '__CLAIMED__' if this caller now owns the processing lock, or '__BUSY__' if
+-- another caller holds it.
+local cached = redis.call('GET', KEYS[1])
+if cached then
+  return redis.call('PTTL', KEYS[1]) .. ':' .. cached
+end
+if redis.call('SET', KEYS[2], ARGV[1], 'NX', 'PX', ARGV[2]) then
+  return '__CLAIMED__'
+end
+return '__BUSY__'
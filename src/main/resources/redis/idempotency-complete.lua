@@ -0,0 +1,12 @@
+-- Store the result and release the processing lock, in one round trip.
+-- KEYS[1] = result key, KEYS[2] = processing key
+-- ARGV[1] = owner token, ARGV[2] = serialized result, ARGV[3] = result TTL (ms)
+-- ARGV[4] = notification channel, ARGV[5] = idempotency key
+-- The lock is only deleted if it is still held by this owner. Waiting
+-- duplicates on other nodes are woken through ARGV[4].
+redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+if redis.call('GET', KEYS[2]) == ARGV[1] then
+  redis.call('DEL', KEYS[2])
+end
+redis.call('PUBLISH', ARGV[4], ARGV[5])
+return 1
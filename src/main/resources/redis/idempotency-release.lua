@@ -0,0 +1,10 @@
+-- Release the processing lock if it is still held by this owner.
+-- KEYS[1] = processing key
+-- ARGV[1] = owner token, ARGV[2] = notification channel, ARGV[3] = idempotency key
+-- Waiting duplicates are woken so one of them can claim the key.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+  redis.call('DEL', KEYS[1])
+  redis.call('PUBLISH', ARGV[2], ARGV[3])
+  return 1
+end
+return 0
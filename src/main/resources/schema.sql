@@ -47,11 +47,68 @@ CREATE TABLE IF NOT EXISTS transaction_ledger (
   reason TEXT
 );
 
+-- Balance movements journaled by the balance engine (DEBIT, CREDIT, REVERSAL rows)
+ALTER TABLE transaction_ledger ADD COLUMN IF NOT EXISTS account_number VARCHAR(20);
+ALTER TABLE transaction_ledger ADD COLUMN IF NOT EXISTS counterparty VARCHAR(20);
+ALTER TABLE transaction_ledger ADD COLUMN IF NOT EXISTS balance_after DECIMAL(15, 2);
+
+-- Double-entry postings: a DEBIT and a CREDIT row per transfer, each carrying the
+-- account's running balance and its per-account sequence number (accounts.posting_seq).
+-- posted_at is taken while the account row is locked, so it never goes backwards
+-- within an account. Legs on striped accounts have no sequence or running balance.
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS posting_seq BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS ledger_postings (
+  id BIGSERIAL PRIMARY KEY,
+  transaction_id BIGINT NOT NULL,
+  account_number VARCHAR(20) NOT NULL,
+  sequence_no BIGINT,
+  direction VARCHAR(6) NOT NULL CHECK (direction IN ('DEBIT', 'CREDIT')),
+  amount DECIMAL(15, 2) NOT NULL CHECK (amount > 0),
+  balance_after DECIMAL(15, 2),
+  counterparty VARCHAR(20) NOT NULL,
+  posted_at TIMESTAMP NOT NULL DEFAULT clock_timestamp(),
+  UNIQUE (account_number, sequence_no)
+);
+
+-- Sub-balances of striped (hot) accounts. The logical balance is accounts.balance
+-- plus the sum of the account's stripes; see AccountRepository.logicalBalance
+CREATE TABLE IF NOT EXISTS account_stripes (
+  account_number VARCHAR(20) NOT NULL REFERENCES accounts(account_number),
+  stripe SMALLINT NOT NULL,
+  balance DECIMAL(15, 2) NOT NULL DEFAULT 0 CHECK (balance >= 0),  -- Consistency: no negative stripe
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (account_number, stripe)
+);
+
+-- Transactional outbox: events written in the same DB transaction as their
+-- transaction row, then relayed to Kafka by OutboxRelay (at-least-once)
+CREATE TABLE IF NOT EXISTS transaction_outbox (
+  id BIGSERIAL PRIMARY KEY,
+  transaction_id BIGINT NOT NULL,
+  event_key VARCHAR(64) NOT NULL,                                  -- Kafka record key
+  amount DECIMAL(10, 2) NOT NULL,
+  status VARCHAR(20) NOT NULL,
+  state VARCHAR(20) NOT NULL DEFAULT 'PENDING' CHECK (state IN ('PENDING', 'IN_FLIGHT', 'PUBLISHED')),
+  attempts INTEGER NOT NULL DEFAULT 0,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  claimed_until TIMESTAMP,                                         -- Lease of an IN_FLIGHT row
+  published_at TIMESTAMP
+);
+
 -- Index for faster lookups
 CREATE INDEX IF NOT EXISTS idx_transactions_status ON transactions(status);
 CREATE INDEX IF NOT EXISTS idx_transactions_created_at ON transactions(created_at);
 CREATE INDEX IF NOT EXISTS idx_ledger_transaction_id ON transaction_ledger(transaction_id);
 CREATE INDEX IF NOT EXISTS idx_accounts_account_number ON accounts(account_number);
+-- Balance engine recovery looks for debits whose credit never made it
+CREATE INDEX IF NOT EXISTS idx_ledger_debits ON transaction_ledger(transaction_id) WHERE operation = 'DEBIT';
+-- Balance as of a time (newest posting at or before it) and statements over a time range
+CREATE INDEX IF NOT EXISTS idx_postings_account_time ON ledger_postings(account_number, posted_at, sequence_no) INCLUDE (balance_after);
+CREATE INDEX IF NOT EXISTS idx_postings_transaction_id ON ledger_postings(transaction_id);
+-- Only unpublished rows are scanned by the relay
+CREATE INDEX IF NOT EXISTS idx_outbox_unpublished ON transaction_outbox(id) WHERE state <> 'PUBLISHED';
+CREATE INDEX IF NOT EXISTS idx_outbox_published_at ON transaction_outbox(published_at) WHERE state = 'PUBLISHED';
 
 -- Insert sample accounts for transfer demonstration
 INSERT INTO accounts (account_number, balance, currency) 
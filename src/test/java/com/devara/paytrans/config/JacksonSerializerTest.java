@@ -0,0 +1,86 @@
+package com.devara.paytrans.config;
+
+import com.devara.paytrans.payment.transaction.TransactionEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round-trip tests for the Kafka Jackson serializer pair, plus a throughput
+ * comparison against a plain per-call ObjectMapper (run with ./gradlew benchmark).
+ */
+class JacksonSerializerTest {
+
+  private static final String TOPIC = "transaction-events";
+
+  private final ObjectMapper objectMapper = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  @Test
+  void roundTrip_preservesEvent() {
+    JacksonSerializer<TransactionEvent> serializer = new JacksonSerializer<>(objectMapper, TransactionEvent.class);
+    JacksonDeserializer<TransactionEvent> deserializer = new JacksonDeserializer<>(objectMapper, TransactionEvent.class);
+
+    TransactionEvent event = new TransactionEvent(42L, new BigDecimal("100.50"), "COMPLETED");
+
+    // The reused buffer must not leak bytes from one record into the next
+    serializer.serialize(TOPIC, new TransactionEvent(1L, new BigDecimal("99999999.99"), "ROLLED_BACK"));
+    byte[] bytes = serializer.serialize(TOPIC, event);
+
+    assertThat(deserializer.deserialize(TOPIC, bytes)).isEqualTo(event);
+    assertThat(serializer.serialize(TOPIC, null)).isNull();
+    assertThat(deserializer.deserialize(TOPIC, null)).isNull();
+  }
+
+  @Test
+  void defaultConstructor_matchesConfiguredOutput() {
+    TransactionEvent event = new TransactionEvent(7L, new BigDecimal("5.00"), "PENDING");
+
+    assertThat(new JacksonSerializer<TransactionEvent>().serialize(TOPIC, event))
+        .isEqualTo(new JacksonSerializer<>(objectMapper, TransactionEvent.class).serialize(TOPIC, event));
+  }
+
+  @Test
+  @Tag("benchmark")
+  void benchmark_againstPlainObjectMapper() throws Exception {
+    ObjectMapper plain = new ObjectMapper();
+    JacksonSerializer<TransactionEvent> tuned = new JacksonSerializer<>(objectMapper, TransactionEvent.class);
+    TransactionEvent event = new TransactionEvent(123456L, new BigDecimal("1234.56"), "COMPLETED");
+
+    Function<TransactionEvent, byte[]> baseline = e -> {
+      try {
+        return plain.writeValueAsBytes(e);
+      } catch (Exception ex) {
+        throw new RuntimeException(ex);
+      }
+    };
+    Function<TransactionEvent, byte[]> candidate = e -> tuned.serialize(TOPIC, e);
+
+    int iterations = 2_000_000;
+    for (int round = 0; round < 3; round++) {
+      double baselineNs = measure(baseline, event, iterations);
+      double candidateNs = measure(candidate, event, iterations);
+      System.out.printf("round %d: plain ObjectMapper %.1f ns/op, JacksonSerializer %.1f ns/op%n",
+          round, baselineNs, candidateNs);
+    }
+  }
+
+  private static double measure(Function<TransactionEvent, byte[]> serializer, TransactionEvent event, int iterations) {
+    long sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      sink += serializer.apply(event).length;
+    }
+    long elapsed = System.nanoTime() - start;
+    assertThat(sink).isPositive();
+    return (double) elapsed / iterations;
+  }
+}
@@ -0,0 +1,247 @@
+package com.devara.paytrans.config;
+
+import com.devara.paytrans.payment.transaction.Transaction;
+import com.devara.paytrans.payment.transaction.TransactionEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Delivery harness for the transaction-events producer settings, run against an
+ * embedded three-broker cluster (./gradlew benchmark).
+ *
+ * Each run sends numbered events across a fixed set of keys, stops one broker a
+ * third of the way in so in-flight requests fail over and are retried, then reads
+ * the topic back with read_committed and reports duplicates, acknowledged-but-lost
+ * events, per-key reordering and send throughput.
+ */
+@Tag("benchmark")
+class KafkaDeliveryHarnessTest {
+
+  private static final int BROKERS = 3;
+  private static final int PARTITIONS = 6;
+  private static final int RECORDS = 50_000;
+  private static final int KEYS = 100;
+  private static final int TRANSACTION_SIZE = 500;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+  private EmbeddedKafkaKraftBroker broker;
+  private String topic;
+
+  @BeforeEach
+  void startCluster() throws Exception {
+    broker = new EmbeddedKafkaKraftBroker(BROKERS, PARTITIONS);
+    broker.afterPropertiesSet();
+    topic = "harness-" + System.nanoTime();
+    try (AdminClient admin = AdminClient.create(Map.of(
+        AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()))) {
+      admin.createTopics(List.of(new NewTopic(topic, PARTITIONS, (short) BROKERS)
+              .configs(Map.of("min.insync.replicas", "2"))))
+          .all().get();
+    }
+  }
+
+  @AfterEach
+  void stopCluster() {
+    try {
+      broker.destroy();
+    } catch (RuntimeException e) {
+      // One broker is already down; the rest are shut down regardless
+    }
+  }
+
+  @Test
+  void idempotentProducer_survivesBrokerFailureWithoutDuplicates() {
+    Report report = run(true, false);
+
+    assertThat(report.duplicates).isZero();
+    assertThat(report.lost).isZero();
+    assertThat(report.reordered).isZero();
+  }
+
+  @Test
+  void transactionalBatches_survivesBrokerFailureWithoutDuplicates() {
+    Report report = run(true, true);
+
+    assertThat(report.duplicates).isZero();
+    assertThat(report.lost).isZero();
+    assertThat(report.reordered).isZero();
+  }
+
+  @Test
+  void plainProducer_baseline() {
+    // Pre-idempotence settings (retries=3), reported for comparison only
+    Report report = run(false, false);
+
+    assertThat(report.lost).isZero();
+  }
+
+  private Report run(boolean idempotence, boolean transactional) {
+    KafkaClientProperties properties = new KafkaClientProperties();
+    properties.setBootstrapServers(broker.getBrokersAsString());
+    properties.getProducer().setIdempotence(idempotence);
+
+    SenderOptions<String, TransactionEvent> options = SenderOptions
+        .<String, TransactionEvent>create(KafkaConfig.producerProps(properties))
+        .withValueSerializer(new TransactionEventSerializer(objectMapper, Set.of()))
+        // Fail over quickly so the run exercises retries rather than waiting them out
+        .producerProperty(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 2_000)
+        .producerProperty(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 60_000)
+        .maxInFlight(properties.getProducer().getMaxInFlightRecords());
+    if (transactional) {
+      options = options.producerProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG, topic + "-tx");
+    } else {
+      options = options.stopOnError(false);
+    }
+
+    Set<Long> acked = ConcurrentHashMap.newKeySet();
+    AtomicInteger failedSends = new AtomicInteger();
+    AtomicBoolean brokerStopped = new AtomicBoolean();
+    Runnable onAck = () -> {
+      if (acked.size() >= RECORDS / 3 && brokerStopped.compareAndSet(false, true)) {
+        Mono.fromRunnable(this::stopOneBroker).subscribeOn(Schedulers.boundedElastic()).subscribe();
+      }
+    };
+
+    KafkaSender<String, TransactionEvent> sender = KafkaSender.create(options);
+    long started = System.nanoTime();
+    try {
+      if (transactional) {
+        sendTransactionally(sender, acked, failedSends, onAck);
+      } else {
+        sender.send(Flux.range(0, RECORDS).map(i -> record(i)))
+            .doOnNext(result -> {
+              if (result.exception() == null) {
+                acked.add(result.correlationMetadata());
+                onAck.run();
+              } else {
+                failedSends.incrementAndGet();
+              }
+            })
+            .blockLast(Duration.ofMinutes(5));
+      }
+    } finally {
+      sender.close();
+    }
+    long elapsedNanos = System.nanoTime() - started;
+
+    Report report = readBack(acked, failedSends.get(), elapsedNanos);
+    System.out.printf("%-28s %s%n",
+        transactional ? "transactional" : idempotence ? "idempotent" : "plain (retries=3)", report);
+    return report;
+  }
+
+  private void sendTransactionally(KafkaSender<String, TransactionEvent> sender, Set<Long> acked,
+                                   AtomicInteger failedSends, Runnable onAck) {
+    for (int from = 0; from < RECORDS; from += TRANSACTION_SIZE) {
+      int to = Math.min(from + TRANSACTION_SIZE, RECORDS);
+      Flux<SenderRecord<String, TransactionEvent, Long>> batch = Flux.range(from, to - from).map(this::record);
+      // An aborted batch is resent whole, as the outbox relay does after releasing its claims
+      for (int attempt = 0; ; attempt++) {
+        try {
+          sender.sendTransactionally(Flux.just(batch))
+              .concatMap(Flux::then)
+              .blockLast(Duration.ofMinutes(1));
+          LongStream.range(from, to).forEach(acked::add);
+          onAck.run();
+          break;
+        } catch (RuntimeException e) {
+          if (attempt == 4) {
+            failedSends.addAndGet(to - from);
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private Report readBack(Set<Long> acked, int failedSends, long elapsedNanos) {
+    Map<String, Object> props = new HashMap<>();
+    props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+    props.put(ConsumerConfig.GROUP_ID_CONFIG, topic + "-verify");
+    props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+    Map<Long, Integer> seen = new HashMap<>();
+    Map<String, Long> lastByKey = new HashMap<>();
+    int reordered = 0;
+    try (KafkaConsumer<String, TransactionEvent> consumer = new KafkaConsumer<>(props,
+        new StringDeserializer(), new TransactionEventDeserializer(objectMapper))) {
+      consumer.subscribe(List.of(topic));
+      long idleSince = System.currentTimeMillis();
+      while (System.currentTimeMillis() - idleSince < 10_000) {
+        var records = consumer.poll(Duration.ofMillis(500));
+        if (!records.isEmpty()) {
+          idleSince = System.currentTimeMillis();
+        }
+        for (ConsumerRecord<String, TransactionEvent> record : records) {
+          long id = record.value().getId();
+          if (seen.merge(id, 1, Integer::sum) == 1) {
+            Long last = lastByKey.put(record.key(), id);
+            if (last != null && last > id) {
+              reordered++;
+            }
+          }
+        }
+      }
+    }
+
+    int duplicates = seen.values().stream().mapToInt(count -> count - 1).sum();
+    long lost = acked.stream().filter(id -> !seen.containsKey(id)).count();
+    double perSecond = acked.size() / (elapsedNanos / 1e9);
+    return new Report(acked.size(), failedSends, seen.size(), duplicates, lost, reordered, perSecond);
+  }
+
+  private SenderRecord<String, TransactionEvent, Long> record(int i) {
+    TransactionEvent event = new TransactionEvent((long) i, BigDecimal.TEN, Transaction.STATUS_COMPLETED);
+    return SenderRecord.create(new ProducerRecord<>(topic, "ACC-" + (i % KEYS), event), (long) i);
+  }
+
+  private void stopOneBroker() {
+    var brokers = broker.getCluster().brokers();
+    int victim = brokers.keySet().stream().mapToInt(Integer::intValue).max().orElseThrow();
+    brokers.get(victim).shutdown();
+  }
+
+  private record Report(int acked, int failedSends, int delivered, int duplicates, long lost,
+                        int reordered, double perSecond) {
+    @Override
+    public String toString() {
+      return String.format("acked=%d failed=%d delivered=%d duplicates=%d lost=%d reordered=%d %,.0f events/s",
+          acked, failedSends, delivered, duplicates, lost, reordered, perSecond);
+    }
+  }
+}
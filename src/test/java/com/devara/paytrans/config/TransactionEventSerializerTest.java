@@ -0,0 +1,50 @@
+package com.devara.paytrans.config;
+
+import com.devara.paytrans.payment.transaction.TransactionEvent;
+import com.devara.paytrans.payment.transaction.TransactionEventCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for per-topic event format selection and mixed-format consumption.
+ */
+class TransactionEventSerializerTest {
+
+  private static final String BINARY_TOPIC = "transaction-events";
+  private static final String JSON_TOPIC = "other-events";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final TransactionEventSerializer serializer =
+      new TransactionEventSerializer(objectMapper, Set.of(BINARY_TOPIC));
+  private final TransactionEventDeserializer deserializer = new TransactionEventDeserializer(objectMapper);
+
+  @Test
+  void serialize_usesConfiguredFormatPerTopic() {
+    TransactionEvent event = new TransactionEvent(42L, new BigDecimal("100.50"), "COMPLETED");
+
+    byte[] binary = serializer.serialize(BINARY_TOPIC, event);
+    byte[] json = serializer.serialize(JSON_TOPIC, event);
+
+    assertThat(binary[0]).isEqualTo(TransactionEventCodec.VERSION_1);
+    assertThat(binary).hasSize(20);
+    assertThat(TransactionEventCodec.isJson(json)).isTrue();
+
+    // Consumers read both, whatever the topic's current setting
+    assertThat(deserializer.deserialize(BINARY_TOPIC, binary)).isEqualTo(event);
+    assertThat(deserializer.deserialize(BINARY_TOPIC, json)).isEqualTo(event);
+  }
+
+  @Test
+  void binary_roundTripsCustomStatusAndMissingFields() {
+    TransactionEvent custom = new TransactionEvent(7L, new BigDecimal("0.001"), "CHARGEBACK");
+    TransactionEvent sparse = new TransactionEvent(8L, null, null);
+
+    assertThat(TransactionEventCodec.decode(TransactionEventCodec.encode(custom))).isEqualTo(custom);
+    assertThat(TransactionEventCodec.decode(TransactionEventCodec.encode(sparse))).isEqualTo(sparse);
+  }
+}
@@ -0,0 +1,205 @@
+package com.devara.paytrans.payment.balance;
+
+import com.devara.paytrans.payment.transaction.Account;
+import com.devara.paytrans.payment.transaction.TransactionLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the balance engine against an in-memory journal: conservation
+ * under concurrent cross-partition transfers, group commit, rejections, the
+ * reversal of transfers to unknown accounts, journal failures and recovery of
+ * unfinished debits.
+ */
+class BalanceEngineTest {
+
+  private final InMemoryJournal journal = new InMemoryJournal();
+  private BalanceEngine engine;
+
+  @AfterEach
+  void tearDown() {
+    if (engine != null) {
+      engine.stop();
+    }
+  }
+
+  @Test
+  void transfer_concurrentAcrossPartitions_conservesMoneyAndGroupsCommits() {
+    for (int i = 0; i < 10; i++) {
+      journal.balances.put("ACC-" + i, new BigDecimal("1000.00"));
+    }
+    start(4);
+
+    int transfers = 2_000;
+    List<Throwable> failures = Flux.range(0, transfers)
+        .flatMap(i -> engine.transfer("ACC-" + (i % 10), "ACC-" + ((i * 7 + 3) % 10), BigDecimal.ONE)
+            .then(Mono.<Throwable>empty())
+            .onErrorResume(Mono::just), 256)
+        .collectList()
+        .block();
+
+    assertThat(failures).isEmpty();
+    assertThat(journal.total()).isEqualByComparingTo("10000.00");
+    assertThat(journal.count(TransactionLedger.OP_DEBIT)).isEqualTo(transfers);
+    assertThat(journal.count(TransactionLedger.OP_CREDIT)).isEqualTo(transfers);
+    assertThat(journal.appends.get()).isLessThan(transfers);
+  }
+
+  @Test
+  void transfer_insufficientFunds_rejectedWithoutPostings() {
+    journal.balances.put("ACC-1", new BigDecimal("10.00"));
+    journal.balances.put("ACC-2", BigDecimal.ZERO);
+    start(2);
+
+    assertThatThrownBy(() -> engine.transfer("ACC-1", "ACC-2", new BigDecimal("10.01")).block())
+        .isInstanceOf(Account.InsufficientFundsException.class);
+    assertThatThrownBy(() -> engine.transfer("ACC-9", "ACC-2", BigDecimal.ONE).block())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Source account not found");
+    assertThat(journal.postings).isEmpty();
+  }
+
+  @Test
+  void transfer_unknownDestination_isReversed() {
+    journal.balances.put("ACC-1", new BigDecimal("100.00"));
+    start(4);
+
+    assertThatThrownBy(() -> engine.transfer("ACC-1", "NOPE", new BigDecimal("40.00")).block())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Destination account not found");
+    assertThat(journal.balances.get("ACC-1")).isEqualByComparingTo("100.00");
+    assertThat(journal.count(TransactionLedger.OP_DEBIT)).isEqualTo(1);
+    assertThat(journal.count(TransactionLedger.OP_REVERSAL)).isEqualTo(1);
+  }
+
+  @Test
+  void transfer_overlongAccountNumber_rejectedBeforeQueueing() {
+    journal.balances.put("ACC-1", new BigDecimal("100.00"));
+    start(2);
+
+    assertThatThrownBy(() -> engine.transfer("ACC-1", "ACC-" + "9".repeat(20), BigDecimal.ONE).block())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("at most 20 characters");
+    assertThat(journal.appends).hasValue(0);
+  }
+
+  @Test
+  void transfer_transientJournalFailure_isRetried() {
+    journal.balances.put("ACC-1", new BigDecimal("100.00"));
+    journal.balances.put("ACC-2", BigDecimal.ZERO);
+    journal.transientFailures.set(2);
+    start(1);
+
+    engine.transfer("ACC-1", "ACC-2", new BigDecimal("40.00")).block();
+
+    assertThat(journal.balances.get("ACC-1")).isEqualByComparingTo("60.00");
+    assertThat(journal.balances.get("ACC-2")).isEqualByComparingTo("40.00");
+  }
+
+  @Test
+  void transfer_rejectedBatch_failsItsTransfersAndReloadsBalances() {
+    journal.balances.put("ACC-1", new BigDecimal("100.00"));
+    journal.balances.put("ACC-2", BigDecimal.ZERO);
+    journal.rejected = "ACC-2";
+    start(1);
+
+    assertThatThrownBy(() -> engine.transfer("ACC-1", "ACC-2", new BigDecimal("40.00")).block())
+        .isInstanceOf(BalanceJournal.BatchRejectedException.class);
+    assertThat(journal.postings).isEmpty();
+
+    // The partition keeps going, from the committed balances rather than the rejected ones
+    journal.rejected = null;
+    engine.transfer("ACC-1", "ACC-2", new BigDecimal("100.00")).block();
+    assertThat(journal.balances.get("ACC-1")).isEqualByComparingTo("0.00");
+    assertThat(journal.balances.get("ACC-2")).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void start_finishesDebitsWithoutCredit() {
+    // A previous run committed the debit (balance already reduced) but stopped before the credit
+    journal.balances.put("ACC-1", new BigDecimal("75.00"));
+    journal.balances.put("ACC-2", new BigDecimal("0.00"));
+    journal.postings.add(new Posting(42L, TransactionLedger.OP_DEBIT, "ACC-1", "ACC-2",
+        new BigDecimal("25.00"), new BigDecimal("75.00")));
+    start(4);
+
+    // Any later transfer on ACC-2 is queued behind the recovered credit
+    engine.transfer("ACC-2", "ACC-1", new BigDecimal("25.00")).block();
+
+    assertThat(journal.unfinishedDebits()).isEmpty();
+    assertThat(journal.balances.get("ACC-1")).isEqualByComparingTo("100.00");
+    assertThat(journal.balances.get("ACC-2")).isEqualByComparingTo("0.00");
+  }
+
+  private void start(int partitions) {
+    engine = new BalanceEngine(journal, partitions, 10_000, 500);
+    engine.start();
+  }
+
+  /**
+   * Journal that commits batches into maps, standing in for PostgreSQL.
+   */
+  private static final class InMemoryJournal implements BalanceJournal {
+    final Map<String, BigDecimal> balances = new HashMap<>();
+    final List<Posting> postings = new ArrayList<>();
+    final AtomicInteger appends = new AtomicInteger();
+    final AtomicInteger transientFailures = new AtomicInteger();
+    volatile String rejected;
+    private final AtomicLong ids = new AtomicLong(1_000);
+
+    @Override
+    public synchronized BigDecimal loadBalance(String accountNumber) {
+      return balances.get(accountNumber);
+    }
+
+    @Override
+    public List<Long> nextTransactionIds(int count) {
+      long first = ids.getAndAdd(count);
+      return LongStream.range(first, first + count).boxed().toList();
+    }
+
+    @Override
+    public synchronized void append(JournalBatch batch) {
+      if (transientFailures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+        throw new IllegalStateException("connection lost");
+      }
+      if (batch.postings().stream().anyMatch(posting -> posting.accountNumber().equals(rejected))) {
+        throw new BatchRejectedException("constraint violated", null);
+      }
+      appends.incrementAndGet();
+      postings.addAll(batch.postings());
+      balances.putAll(batch.balances());
+    }
+
+    @Override
+    public synchronized List<Posting> unfinishedDebits() {
+      return postings.stream()
+          .filter(debit -> debit.operation().equals(TransactionLedger.OP_DEBIT))
+          .filter(debit -> postings.stream().noneMatch(other ->
+              other.transactionId() == debit.transactionId() && !other.operation().equals(TransactionLedger.OP_DEBIT)))
+          .toList();
+    }
+
+    synchronized BigDecimal total() {
+      return balances.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    synchronized long count(String operation) {
+      return postings.stream().filter(posting -> posting.operation().equals(operation)).count();
+    }
+  }
+}
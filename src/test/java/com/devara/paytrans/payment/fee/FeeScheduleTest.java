@@ -0,0 +1,104 @@
+package com.devara.paytrans.payment.fee;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for fee schedule compilation and tier lookup.
+ */
+class FeeScheduleTest {
+
+  @Test
+  void quote_defaultSchedule_matchesStandardFee() throws Exception {
+    FeeSchedule schedule = loadBundledSchedule();
+
+    // 2.5% + 0.30
+    FeeQuote quote = schedule.quote(new BigDecimal("100.00"), "EUR", FeeScheduleRegistry.DEFAULT_MERCHANT_CLASS);
+    assertThat(quote.totalFee()).isEqualByComparingTo("2.80");
+    assertThat(quote.netAmount(new BigDecimal("100.00"))).isEqualByComparingTo("97.20");
+  }
+
+  @Test
+  void quote_tieredRule_picksTierByInclusiveUpperBound() throws Exception {
+    FeeSchedule schedule = loadBundledSchedule();
+
+    assertThat(schedule.quote(new BigDecimal("1000.00"), "USD", "HIGH_VOLUME").totalFee())
+        .isEqualByComparingTo("22.30");
+    assertThat(schedule.quote(new BigDecimal("1000.01"), "USD", "HIGH_VOLUME").totalFee())
+        .isEqualByComparingTo("19.25");
+    // Capped at 500.00 in the unbounded tier
+    assertThat(schedule.quote(new BigDecimal("100000.00"), "USD", "HIGH_VOLUME").totalFee())
+        .isEqualByComparingTo("500.00");
+    // Other currencies for the same class fall back to the wildcard rule
+    assertThat(schedule.quote(new BigDecimal("1000.00"), "EUR", "HIGH_VOLUME").totalFee())
+        .isEqualByComparingTo("25.30");
+  }
+
+  @Test
+  void quote_currencyCase_doesNotChangeTheRule() throws Exception {
+    FeeSchedule schedule = loadBundledSchedule();
+
+    assertThat(schedule.quote(new BigDecimal("1000.00"), "usd", "HIGH_VOLUME").totalFee())
+        .isEqualByComparingTo("22.30");
+
+    FeeScheduleDefinition.Tier tier = new FeeScheduleDefinition.Tier();
+    tier.setFixed(new BigDecimal("1.00"));
+    FeeSchedule lowercaseRule = FeeSchedule.compile(definition(rule("eur", List.of(tier))));
+    assertThat(lowercaseRule.quote(BigDecimal.TEN, "EUR", "STANDARD").totalFee()).isEqualByComparingTo("1.00");
+  }
+
+  @Test
+  void quote_minimumFee_isApplied() {
+    FeeScheduleDefinition.Tier tier = new FeeScheduleDefinition.Tier();
+    tier.setRate(new BigDecimal("0.01"));
+    tier.setMinimum(new BigDecimal("1.00"));
+
+    FeeSchedule schedule = FeeSchedule.compile(definition(rule("*", List.of(tier))));
+
+    assertThat(schedule.quote(new BigDecimal("10.00"), "USD", "ANY").totalFee()).isEqualByComparingTo("1.00");
+  }
+
+  @Test
+  void compile_boundedLastTier_isRejected() {
+    FeeScheduleDefinition.Tier tier = new FeeScheduleDefinition.Tier();
+    tier.setUpTo(new BigDecimal("100"));
+
+    assertThatThrownBy(() -> FeeSchedule.compile(definition(rule("USD", List.of(tier)))))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void quote_noMatchingRule_fails() {
+    FeeScheduleDefinition.Tier tier = new FeeScheduleDefinition.Tier();
+    FeeSchedule schedule = FeeSchedule.compile(definition(rule("USD", List.of(tier))));
+
+    assertThatThrownBy(() -> schedule.quote(BigDecimal.TEN, "EUR", "STANDARD"))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private static FeeSchedule loadBundledSchedule() throws Exception {
+    try (InputStream in = FeeScheduleTest.class.getResourceAsStream("/fee-schedule.json")) {
+      return FeeSchedule.compile(new ObjectMapper().readValue(in, FeeScheduleDefinition.class));
+    }
+  }
+
+  private static FeeScheduleDefinition.Rule rule(String currency, List<FeeScheduleDefinition.Tier> tiers) {
+    FeeScheduleDefinition.Rule rule = new FeeScheduleDefinition.Rule();
+    rule.setCurrency(currency);
+    rule.setTiers(tiers);
+    return rule;
+  }
+
+  private static FeeScheduleDefinition definition(FeeScheduleDefinition.Rule rule) {
+    FeeScheduleDefinition definition = new FeeScheduleDefinition();
+    definition.setRules(List.of(rule));
+    return definition;
+  }
+}
@@ -0,0 +1,107 @@
+package com.devara.paytrans.payment.fraud;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the rule-based fraud engine and its velocity counters.
+ */
+class FraudEngineTest {
+
+  private static final long NOW = 1_700_000_000_000L;
+
+  private final FraudEngine engine = new FraudEngine(List.of(
+      new AmountThresholdRule(new BigDecimal("5000"), 0.3),
+      new CurrencyLimitRule(Map.of("USD", new BigDecimal("10000")), 0.5),
+      new VelocityRule(Duration.ofMinutes(1), 3, 0.4)
+  ), 0.8, 0.2);
+
+  @Test
+  void assess_smallPayment_isLowRisk() {
+    FraudAssessment assessment = engine.assess(context("ACC-001", "50.00", NOW));
+
+    assertThat(assessment.score()).isZero();
+    assertThat(assessment.status()).isEqualTo("low_risk");
+    assertThat(assessment.blocked()).isFalse();
+    assertThat(assessment.contributions()).containsKeys("amount_over_5000", "currency_limit", "velocity_3_per_60s");
+  }
+
+  @Test
+  void assess_largePaymentOverCurrencyLimit_isBlocked() {
+    FraudAssessment assessment = engine.assess(context("ACC-001", "12000.00", NOW));
+
+    assertThat(assessment.score()).isEqualTo(0.8);
+    assertThat(assessment.blocked()).isTrue();
+    assertThat(assessment.contributions().get("currency_limit")).isEqualTo(0.5);
+  }
+
+  @Test
+  void assess_amountThreshold_usesUsdAmount() {
+    // IDR 100,000 is about 6 USD: a large raw amount must not trip the 5000 threshold
+    FraudContext smallIdr = new FraudContext("ACC-004", new BigDecimal("100000"), "IDR", new BigDecimal("6.20"), NOW);
+    assertThat(engine.assess(smallIdr).contributions().get("amount_over_5000")).isZero();
+
+    FraudContext largeEur = new FraudContext("ACC-005", new BigDecimal("4800"), "EUR", new BigDecimal("5200.00"), NOW);
+    assertThat(engine.assess(largeEur).contributions().get("amount_over_5000")).isEqualTo(0.3);
+  }
+
+  @Test
+  void assess_velocityRule_firesOnlyAboveLimitWithinWindow() {
+    for (int i = 0; i < 3; i++) {
+      assertThat(engine.assess(context("ACC-002", "10.00", NOW + i)).contributions().get("velocity_3_per_60s")).isZero();
+    }
+    assertThat(engine.assess(context("ACC-002", "10.00", NOW + 3)).contributions().get("velocity_3_per_60s")).isEqualTo(0.4);
+
+    // Other accounts are tracked separately
+    assertThat(engine.assess(context("ACC-003", "10.00", NOW + 4)).contributions().get("velocity_3_per_60s")).isZero();
+
+    // Once the window has passed, the account starts from zero again
+    long later = NOW + Duration.ofMinutes(2).toMillis();
+    assertThat(engine.assess(context("ACC-002", "10.00", later)).contributions().get("velocity_3_per_60s")).isZero();
+  }
+
+  @Test
+  void rules_sameVelocityWindowWithDifferentLimits_scoredSeparately() {
+    FraudEngine twoLimits = new FraudEngine(List.of(
+        new VelocityRule(Duration.ofMinutes(1), 1, 0.2),
+        new VelocityRule(Duration.ofMinutes(1), 3, 0.4)
+    ), 0.8, 0.2);
+
+    twoLimits.assess(context("ACC-006", "10.00", NOW));
+    FraudAssessment second = twoLimits.assess(context("ACC-006", "10.00", NOW + 1));
+
+    assertThat(second.contributions())
+        .containsEntry("velocity_1_per_60s", 0.2)
+        .containsEntry("velocity_3_per_60s", 0.0);
+  }
+
+  @Test
+  void rules_duplicateName_rejected() {
+    assertThatThrownBy(() -> new FraudEngine(List.of(
+        new VelocityRule(Duration.ofMinutes(1), 3, 0.4),
+        new VelocityRule(Duration.ofSeconds(60), 3, 0.1)
+    ), 0.8, 0.2)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void slidingWindowCounter_expiresOldBuckets() {
+    SlidingWindowCounter counter = new SlidingWindowCounter(Duration.ofSeconds(10), 10);
+
+    counter.incrementAndCount("k", NOW);
+    counter.incrementAndCount("k", NOW + 5_000);
+    assertThat(counter.count("k", NOW + 5_000)).isEqualTo(2);
+    assertThat(counter.count("k", NOW + 12_000)).isEqualTo(1);
+    assertThat(counter.count("k", NOW + 20_000)).isZero();
+  }
+
+  private static FraudContext context(String account, String amount, long now) {
+    return new FraudContext(account, new BigDecimal(amount), "USD", new BigDecimal(amount), now);
+  }
+}
@@ -0,0 +1,154 @@
+package com.devara.paytrans.payment.fx;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the FX rate cache: hot-path lookups, stale-while-revalidate
+ * and the staleness limit. Uses an in-test provider and a manually advanced clock.
+ */
+class FxRateCacheTest {
+
+  private final AtomicBoolean providerDown = new AtomicBoolean(false);
+  private final AtomicInteger fetches = new AtomicInteger();
+  private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+  private final FxProperties properties = new FxProperties();
+  private FxRateCache cache;
+
+  @BeforeEach
+  void setUp() {
+    FxRateProvider provider = () -> {
+      fetches.incrementAndGet();
+      if (providerDown.get()) {
+        return Mono.error(new IllegalStateException("provider unavailable"));
+      }
+      return Mono.just(Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("1.10")));
+    };
+
+    properties.setTtl(Duration.ofSeconds(60));
+    properties.setMaxStale(Duration.ofMinutes(10));
+    cache = new FxRateCache(provider, properties, clock);
+  }
+
+  @Test
+  void rateToUsd_coldStart_fetchesOnceThenServesFromMemory() {
+    assertThat(cache.rateToUsd("EUR").block()).isEqualByComparingTo("1.10");
+    assertThat(cache.rateToUsd("eur").block()).isEqualByComparingTo("1.10");
+    assertThat(cache.rateToUsd("USD").block()).isEqualByComparingTo("1");
+
+    assertThat(fetches.get()).isEqualTo(1);
+  }
+
+  @Test
+  void rateToUsd_concurrentColdStart_sharesOneFetch() {
+    Sinks.One<Map<String, BigDecimal>> rates = Sinks.one();
+    AtomicInteger slowFetches = new AtomicInteger();
+    FxRateCache slowCache = new FxRateCache(() -> {
+      slowFetches.incrementAndGet();
+      return rates.asMono();
+    }, properties, clock);
+
+    CompletableFuture<BigDecimal> eur = slowCache.rateToUsd("EUR").toFuture();
+    CompletableFuture<BigDecimal> usd = slowCache.rateToUsd("USD").toFuture();
+    rates.tryEmitValue(Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("1.10")));
+
+    assertThat(eur.join()).isEqualByComparingTo("1.10");
+    assertThat(usd.join()).isEqualByComparingTo("1");
+    assertThat(slowFetches.get()).isEqualTo(1);
+  }
+
+  @Test
+  void rateToUsd_coldStartFetchFailed_nextRequestFetchesAgain() {
+    providerDown.set(true);
+    assertThatThrownBy(() -> cache.rateToUsd("EUR").block()).hasMessageContaining("provider unavailable");
+
+    providerDown.set(false);
+    assertThat(cache.rateToUsd("EUR").block()).isEqualByComparingTo("1.10");
+    assertThat(fetches.get()).isEqualTo(2);
+  }
+
+  @Test
+  void rateToUsd_hungProvider_timesOutAndRetriesOnNextRequest() {
+    AtomicBoolean hung = new AtomicBoolean(true);
+    properties.setFetchTimeout(Duration.ofMillis(50));
+    FxRateCache hangingCache = new FxRateCache(() -> hung.get()
+        ? Mono.never()
+        : Mono.just(Map.of("EUR", new BigDecimal("1.10"))), properties, clock);
+
+    assertThatThrownBy(() -> hangingCache.rateToUsd("EUR").block(Duration.ofSeconds(5)))
+        .hasCauseInstanceOf(TimeoutException.class);
+
+    hung.set(false);
+    assertThat(hangingCache.rateToUsd("EUR").block(Duration.ofSeconds(5))).isEqualByComparingTo("1.10");
+  }
+
+  @Test
+  void rateToUsd_expiredSnapshotAndProviderDown_servesStaleRates() {
+    cache.rateToUsd("EUR").block();
+    providerDown.set(true);
+    clock.advance(Duration.ofSeconds(90));
+
+    assertThat(cache.rateToUsd("EUR").block()).isEqualByComparingTo("1.10");
+    assertThat(fetches.get()).isEqualTo(2); // one background revalidation attempt
+  }
+
+  @Test
+  void rateToUsd_beyondMaxStale_fails() {
+    cache.rateToUsd("EUR").block();
+    providerDown.set(true);
+    clock.advance(Duration.ofMinutes(11));
+
+    assertThatThrownBy(() -> cache.rateToUsd("EUR").block())
+        .isInstanceOf(FxRateCache.StaleRatesException.class);
+  }
+
+  @Test
+  void rateToUsd_unknownCurrency_fails() {
+    assertThatThrownBy(() -> cache.rateToUsd("CHF").block())
+        .isInstanceOf(FxRateCache.UnsupportedCurrencyException.class);
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now;
+
+    MutableClock(Instant start) {
+      this.now = start;
+    }
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for the single-statement transfer
+ * ({@link AccountRepository#transfer}) and how atomicTransfer reports its
+ * outcomes. Needs the PostgreSQL database from application.yml.
+ */
+@SpringBootTest(properties = "paytrans.idempotency.store=memory")
+class AtomicTransferIntegrationTest {
+
+  @Autowired
+  private AcidTransactionService service;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private DatabaseClient databaseClient;
+
+  private String source;
+  private String destination;
+
+  @BeforeEach
+  void setUp() {
+    // Fresh accounts per test; account numbers are at most 20 characters
+    String run = UUID.randomUUID().toString().substring(0, 8);
+    source = "IT-A-" + run;
+    destination = "IT-B-" + run;
+    createAccount(source, "100.00");
+    createAccount(destination, "100.00");
+  }
+
+  @Test
+  void atomicTransfer_sufficientFunds_movesBothBalances() {
+    Transaction tx = service.atomicTransfer(source, destination, new BigDecimal("30.00")).block();
+
+    assertThat(tx.getId()).isNotNull();
+    assertThat(balance(source)).isEqualByComparingTo("70.00");
+    assertThat(balance(destination)).isEqualByComparingTo("130.00");
+  }
+
+  @Test
+  void atomicTransfer_insufficientFunds_changesNeitherBalance() {
+    assertThatThrownBy(() -> service.atomicTransfer(source, destination, new BigDecimal("100.01")).block())
+        .isInstanceOf(Account.InsufficientFundsException.class)
+        .hasMessageContaining("Available: 100.00");
+
+    assertThat(balance(source)).isEqualByComparingTo("100.00");
+    assertThat(balance(destination)).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void atomicTransfer_missingSource_changesNothing() {
+    assertThatThrownBy(() -> service.atomicTransfer("IT-MISSING", destination, BigDecimal.TEN).block())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Source account not found");
+
+    assertThat(balance(destination)).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void atomicTransfer_missingDestination_doesNotDebitSource() {
+    assertThatThrownBy(() -> service.atomicTransfer(source, "IT-MISSING", BigDecimal.TEN).block())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Destination account not found");
+
+    assertThat(balance(source)).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void transfer_oppositeDirectionsConcurrently_neitherDeadlocksNorLosesMoney() {
+    // 100 each way, so neither account can run short whatever the interleaving.
+    // Each statement locks both rows in account-number order, whichever way the money moves.
+    // Called without the service, so a deadlock would surface instead of being retried.
+    List<TransferOutcome> outcomes = Flux.range(0, 200)
+        .flatMap(i -> i % 2 == 0
+            ? accountRepository.transfer(source, destination, BigDecimal.ONE)
+            : accountRepository.transfer(destination, source, BigDecimal.ONE), 32)
+        .collectList()
+        .block(Duration.ofSeconds(60));
+
+    assertThat(outcomes).hasSize(200).allSatisfy(outcome -> assertThat(outcome.applied()).isTrue());
+    assertThat(balance(source).add(balance(destination))).isEqualByComparingTo("200.00");
+  }
+
+  private void createAccount(String accountNumber, String balance) {
+    databaseClient.sql("INSERT INTO accounts (account_number, balance) VALUES (:accountNumber, :balance)")
+        .bind("accountNumber", accountNumber)
+        .bind("balance", new BigDecimal(balance))
+        .then()
+        .block();
+  }
+
+  private BigDecimal balance(String accountNumber) {
+    return accountRepository.findByAccountNumber(accountNumber).map(Account::getBalance).block();
+  }
+}
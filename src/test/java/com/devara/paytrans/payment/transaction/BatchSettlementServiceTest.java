@@ -0,0 +1,85 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for settlement netting and the running balances of its postings.
+ */
+class BatchSettlementServiceTest {
+
+  @Test
+  void netPositions_cancelsOpposingTransfersAndConservesMoney() {
+    List<SettlementTransfer> transfers = List.of(
+        new SettlementTransfer("ACC-001", "ACC-002", new BigDecimal("100.00")),
+        new SettlementTransfer("ACC-002", "ACC-003", new BigDecimal("100.00")),
+        new SettlementTransfer("ACC-003", "ACC-001", new BigDecimal("40.00")),
+        new SettlementTransfer("ACC-002", "ACC-001", new BigDecimal("25.50")));
+
+    SortedMap<String, BigDecimal> net = BatchSettlementService.netPositions(transfers);
+
+    assertThat(net.keySet()).containsExactly("ACC-001", "ACC-002", "ACC-003");
+    assertThat(net.get("ACC-001")).isEqualByComparingTo("-34.50");
+    assertThat(net.get("ACC-002")).isEqualByComparingTo("-25.50");
+    assertThat(net.get("ACC-003")).isEqualByComparingTo("60.00");
+    assertThat(net.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add)).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void netPositions_manyTransfersCollapseToOneRowPerAccount() {
+    List<SettlementTransfer> transfers = new ArrayList<>();
+    for (int i = 0; i < 3_000; i++) {
+      transfers.add(new SettlementTransfer("ACC-00" + (i % 3 + 1), "ACC-00" + ((i + 1) % 3 + 1), BigDecimal.ONE));
+    }
+
+    SortedMap<String, BigDecimal> net = BatchSettlementService.netPositions(transfers);
+
+    assertThat(net).hasSize(3);
+    net.values().forEach(delta -> assertThat(delta).isEqualByComparingTo("0"));
+  }
+
+  @Test
+  void posting_advancesRunningBalanceAndSequencePerAccount() {
+    Map<String, PostedBalance> running = new HashMap<>();
+    running.put("ACC-001", new PostedBalance(new BigDecimal("100.00"), 41L));
+    running.put("ACC-002", new PostedBalance(new BigDecimal("0.00"), 7L));
+
+    // ACC-002 passes on funds within the batch, so its running balance dips below zero
+    LedgerPosting debit2 = BatchSettlementService.posting(1L, LedgerPosting.DEBIT, "ACC-002", "ACC-003",
+        new BigDecimal("30.00"), running);
+    LedgerPosting debit1 = BatchSettlementService.posting(2L, LedgerPosting.DEBIT, "ACC-001", "ACC-002",
+        new BigDecimal("50.00"), running);
+    LedgerPosting credit2 = BatchSettlementService.posting(2L, LedgerPosting.CREDIT, "ACC-002", "ACC-001",
+        new BigDecimal("50.00"), running);
+
+    assertThat(debit2.getSequenceNo()).isEqualTo(8L);
+    assertThat(debit2.getBalanceAfter()).isEqualByComparingTo("-30.00");
+    assertThat(debit1.getSequenceNo()).isEqualTo(42L);
+    assertThat(debit1.getBalanceAfter()).isEqualByComparingTo("50.00");
+    assertThat(credit2.getSequenceNo()).isEqualTo(9L);
+    assertThat(credit2.getBalanceAfter()).isEqualByComparingTo("20.00");
+    assertThat(credit2.getCounterparty()).isEqualTo("ACC-001");
+    assertThat(running.get("ACC-002")).isEqualTo(new PostedBalance(new BigDecimal("20.00"), 9L));
+  }
+
+  @Test
+  void posting_stripedAccount_isUnsequenced() {
+    Map<String, PostedBalance> running = new HashMap<>();
+
+    LedgerPosting posting = BatchSettlementService.posting(1L, LedgerPosting.CREDIT, "MERCHANT-1", "ACC-001",
+        BigDecimal.TEN, running);
+
+    assertThat(posting.getSequenceNo()).isNull();
+    assertThat(posting.getBalanceAfter()).isNull();
+    assertThat(posting.getAmount()).isEqualByComparingTo("10");
+    assertThat(running).isEmpty();
+  }
+}
@@ -0,0 +1,91 @@
+package com.devara.paytrans.payment.transaction;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the conflict retry policy: re-subscription per attempt, the
+ * attempt bound, pass-through of other errors, jitter bounds and metrics.
+ */
+class ConflictRetryPolicyTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ConflictRetryProperties properties = new ConflictRetryProperties();
+  private ConflictRetryPolicy policy;
+
+  @BeforeEach
+  void setUp() {
+    properties.setMaxAttempts(4);
+    properties.setBaseBackoff(Duration.ofMillis(1));
+    properties.setMaxBackoff(Duration.ofMillis(5));
+    policy = new ConflictRetryPolicy(properties, meterRegistry);
+  }
+
+  @Test
+  void apply_conflictThenSuccess_retriesWithFreshAttempt() {
+    AtomicInteger attempts = new AtomicInteger();
+    Mono<String> operation = Mono.defer(() -> attempts.incrementAndGet() < 3
+        ? Mono.error(new OptimisticLockingFailureException("stale version"))
+        : Mono.just("saved"));
+
+    assertThat(policy.apply("account", operation).block()).isEqualTo("saved");
+    assertThat(attempts).hasValue(3);
+    assertThat(count("account", "retried")).isEqualTo(2);
+    assertThat(count("account", "exhausted")).isZero();
+  }
+
+  @Test
+  void apply_persistentConflict_givesUpAfterMaxAttempts() {
+    AtomicInteger attempts = new AtomicInteger();
+    Mono<String> operation = Mono.defer(() -> {
+      attempts.incrementAndGet();
+      return Mono.error(new OptimisticLockingFailureException("stale version"));
+    });
+
+    assertThatThrownBy(() -> policy.apply("transaction", operation).block())
+        .isInstanceOf(OptimisticLockingFailureException.class);
+    assertThat(attempts).hasValue(4);
+    assertThat(count("transaction", "retried")).isEqualTo(3);
+    assertThat(count("transaction", "exhausted")).isEqualTo(1);
+  }
+
+  @Test
+  void apply_otherError_isNotRetried() {
+    AtomicInteger attempts = new AtomicInteger();
+    Mono<String> operation = Mono.defer(() -> {
+      attempts.incrementAndGet();
+      return Mono.error(new IllegalArgumentException("Transaction not found: 1"));
+    });
+
+    assertThatThrownBy(() -> policy.apply("transaction", operation).block())
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void backoff_staysWithinExponentialCeiling() {
+    properties.setBaseBackoff(Duration.ofMillis(10));
+    properties.setMaxBackoff(Duration.ofMillis(500));
+
+    for (int i = 0; i < 1_000; i++) {
+      assertThat(policy.backoff(0)).isBetween(Duration.ZERO, Duration.ofMillis(10));
+      assertThat(policy.backoff(3)).isBetween(Duration.ZERO, Duration.ofMillis(80));
+      assertThat(policy.backoff(20)).isBetween(Duration.ZERO, Duration.ofMillis(500));
+      assertThat(policy.backoff(100)).isBetween(Duration.ZERO, Duration.ofMillis(500));
+    }
+  }
+
+  private double count(String entity, String outcome) {
+    var counter = meterRegistry.find("acid.conflicts").tag("entity", entity).tag("outcome", outcome).counter();
+    return counter == null ? 0 : counter.count();
+  }
+}
@@ -0,0 +1,199 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for group commit: concurrent writes share commits, ids reach both
+ * rows, a bad row fails only its own caller, and a write still queued at its
+ * timeout is dropped. Uses an in-test inserter and a pass-through transactional
+ * operator that counts commits.
+ */
+class GroupCommitWriterTest {
+
+  private final RecordingInserter inserter = new RecordingInserter();
+  private final AtomicInteger commits = new AtomicInteger();
+  private final TransactionalOperator countingOperator = new TransactionalOperator() {
+    @Override
+    public <T> Mono<T> transactional(Mono<T> mono) {
+      return mono.doOnSuccess(value -> commits.incrementAndGet());
+    }
+
+    @Override
+    public <T> Flux<T> execute(TransactionCallback<T> action) {
+      throw new UnsupportedOperationException();
+    }
+  };
+  private GroupCommitWriter writer;
+
+  @AfterEach
+  void tearDown() {
+    writer.stop();
+  }
+
+  @Test
+  void write_concurrentCallers_shareCommits() {
+    writer = start(true);
+
+    List<Transaction> saved = Flux.range(1, 500)
+        .flatMap(i -> writer.write(transaction(i), ledger()), 500)
+        .collectList()
+        .block(Duration.ofSeconds(10));
+
+    assertThat(saved).hasSize(500).allSatisfy(tx -> assertThat(tx.getId()).isNotNull());
+    assertThat(inserter.ledger).hasSize(500)
+        .allSatisfy(entry -> assertThat(entry.getTransactionId()).isNotNull());
+    assertThat(commits.get()).isLessThan(100);
+  }
+
+  @Test
+  void write_badRowInGroup_failsOnlyItsCaller() {
+    writer = start(true);
+
+    List<String> outcomes = Flux.range(-2, 10)
+        .flatMap(i -> writer.write(transaction(i), ledger())
+            .map(tx -> "ok")
+            .onErrorReturn("failed"), 10)
+        .collectList()
+        .block(Duration.ofSeconds(10));
+
+    // Amounts -2, -1 and 0 violate the amount check
+    assertThat(outcomes).filteredOn("failed"::equals).hasSize(3);
+    assertThat(outcomes).filteredOn("ok"::equals).hasSize(7);
+  }
+
+  @Test
+  void write_stillQueuedAtTimeout_failsAndIsNeverCommitted() throws InterruptedException {
+    writer = start(true, 1);
+    inserter.stall();
+    CompletableFuture<Transaction> first = writer.write(transaction(1), ledger()).toFuture();
+    // The only commit slot is now held by the first write
+    Thread.sleep(100);
+
+    assertThatThrownBy(() -> writer.write(transaction(2), ledger()).block(Duration.ofSeconds(10)))
+        .hasCauseInstanceOf(TimeoutException.class);
+
+    inserter.resume();
+    assertThat(first.join().getAmount()).isEqualByComparingTo("1");
+    // Give the queued group a chance to run; the abandoned write must not be in it
+    Thread.sleep(100);
+    assertThat(inserter.ledger).hasSize(1);
+  }
+
+  @Test
+  void write_inCommitAtTimeout_waitsForTheOutcome() {
+    writer = start(true);
+    inserter.stall();
+    Mono.delay(Duration.ofSeconds(1)).subscribe(tick -> inserter.resume());
+
+    Transaction saved = writer.write(transaction(1), ledger()).block(Duration.ofSeconds(10));
+
+    assertThat(saved.getId()).isNotNull();
+    assertThat(inserter.ledger).hasSize(1);
+  }
+
+  @Test
+  void write_disabled_commitsEachWriteAlone() {
+    writer = start(false);
+
+    Flux.range(1, 5).flatMap(i -> writer.write(transaction(i), ledger())).blockLast(Duration.ofSeconds(10));
+
+    assertThat(commits).hasValue(5);
+  }
+
+  private GroupCommitWriter start(boolean enabled) {
+    return start(enabled, new GroupCommitProperties().getConcurrency());
+  }
+
+  private GroupCommitWriter start(boolean enabled, int concurrency) {
+    GroupCommitProperties properties = new GroupCommitProperties();
+    properties.setEnabled(enabled);
+    properties.setConcurrency(concurrency);
+    properties.setMaxDelay(Duration.ofMillis(5));
+    properties.setMaxRows(100);
+    properties.setWriteTimeout(Duration.ofMillis(500));
+    GroupCommitWriter started = new GroupCommitWriter(inserter, countingOperator, properties);
+    started.start();
+    return started;
+  }
+
+  private static Transaction transaction(int amount) {
+    return Transaction.builder()
+        .amount(BigDecimal.valueOf(amount))
+        .currency("USD")
+        .status(Transaction.STATUS_COMPLETED)
+        .netAmount(BigDecimal.valueOf(amount))
+        .build();
+  }
+
+  private static TransactionLedger ledger() {
+    return TransactionLedger.builder()
+        .operation(TransactionLedger.OP_CREATE)
+        .newStatus(Transaction.STATUS_COMPLETED)
+        .newAmount(BigDecimal.ONE)
+        .build();
+  }
+
+  /**
+   * Accepts rows like the database would, rejecting non-positive amounts.
+   */
+  private static final class RecordingInserter extends LedgerBatchInserter {
+    final ConcurrentLinkedQueue<TransactionLedger> ledger = new ConcurrentLinkedQueue<>();
+    private final AtomicLong ids = new AtomicLong(1);
+    private volatile Sinks.Empty<Void> gate;
+
+    RecordingInserter() {
+      super(null);
+    }
+
+    /**
+     * Holds every commit that starts from now on until {@link #resume()}.
+     */
+    void stall() {
+      gate = Sinks.empty();
+    }
+
+    void resume() {
+      gate.tryEmitEmpty();
+    }
+
+    @Override
+    public Mono<List<Long>> reserveTransactionIds(int count) {
+      Mono<Void> wait = gate == null ? Mono.empty() : gate.asMono();
+      return wait.then(Mono.fromSupplier(() -> {
+        long first = ids.getAndAdd(count);
+        return LongStream.range(first, first + count).boxed().toList();
+      }));
+    }
+
+    @Override
+    public Mono<Void> insertTransactions(List<Transaction> transactions) {
+      boolean invalid = transactions.stream().anyMatch(tx -> tx.getAmount().signum() <= 0);
+      return invalid ? Mono.error(new IllegalStateException("amount check violated")) : Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> insertLedger(List<TransactionLedger> entries) {
+      ledger.addAll(entries);
+      return Mono.empty();
+    }
+  }
+}
@@ -27,6 +27,12 @@ class IdempotencyIntegrationTest {
     @Autowired
     private ReactiveRedisTemplate<String, String> redisTemplate;
 
+    @Autowired
+    private ReactiveRedisTemplate<String, byte[]> bytesRedisTemplate;
+
+    @Autowired
+    private TransactionResultCodec codec;
+
     @BeforeEach
     void setUp() {
         // Clear Redis before each test
@@ -79,11 +85,11 @@ class IdempotencyIntegrationTest {
         assertThat(secondResponse.getAmount()).isEqualTo(firstResponse.getAmount());
         assertThat(secondResponse.getCurrency()).isEqualTo(firstResponse.getCurrency());
 
-        // Verify Redis cache contains the result
+        // Verify Redis cache contains the result (compact binary encoding)
         String redisKey = "idempotency:" + idempotencyKey;
-        String cachedValue = redisTemplate.opsForValue().get(redisKey).block();
+        byte[] cachedValue = bytesRedisTemplate.opsForValue().get(redisKey).block();
         assertThat(cachedValue).isNotNull();
-        assertThat(cachedValue).contains("\"id\":" + firstTransactionId);
+        assertThat(codec.decode(cachedValue).getId()).isEqualTo(firstTransactionId);
     }
 
     @Test
@@ -0,0 +1,107 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for duplicate handling in {@link IdempotencyService}, on the embedded store.
+ */
+class IdempotencyServiceTest {
+
+  private final InMemoryIdempotencyStore store =
+      new InMemoryIdempotencyStore(new IdempotencyProperties.Memory(), Clock.systemUTC());
+  private final AtomicInteger executions = new AtomicInteger();
+
+  @AfterEach
+  void tearDown() {
+    store.clear();
+  }
+
+  @Test
+  void rejectMode_concurrentDuplicate_failsFast() {
+    IdempotencyService service = service("reject");
+
+    Mono<Transaction> first = service.executeIdempotent("k", slowPayment(1L)).cache();
+    first.subscribe();
+
+    assertThatThrownBy(() -> service.executeIdempotent("k", slowPayment(2L)).block())
+        .isInstanceOf(IdempotencyService.DuplicateRequestException.class);
+    assertThat(first.block().getId()).isEqualTo(1L);
+  }
+
+  @Test
+  void waitMode_sameNodeDuplicate_sharesOriginalExecution() {
+    IdempotencyService service = service("wait");
+
+    Mono<Transaction> first = service.executeIdempotent("k", slowPayment(1L));
+    Mono<Transaction> second = service.executeIdempotent("k", slowPayment(2L));
+
+    Transaction[] results = Mono.zip(first, second, (a, b) -> new Transaction[] {a, b}).block();
+
+    assertThat(results[0].getId()).isEqualTo(1L);
+    assertThat(results[1].getId()).isEqualTo(1L);
+    assertThat(executions).hasValue(1);
+  }
+
+  @Test
+  void waitMode_otherNodeDuplicate_waitsForOriginalResult() {
+    // Two services on one store stand in for two nodes sharing Redis
+    IdempotencyService nodeA = service("wait");
+    IdempotencyService nodeB = service("wait");
+
+    Mono<Transaction> first = nodeA.executeIdempotent("k", slowPayment(1L)).cache();
+    first.subscribe();
+
+    Transaction duplicate = nodeB.executeIdempotent("k", slowPayment(2L)).block(Duration.ofSeconds(5));
+
+    assertThat(duplicate.getId()).isEqualTo(1L);
+    assertThat(executions).hasValue(1);
+  }
+
+  @Test
+  void waitMode_originalFails_duplicateRunsOperation() {
+    IdempotencyService nodeA = service("wait");
+    IdempotencyService nodeB = service("wait");
+
+    Mono<Transaction> failing = Mono.delay(Duration.ofMillis(100))
+        .then(Mono.error(new IllegalStateException("boom")));
+    nodeA.executeIdempotent("k", failing).subscribe(tx -> { }, error -> { });
+
+    Transaction retried = nodeB.executeIdempotent("k", slowPayment(2L)).block(Duration.ofSeconds(5));
+
+    assertThat(retried.getId()).isEqualTo(2L);
+  }
+
+  private IdempotencyService service(String duplicateMode) {
+    IdempotencyProperties properties = new IdempotencyProperties();
+    properties.setDuplicateMode(duplicateMode);
+    properties.setWaitTimeout(Duration.ofSeconds(2));
+    properties.getNearCache().setEnabled(false);
+    return new IdempotencyService(store, new TransactionResultCodec(new ObjectMapper()),
+        new IdempotencyNearCache(properties, new SimpleMeterRegistry()), properties);
+  }
+
+  private Mono<Transaction> slowPayment(long id) {
+    return Mono.delay(Duration.ofMillis(100))
+        .map(tick -> {
+          executions.incrementAndGet();
+          return Transaction.builder()
+              .id(id)
+              .amount(new BigDecimal("10.00"))
+              .currency("USD")
+              .status(Transaction.STATUS_COMPLETED)
+              .build();
+        });
+  }
+}
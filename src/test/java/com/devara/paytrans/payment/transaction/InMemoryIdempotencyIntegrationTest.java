@@ -0,0 +1,116 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for idempotency on the embedded store
+ * (paytrans.idempotency.store=memory), so no Redis is needed.
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "paytrans.idempotency.store=memory")
+@AutoConfigureWebTestClient
+class InMemoryIdempotencyIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private InMemoryIdempotencyStore store;
+
+    @Autowired
+    private IdempotencyNearCache nearCache;
+
+    @Autowired
+    private TransactionResultCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        // Clear the store before each test
+        store.clear();
+        nearCache.invalidateAll();
+    }
+
+    @Test
+    void testIdempotency_duplicateRequest_returnsSameTransaction() {
+        // Given: A unique idempotency key and transaction request
+        String idempotencyKey = "test-memory-key-001";
+        TransactionController.TransactionRequest request = new TransactionController.TransactionRequest();
+        request.setIdempotencyKey(idempotencyKey);
+        request.setAmount(new BigDecimal("100.50"));
+        request.setCurrency("USD");
+
+        // When: First request is made
+        Transaction firstResponse = webTestClient.post()
+            .uri("/api/v1/transactions")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(request)
+            .exchange()
+            .expectStatus().isCreated()
+            .expectBody(Transaction.class)
+            .returnResult()
+            .getResponseBody();
+
+        // Then: Transaction is created
+        assertThat(firstResponse).isNotNull();
+        assertThat(firstResponse.getId()).isNotNull();
+        Long firstTransactionId = firstResponse.getId();
+
+        // When: Duplicate request is made with same idempotency key
+        Transaction secondResponse = webTestClient.post()
+            .uri("/api/v1/transactions")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(request)
+            .exchange()
+            .expectStatus().isCreated()
+            .expectBody(Transaction.class)
+            .returnResult()
+            .getResponseBody();
+
+        // Then: Same transaction is returned (idempotency check passed)
+        assertThat(secondResponse).isNotNull();
+        assertThat(secondResponse.getId()).isEqualTo(firstTransactionId);
+        assertThat(secondResponse.getAmount()).isEqualTo(firstResponse.getAmount());
+        assertThat(secondResponse.getCurrency()).isEqualTo(firstResponse.getCurrency());
+
+        // Verify the store contains the result (compact binary encoding)
+        byte[] cachedValue = store.findResult(idempotencyKey).block();
+        assertThat(cachedValue).isNotNull();
+        assertThat(codec.decode(cachedValue).getId()).isEqualTo(firstTransactionId);
+    }
+
+    @Test
+    void testIdempotency_cachedResultExpiry() {
+        String idempotencyKey = "test-memory-expiry-key";
+        TransactionController.TransactionRequest request = new TransactionController.TransactionRequest();
+        request.setIdempotencyKey(idempotencyKey);
+        request.setAmount(new BigDecimal("200.00"));
+        request.setCurrency("GBP");
+
+        // Create transaction
+        webTestClient.post()
+            .uri("/api/v1/transactions")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(request)
+            .exchange()
+            .expectStatus().isCreated();
+
+        // Verify key exists in the store
+        assertThat(store.findResult(idempotencyKey).block()).isNotNull();
+
+        // Check TTL is set (should be around 86400 seconds = 24 hours)
+        Duration ttl = store.remainingTtl(idempotencyKey).block();
+        assertThat(ttl).isGreaterThan(Duration.ofSeconds(86000)); // Allow some margin
+    }
+}
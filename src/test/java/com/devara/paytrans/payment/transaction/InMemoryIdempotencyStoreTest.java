@@ -0,0 +1,120 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the embedded idempotency store.
+ */
+class InMemoryIdempotencyStoreTest {
+
+  private static final Duration LOCK_TTL = Duration.ofMinutes(5);
+
+  private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+  private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(memoryConfig(100), clock);
+
+  @Test
+  void claim_lifecycle_claimedBusyCompleted() {
+    assertThat(store.claim("k", "owner-1", LOCK_TTL).block().outcome()).isEqualTo(IdempotencyStore.Outcome.CLAIMED);
+    assertThat(store.claim("k", "owner-2", LOCK_TTL).block().outcome()).isEqualTo(IdempotencyStore.Outcome.BUSY);
+
+    store.complete("k", "owner-1", new byte[] {1, 2, 3}, Duration.ofHours(1)).block();
+    clock.advance(Duration.ofMinutes(10));
+
+    IdempotencyStore.ClaimResult claim = store.claim("k", "owner-2", LOCK_TTL).block();
+    assertThat(claim.outcome()).isEqualTo(IdempotencyStore.Outcome.COMPLETED);
+    assertThat(claim.result()).containsExactly(1, 2, 3);
+    assertThat(claim.remainingTtl()).isEqualTo(Duration.ofMinutes(50));
+  }
+
+  @Test
+  void release_onlyByOwner() {
+    store.claim("k", "owner-1", LOCK_TTL).block();
+
+    store.release("k", "someone-else").block();
+    assertThat(store.claim("k", "owner-2", LOCK_TTL).block().outcome()).isEqualTo(IdempotencyStore.Outcome.BUSY);
+
+    store.release("k", "owner-1").block();
+    assertThat(store.claim("k", "owner-2", LOCK_TTL).block().outcome()).isEqualTo(IdempotencyStore.Outcome.CLAIMED);
+  }
+
+  @Test
+  void sweep_expiresDueEntriesIncludingLaterRevolutions() {
+    // Wheel of 60 one-second slots; the second entry is due two revolutions later
+    store.complete("short", "o", new byte[] {1}, Duration.ofSeconds(5)).block();
+    store.complete("long", "o", new byte[] {2}, Duration.ofSeconds(125)).block();
+    assertThat(store.size()).isEqualTo(2);
+
+    clock.advance(Duration.ofSeconds(6));
+    store.sweep();
+    assertThat(store.size()).isEqualTo(1);
+    assertThat(store.findResult("short").block()).isNull();
+
+    clock.advance(Duration.ofSeconds(60));
+    store.sweep();
+    assertThat(store.findResult("long").block()).containsExactly(2);
+
+    clock.advance(Duration.ofSeconds(60));
+    store.sweep();
+    assertThat(store.size()).isZero();
+  }
+
+  @Test
+  void claim_atCapacity_failsInsteadOfEvicting() {
+    InMemoryIdempotencyStore small = new InMemoryIdempotencyStore(memoryConfig(2), clock);
+    small.claim("a", "o", LOCK_TTL).block();
+    small.claim("b", "o", LOCK_TTL).block();
+
+    assertThatThrownBy(() -> small.claim("c", "o", LOCK_TTL).block())
+        .isInstanceOf(InMemoryIdempotencyStore.StoreFullException.class);
+
+    // Expired locks free up room
+    clock.advance(LOCK_TTL.plusSeconds(1));
+    small.sweep();
+    assertThat(small.claim("c", "o", LOCK_TTL).block().outcome()).isEqualTo(IdempotencyStore.Outcome.CLAIMED);
+  }
+
+  private static IdempotencyProperties.Memory memoryConfig(int maxEntries) {
+    IdempotencyProperties.Memory config = new IdempotencyProperties.Memory();
+    config.setShards(4);
+    config.setMaxEntries(maxEntries);
+    config.setTick(Duration.ofSeconds(1));
+    config.setWheelSize(60);
+    return config;
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant now;
+
+    MutableClock(Instant start) {
+      this.now = start;
+    }
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for key-ordered parallel batch dispatch.
+ */
+class KeyOrderedDispatcherTest {
+
+  @Test
+  void dispatch_keepsPerKeyOrderAndBoundsConcurrency() {
+    Map<String, List<Long>> seenByKey = new ConcurrentHashMap<>();
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+
+    KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(record -> {
+      TransactionEvent event = record.value();
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      sleep(5);
+      String key = "ACC-" + (event.getId() % 10);
+      seenByKey.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(event.getId());
+      active.decrementAndGet();
+    }, 4);
+
+    List<ConsumerRecord<String, TransactionEvent>> records = new ArrayList<>();
+    for (long id = 0; id < 100; id++) {
+      records.add(record("ACC-" + (id % 10), id));
+    }
+
+    dispatcher.dispatch(records);
+
+    assertThat(seenByKey).hasSize(10);
+    seenByKey.values().forEach(ids -> assertThat(ids).isSorted().hasSize(10));
+    assertThat(maxActive.get()).isBetween(2, 4);
+    dispatcher.stop();
+  }
+
+  @Test
+  void dispatch_failure_surfacesAfterOtherKeysFinish() {
+    AtomicInteger handled = new AtomicInteger();
+    KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(record -> {
+      if (record.value().getId() == 0) {
+        throw new IllegalStateException("boom");
+      }
+      handled.incrementAndGet();
+    }, 8);
+
+    List<ConsumerRecord<String, TransactionEvent>> records = List.of(
+        record("A", 0), record("A", 1), record("B", 2), record(null, 3));
+
+    assertThatThrownBy(() -> dispatcher.dispatch(records))
+        .isInstanceOf(KeyOrderedDispatcher.KeyGroupFailedException.class)
+        .hasRootCauseMessage("boom");
+    // Key A stops at the failure; B and the unkeyed record still run
+    assertThat(handled).hasValue(2);
+    dispatcher.stop();
+  }
+
+  private static ConsumerRecord<String, TransactionEvent> record(String key, long id) {
+    return new ConsumerRecord<>(TransactionEventPublisher.TOPIC, 0, id, key,
+        new TransactionEvent(id, BigDecimal.TEN, Transaction.STATUS_COMPLETED));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the non-transactional outbox relay path: per-key order and the
+ * handling of a partially failed batch. Uses an in-test publisher and a
+ * proxy-backed repository that records what was marked and released.
+ */
+class OutboxRelayTest {
+
+  private final RecordingRepository repository = new RecordingRepository();
+  private final RecordingPublisher publisher = new RecordingPublisher();
+  private final OutboxRelay relay =
+      new OutboxRelay(repository.proxy(), publisher, new OutboxProperties(), Optional.empty());
+
+  @Test
+  void drain_publishesEachKeyInIdOrder() {
+    // RETURNING order is arbitrary
+    repository.claimed = List.of(row(3, "ACC-A"), row(4, "ACC-B"), row(1, "ACC-A"), row(2, "ACC-A"));
+
+    assertThat(relay.drain().block()).isEqualTo(4);
+
+    assertThat(publisher.sent.stream().filter(id -> id != 4).toList()).containsExactly(1L, 2L, 3L);
+    assertThat(repository.published).containsExactlyInAnyOrder(1L, 2L, 3L, 4L);
+    assertThat(repository.released).isEmpty();
+  }
+
+  @Test
+  void drain_partialFailure_holdsBackLaterRowsOfTheFailedKey() {
+    repository.claimed = List.of(row(1, "ACC-A"), row(2, "ACC-A"), row(3, "ACC-A"), row(4, "ACC-B"));
+    publisher.failing = Set.of(2L);
+
+    assertThat(relay.drain().block()).isEqualTo(4);
+
+    // Row 3 is never sent: it would overtake row 2 on retry
+    assertThat(publisher.sent).containsExactlyInAnyOrder(1L, 2L, 4L);
+    assertThat(repository.published).containsExactlyInAnyOrder(1L, 4L);
+    assertThat(repository.released).containsExactlyInAnyOrder(2L, 3L);
+  }
+
+  private static OutboxEvent row(long id, String key) {
+    return OutboxEvent.builder()
+        .id(id)
+        .transactionId(id)
+        .eventKey(key)
+        .amount(BigDecimal.TEN)
+        .status(Transaction.STATUS_COMPLETED)
+        .state(OutboxEvent.STATE_IN_FLIGHT)
+        .build();
+  }
+
+  /**
+   * Acknowledges every event at once, except those whose transaction id is failing.
+   */
+  private static final class RecordingPublisher extends TransactionEventPublisher {
+    final ConcurrentLinkedQueue<Long> sent = new ConcurrentLinkedQueue<>();
+    Set<Long> failing = Set.of();
+
+    RecordingPublisher() {
+      super(null, new KafkaClientProperties());
+    }
+
+    @Override
+    public Mono<RecordMetadata> publish(String key, TransactionEvent event) {
+      return Mono.defer(() -> {
+        sent.add(event.getId());
+        if (failing.contains(event.getId())) {
+          return Mono.error(new IllegalStateException("broker unavailable"));
+        }
+        return Mono.just(new RecordMetadata(new TopicPartition(TOPIC, 0), 0, 0, 0, 0, 0));
+      });
+    }
+  }
+
+  /**
+   * OutboxEventRepository that returns {@link #claimed} once and records the ids
+   * passed to markPublished and releaseClaims.
+   */
+  private static final class RecordingRepository {
+    List<OutboxEvent> claimed = List.of();
+    final List<Long> published = new ArrayList<>();
+    final List<Long> released = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    OutboxEventRepository proxy() {
+      return (OutboxEventRepository) Proxy.newProxyInstance(OutboxEventRepository.class.getClassLoader(),
+          new Class<?>[] {OutboxEventRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+            case "claimBatch" -> {
+              List<OutboxEvent> rows = claimed;
+              claimed = List.of();
+              yield Flux.fromIterable(rows);
+            }
+            case "markPublished" -> record(published, (Collection<Long>) args[0]);
+            case "releaseClaims" -> record(released, (Collection<Long>) args[0]);
+            default -> throw new UnsupportedOperationException(method.getName());
+          });
+    }
+
+    private static Mono<Integer> record(List<Long> target, Collection<Long> ids) {
+      return Mono.fromSupplier(() -> {
+        target.addAll(ids);
+        return ids.size();
+      });
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.devara.paytrans.payment.transaction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the Lua scripts behind {@link RedisIdempotencyStore}:
+ * check-and-claim, complete-and-release and owner-checked release, each in one
+ * call. Needs the Redis server from application.yml.
+ */
+@SpringBootTest
+class RedisIdempotencyStoreIntegrationTest {
+
+  private static final Duration LOCK_TTL = Duration.ofMinutes(5);
+  private static final byte[] RESULT = "result".getBytes(StandardCharsets.US_ASCII);
+
+  @Autowired
+  private RedisIdempotencyStore store;
+
+  @Autowired
+  private ReactiveRedisTemplate<String, String> redisTemplate;
+
+  @BeforeEach
+  void setUp() {
+    redisTemplate.getConnectionFactory()
+        .getReactiveConnection()
+        .serverCommands()
+        .flushAll()
+        .block();
+  }
+
+  @Test
+  void claim_secondOwner_isBusyUntilFirstReleases() {
+    assertThat(store.claim("key-1", "owner-a", LOCK_TTL).block().outcome())
+        .isEqualTo(IdempotencyStore.Outcome.CLAIMED);
+    assertThat(store.claim("key-1", "owner-b", LOCK_TTL).block().outcome())
+        .isEqualTo(IdempotencyStore.Outcome.BUSY);
+
+    store.release("key-1", "owner-a").block();
+
+    assertThat(store.claim("key-1", "owner-b", LOCK_TTL).block().outcome())
+        .isEqualTo(IdempotencyStore.Outcome.CLAIMED);
+  }
+
+  @Test
+  void release_byAnotherOwner_keepsTheLock() {
+    store.claim("key-2", "owner-a", LOCK_TTL).block();
+
+    store.release("key-2", "owner-b").block();
+
+    assertThat(store.claim("key-2", "owner-c", LOCK_TTL).block().outcome())
+        .isEqualTo(IdempotencyStore.Outcome.BUSY);
+  }
+
+  @Test
+  void complete_storesResultAndReleasesLockInOneCall() {
+    store.claim("key-3", "owner-a", LOCK_TTL).block();
+
+    store.complete("key-3", "owner-a", RESULT, Duration.ofHours(1)).block();
+
+    IdempotencyStore.ClaimResult claim = store.claim("key-3", "owner-b", LOCK_TTL).block();
+    assertThat(claim.outcome()).isEqualTo(IdempotencyStore.Outcome.COMPLETED);
+    assertThat(claim.result()).isEqualTo(RESULT);
+    assertThat(claim.remainingTtl()).isPositive().isLessThanOrEqualTo(Duration.ofHours(1));
+    assertThat(redisTemplate.hasKey("idempotency:key-3:processing").block()).isFalse();
+  }
+
+  @Test
+  void complete_afterLockPassedToAnotherOwner_leavesTheirLock() {
+    // owner-a's lock expired and owner-b claimed the key
+    store.claim("key-4", "owner-b", LOCK_TTL).block();
+
+    store.complete("key-4", "owner-a", RESULT, Duration.ofHours(1)).block();
+
+    assertThat(redisTemplate.opsForValue().get("idempotency:key-4:processing").block()).isEqualTo("owner-b");
+  }
+}
@@ -0,0 +1,181 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.payment.balance.BalanceEngineProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for striped balance legs against a scripted repository: stripe
+ * selection, leg order, the sweep fallback and the balance engine guard.
+ */
+class StripedAccountsTest {
+
+  private static final String HOT = "MERCHANT-1";
+  private static final int STRIPES = 16;
+
+  private final ScriptedRepository repository = new ScriptedRepository();
+  private final AccountStripingProperties properties = new AccountStripingProperties();
+  private final BalanceEngineProperties engineProperties = new BalanceEngineProperties();
+
+  @Test
+  void stripeFor_isStableAndSpreadsPayersOverAllStripes() {
+    Set<Integer> used = new HashSet<>();
+    for (int i = 0; i < 1_000; i++) {
+      int stripe = StripedAccounts.stripeFor(HOT, "PAYER-" + i, STRIPES);
+      assertThat(stripe).isBetween(0, STRIPES - 1);
+      assertThat(StripedAccounts.stripeFor(HOT, "PAYER-" + i, STRIPES)).isEqualTo(stripe);
+      used.add(stripe);
+    }
+    assertThat(used).hasSize(STRIPES);
+  }
+
+  @Test
+  void transfer_runsLegsInAccountNumberOrder() {
+    StripedAccounts accounts = started();
+    repository.answer("debit", Mono.just(new PostedBalance(new BigDecimal("90.00"), 7L)));
+    repository.answer("credit", Mono.just(new PostedBalance(new BigDecimal("110.00"), 3L)));
+    repository.answer("creditStripe", Mono.just(BigDecimal.TEN));
+    repository.answer("debitStripe", Mono.just(BigDecimal.ONE));
+
+    // ACC-001 < MERCHANT-1: debit first
+    List<PostedBalance> legs = accounts.transfer("ACC-001", HOT, BigDecimal.TEN).block();
+    assertThat(repository.calls).containsExactly("debit ACC-001", "creditStripe " + HOT);
+    assertThat(legs).containsExactly(new PostedBalance(new BigDecimal("90.00"), 7L), PostedBalance.UNSEQUENCED);
+
+    // MERCHANT-1 > ACC-001: credit first, legs still returned debit first
+    repository.calls.clear();
+    legs = accounts.transfer(HOT, "ACC-001", BigDecimal.TEN).block();
+    assertThat(repository.calls).containsExactly("credit ACC-001", "debitStripe " + HOT);
+    assertThat(legs).containsExactly(PostedBalance.UNSEQUENCED, new PostedBalance(new BigDecimal("110.00"), 3L));
+  }
+
+  @Test
+  void adjust_creditsStripeChosenForCounterparty() {
+    StripedAccounts accounts = started();
+    repository.answer("creditStripe", Mono.just(BigDecimal.TEN));
+
+    accounts.adjust(HOT, "SETTLEMENT", new BigDecimal("25.00")).block();
+    accounts.adjust(HOT, "SETTLEMENT", BigDecimal.ZERO).block();
+
+    assertThat(repository.calls).containsExactly("creditStripe " + HOT);
+    assertThat(repository.stripes).containsExactly(StripedAccounts.stripeFor(HOT, "SETTLEMENT", STRIPES));
+  }
+
+  @Test
+  void adjust_shortStripe_sweepsThenDebitsOnce() {
+    StripedAccounts accounts = started();
+    repository.answer("debitStripe", Mono.empty(), Mono.just(new BigDecimal("75.00")));
+    repository.answer("sweepStripes", Mono.just(new BigDecimal("100.00")));
+
+    accounts.adjust(HOT, "SETTLEMENT", new BigDecimal("-25.00")).block();
+
+    assertThat(repository.calls).containsExactly("debitStripe " + HOT, "sweepStripes " + HOT, "debitStripe " + HOT);
+  }
+
+  @Test
+  void adjust_sweepStillShort_reportsLogicalBalance() {
+    StripedAccounts accounts = started();
+    repository.answer("debitStripe", Mono.empty());
+    repository.answer("sweepStripes", Mono.just(new BigDecimal("20.00")));
+    repository.answer("logicalBalance", Mono.just(new BigDecimal("20.00")));
+
+    assertThatThrownBy(() -> accounts.adjust(HOT, "SETTLEMENT", new BigDecimal("-25.00")).block())
+        .isInstanceOf(Account.InsufficientFundsException.class)
+        .hasMessageContaining("Available: 20.00");
+    assertThat(repository.calls).containsExactly("debitStripe " + HOT, "sweepStripes " + HOT, "logicalBalance " + HOT);
+  }
+
+  @Test
+  void start_withBalanceEngine_failsFast() {
+    properties.setAccounts(List.of(HOT));
+    engineProperties.setEnabled(true);
+    StripedAccounts accounts = new StripedAccounts(repository.proxy(), NO_TRANSACTION, properties, engineProperties);
+
+    assertThatThrownBy(accounts::start).isInstanceOf(IllegalStateException.class);
+    assertThat(repository.calls).isEmpty();
+  }
+
+  private StripedAccounts started() {
+    properties.setAccounts(List.of(HOT));
+    properties.setStripes(STRIPES);
+    repository.answer("seedStripes", Mono.just(STRIPES));
+    repository.answer("moveBalanceToStripes", Mono.just(1));
+    repository.answer("stripedAccountsWithFunds", Flux.empty());
+    StripedAccounts accounts = new StripedAccounts(repository.proxy(), NO_TRANSACTION, properties, engineProperties);
+    accounts.start();
+    assertThat(accounts.isStriped(HOT)).isTrue();
+    repository.calls.clear();
+    repository.stripes.clear();
+    return accounts;
+  }
+
+  private static final TransactionalOperator NO_TRANSACTION = new TransactionalOperator() {
+    @Override
+    public <T> Mono<T> transactional(Mono<T> mono) {
+      return mono;
+    }
+
+    @Override
+    public <T> Flux<T> execute(TransactionCallback<T> action) {
+      return Flux.error(new UnsupportedOperationException());
+    }
+  };
+
+  /**
+   * AccountRepository whose queries return scripted results and record
+   * "method account" per subscription, in order.
+   */
+  private static final class ScriptedRepository {
+    final List<String> calls = new ArrayList<>();
+    final List<Integer> stripes = new ArrayList<>();
+    private final Map<String, Deque<Object>> answers = new HashMap<>();
+
+    void answer(String method, Object... results) {
+      answers.put(method, new ArrayDeque<>(List.of(results)));
+    }
+
+    AccountRepository proxy() {
+      return (AccountRepository) Proxy.newProxyInstance(AccountRepository.class.getClassLoader(),
+          new Class<?>[] {AccountRepository.class}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+              return method.getName().equals("equals") ? proxy == args[0]
+                  : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : "ScriptedRepository";
+            }
+            String call = method.getName() + (args != null && args.length > 0 ? " " + args[0] : "");
+            Object result = next(method.getName());
+            if (method.getName().endsWith("Stripe")) {
+              stripes.add((Integer) args[1]);
+            }
+            return result instanceof Flux<?> flux
+                ? flux.doOnSubscribe(s -> calls.add(call))
+                : ((Mono<?>) result).doOnSubscribe(s -> calls.add(call));
+          });
+    }
+
+    private Object next(String method) {
+      Deque<Object> results = answers.get(method);
+      if (results == null) {
+        return Mono.empty();
+      }
+      // The last scripted result repeats
+      return results.size() > 1 ? results.poll() : results.peek();
+    }
+  }
+}
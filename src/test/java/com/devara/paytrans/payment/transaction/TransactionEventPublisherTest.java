@@ -0,0 +1,126 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the shared send pipeline: one long-lived send for all callers,
+ * keyed records, and acknowledgements routed back to the right caller. Uses a
+ * proxy-backed KafkaSender that acknowledges each record with its event id as
+ * the offset.
+ */
+class TransactionEventPublisherTest {
+
+  private final RecordingSender sender = new RecordingSender();
+  private final TransactionEventPublisher publisher =
+      new TransactionEventPublisher(sender.proxy(), new KafkaClientProperties());
+
+  @AfterEach
+  void tearDown() {
+    publisher.stop();
+  }
+
+  @Test
+  void publish_concurrentCallers_shareOneSendAndGetTheirOwnAck() {
+    publisher.start();
+
+    List<Long> offsets = Flux.range(0, 200)
+        .flatMap(i -> publisher.publish("ACC-" + i % 10, event(i))
+            .map(metadata -> metadata.offset() - i), 200)
+        .collectList()
+        .block(Duration.ofSeconds(10));
+
+    assertThat(sender.sends).hasValue(1);
+    // Every caller got the acknowledgement of its own record
+    assertThat(offsets).hasSize(200).containsOnly(0L);
+    assertThat(sender.records).hasSize(200)
+        .allSatisfy(record -> {
+          assertThat(record.topic()).isEqualTo(TransactionEventPublisher.TOPIC);
+          assertThat(record.key()).isEqualTo("ACC-" + record.value().getId() % 10);
+        });
+  }
+
+  @Test
+  void publish_failedRecord_failsOnlyItsCaller() {
+    sender.failing = Set.of(2L);
+    publisher.start();
+
+    List<String> outcomes = Flux.range(0, 5)
+        .concatMap(i -> publisher.publish("ACC-1", event(i))
+            .map(metadata -> "ok")
+            .onErrorReturn("failed"))
+        .collectList()
+        .block(Duration.ofSeconds(10));
+
+    assertThat(outcomes).containsExactly("ok", "ok", "failed", "ok", "ok");
+  }
+
+  private static TransactionEvent event(long id) {
+    return new TransactionEvent(id, BigDecimal.TEN, Transaction.STATUS_COMPLETED);
+  }
+
+  /**
+   * KafkaSender whose send(Publisher) records each producer record and
+   * acknowledges it, failing the records whose event id is in {@link #failing}.
+   */
+  private static final class RecordingSender {
+    final AtomicInteger sends = new AtomicInteger();
+    final ConcurrentLinkedQueue<ProducerRecord<String, TransactionEvent>> records = new ConcurrentLinkedQueue<>();
+    volatile Set<Long> failing = Set.of();
+
+    @SuppressWarnings("unchecked")
+    KafkaSender<String, TransactionEvent> proxy() {
+      return (KafkaSender<String, TransactionEvent>) Proxy.newProxyInstance(KafkaSender.class.getClassLoader(),
+          new Class<?>[] {KafkaSender.class}, (proxy, method, args) -> {
+            if (!method.getName().equals("send")) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            sends.incrementAndGet();
+            return Flux.from((Publisher<SenderRecord<String, TransactionEvent, Object>>) args[0])
+                .doOnNext(records::add)
+                .map(this::acknowledge);
+          });
+    }
+
+    private <T> SenderResult<T> acknowledge(SenderRecord<String, TransactionEvent, T> record) {
+      long id = record.value().getId();
+      Exception exception = failing.contains(id) ? new IllegalStateException("record too large") : null;
+      RecordMetadata metadata = new RecordMetadata(new TopicPartition(record.topic(), 0), id, 0, 0, 0, 0);
+      return new SenderResult<>() {
+        @Override
+        public RecordMetadata recordMetadata() {
+          return exception == null ? metadata : null;
+        }
+
+        @Override
+        public Exception exception() {
+          return exception;
+        }
+
+        @Override
+        public T correlationMetadata() {
+          return record.correlationMetadata();
+        }
+      };
+    }
+  }
+}
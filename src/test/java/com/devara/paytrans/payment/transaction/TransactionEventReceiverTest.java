@@ -0,0 +1,134 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import com.devara.paytrans.config.KafkaConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import reactor.core.publisher.Flux;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the reactive consumer (paytrans.kafka.consumer.mode=reactive) against an
+ * embedded broker: every partition is processed, per-key order holds with fewer
+ * threads than partitions, and handled offsets are committed.
+ */
+class TransactionEventReceiverTest {
+
+  private static final int PARTITIONS = 8;
+  private static final int RECORDS = 400;
+  private static final int KEYS = 20;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  private final RecordingHandler handler = new RecordingHandler();
+
+  private EmbeddedKafkaKraftBroker broker;
+  private KafkaClientProperties properties;
+  private TransactionEventReceiver receiver;
+
+  @BeforeEach
+  void startBroker() throws Exception {
+    broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, TransactionEventPublisher.TOPIC);
+    broker.afterPropertiesSet();
+    properties = new KafkaClientProperties();
+    properties.setBootstrapServers(broker.getBrokersAsString());
+    properties.getConsumer().setMode("reactive");
+    properties.getConsumer().setMaxConcurrency(2);
+    properties.getConsumer().setMaxPartitions(PARTITIONS);
+    properties.getConsumer().setCommitInterval(Duration.ofMillis(100));
+  }
+
+  @AfterEach
+  void stopBroker() {
+    if (receiver != null) {
+      receiver.stop();
+    }
+    broker.destroy();
+  }
+
+  @Test
+  void receive_allPartitions_processedInKeyOrderAndCommitted() throws Exception {
+    KafkaConfig config = new KafkaConfig();
+    TransactionEventRetryRouter router = new TransactionEventRetryRouter(handler,
+        new TransactionEventPublisher(null, properties), null, properties);
+    receiver = new TransactionEventReceiver(
+        config.transactionEventReceiverOptions(properties, objectMapper), router, properties);
+    receiver.start();
+
+    KafkaSender<String, TransactionEvent> sender = KafkaSender.create(config.senderOptions(properties, objectMapper));
+    try {
+      sender.send(Flux.range(0, RECORDS).map(TransactionEventReceiverTest::record))
+          .doOnNext(result -> assertThat(result.exception()).isNull())
+          .blockLast(Duration.ofSeconds(30));
+    } finally {
+      sender.close();
+    }
+
+    awaitTrue(() -> handler.handled.size() >= RECORDS);
+    assertThat(handler.handled).hasSize(RECORDS);
+    handler.byKey.values().forEach(ids -> assertThat(ids).isSorted());
+
+    try (AdminClient admin = AdminClient.create(Map.of(
+        AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()))) {
+      awaitTrue(() -> committedRecords(admin) == RECORDS);
+      assertThat(committedRecords(admin)).isEqualTo(RECORDS);
+    }
+  }
+
+  private static SenderRecord<String, TransactionEvent, Integer> record(int i) {
+    TransactionEvent event = new TransactionEvent((long) i, BigDecimal.TEN, Transaction.STATUS_COMPLETED);
+    int key = i % KEYS;
+    // Each key stays on one partition, and every partition gets keys
+    return SenderRecord.create(TransactionEventPublisher.TOPIC, key % PARTITIONS, null, "ACC-" + key, event, i);
+  }
+
+  private long committedRecords(AdminClient admin) {
+    try {
+      return admin.listConsumerGroupOffsets(properties.getConsumer().getGroupId())
+          .partitionsToOffsetAndMetadata().get().values().stream()
+          .mapToLong(OffsetAndMetadata::offset)
+          .sum();
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(100);
+    }
+  }
+
+  /**
+   * Records handled events, in handling order per key.
+   */
+  private static final class RecordingHandler extends TransactionEventHandler {
+    final ConcurrentLinkedQueue<Long> handled = new ConcurrentLinkedQueue<>();
+    final Map<Long, List<Long>> byKey = new ConcurrentHashMap<>();
+
+    @Override
+    public void handle(TransactionEvent event) {
+      handled.add(event.getId());
+      byKey.computeIfAbsent(event.getId() % KEYS, key -> new ArrayList<>()).add(event.getId());
+    }
+  }
+}
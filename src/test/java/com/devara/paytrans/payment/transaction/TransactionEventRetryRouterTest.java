@@ -0,0 +1,257 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import com.devara.paytrans.config.TransactionEventDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for retry tier routing: tier selection from the attempt header,
+ * the headers written on forward, and raw dead-lettering of unreadable records.
+ */
+class TransactionEventRetryRouterTest {
+
+  private static final long NOW = 1_700_000_000_000L;
+  private static final TransactionEvent EVENT = new TransactionEvent(42L, new BigDecimal("10.00"), "PENDING");
+
+  private final KafkaClientProperties properties = new KafkaClientProperties();
+  private final FailingHandler handler = new FailingHandler();
+  private final CapturingPublisher publisher = new CapturingPublisher(properties);
+  private final CapturingRawSender rawSender = new CapturingRawSender();
+
+  @Test
+  void process_handled_forwardsNothing() {
+    handler.failure = null;
+
+    router().process(record(TransactionEventPublisher.TOPIC, EVENT));
+
+    assertThat(handler.handled).containsExactly(EVENT);
+    assertThat(publisher.sent).isEmpty();
+  }
+
+  @Test
+  void process_firstFailure_forwardsToFirstTierWithNotBeforeAndOrigin() {
+    router().process(record(TransactionEventPublisher.TOPIC, EVENT));
+
+    ProducerRecord<String, TransactionEvent> forwarded = publisher.single();
+    assertThat(forwarded.topic()).isEqualTo(TransactionEventRetryRouter.retryTopic(0));
+    assertThat(forwarded.key()).isEqualTo("key");
+    assertThat(forwarded.value()).isEqualTo(EVENT);
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.ATTEMPT_HEADER)).isEqualTo("1");
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.NOT_BEFORE_HEADER))
+        .isEqualTo(String.valueOf(NOW + 1_000));
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.ORIGIN_HEADER))
+        .isEqualTo(TransactionEventPublisher.TOPIC + "-3@17");
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.ERROR_HEADER))
+        .isEqualTo("java.lang.IllegalStateException: boom");
+  }
+
+  @Test
+  void process_retriedRecord_movesToNextTierAndKeepsOrigin() {
+    ConsumerRecord<String, TransactionEvent> retried = record(TransactionEventRetryRouter.retryTopic(0), EVENT);
+    retried.headers().add(TransactionEventRetryRouter.ATTEMPT_HEADER, ascii("1"));
+    retried.headers().add(TransactionEventRetryRouter.ORIGIN_HEADER, ascii("transaction-events-0@5"));
+
+    router().process(retried);
+
+    ProducerRecord<String, TransactionEvent> forwarded = publisher.single();
+    assertThat(forwarded.topic()).isEqualTo(TransactionEventRetryRouter.retryTopic(1));
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.ATTEMPT_HEADER)).isEqualTo("2");
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.NOT_BEFORE_HEADER))
+        .isEqualTo(String.valueOf(NOW + 10_000));
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.ORIGIN_HEADER))
+        .isEqualTo("transaction-events-0@5");
+  }
+
+  @Test
+  void process_lastTierFailure_deadLettersWithoutNotBefore() {
+    ConsumerRecord<String, TransactionEvent> retried = record(TransactionEventRetryRouter.retryTopic(2), EVENT);
+    retried.headers().add(TransactionEventRetryRouter.ATTEMPT_HEADER, ascii("3"));
+
+    router().process(retried);
+
+    ProducerRecord<String, TransactionEvent> forwarded = publisher.single();
+    assertThat(forwarded.topic()).isEqualTo(TransactionEventRetryRouter.deadLetterTopic());
+    assertThat(header(forwarded.headers(), TransactionEventRetryRouter.ATTEMPT_HEADER)).isEqualTo("4");
+    assertThat(forwarded.headers().lastHeader(TransactionEventRetryRouter.NOT_BEFORE_HEADER)).isNull();
+  }
+
+  @Test
+  void process_malformedAttemptHeader_deadLetters() {
+    ConsumerRecord<String, TransactionEvent> retried = record(TransactionEventRetryRouter.retryTopic(0), EVENT);
+    retried.headers().add(TransactionEventRetryRouter.ATTEMPT_HEADER, ascii("one"));
+
+    router().process(retried);
+
+    assertThat(publisher.single().topic()).isEqualTo(TransactionEventRetryRouter.deadLetterTopic());
+  }
+
+  @Test
+  void process_retryDisabled_rethrowsHandlerFailure() {
+    properties.getRetry().setEnabled(false);
+
+    assertThatThrownBy(() -> router().process(record(TransactionEventPublisher.TOPIC, EVENT)))
+        .isSameAs(handler.failure);
+    assertThat(publisher.sent).isEmpty();
+  }
+
+  @Test
+  void process_unreadableRecord_deadLettersRawBytes() {
+    byte[] raw = "{not json".getBytes(StandardCharsets.UTF_8);
+    ConsumerRecord<String, TransactionEvent> unreadable = record(TransactionEventPublisher.TOPIC, null);
+    unreadable.headers().add(TransactionEventDeserializer.RAW_VALUE_HEADER, raw);
+    unreadable.headers().add(TransactionEventDeserializer.ERROR_HEADER, ascii("Unexpected character"));
+
+    router().process(unreadable);
+
+    assertThat(handler.handled).isEmpty();
+    assertThat(publisher.sent).isEmpty();
+    assertThat(rawSender.sent).hasSize(1);
+    ProducerRecord<String, byte[]> deadLetter = rawSender.sent.get(0);
+    assertThat(deadLetter.topic()).isEqualTo(TransactionEventRetryRouter.deadLetterTopic());
+    assertThat(deadLetter.key()).isEqualTo("key");
+    assertThat(deadLetter.value()).isEqualTo(raw);
+    assertThat(header(deadLetter.headers(), TransactionEventRetryRouter.ORIGIN_HEADER))
+        .isEqualTo(TransactionEventPublisher.TOPIC + "-3@17");
+    assertThat(header(deadLetter.headers(), TransactionEventRetryRouter.ERROR_HEADER))
+        .isEqualTo("Unexpected character");
+  }
+
+  @Test
+  void process_tombstone_isSkipped() {
+    router().process(record(TransactionEventPublisher.TOPIC, null));
+
+    assertThat(handler.handled).isEmpty();
+    assertThat(publisher.sent).isEmpty();
+    assertThat(rawSender.sent).isEmpty();
+  }
+
+  @Test
+  void notBefore_readsHeaderAndTreatsMissingOrMalformedAsDueNow() {
+    ConsumerRecord<String, TransactionEvent> record = record(TransactionEventRetryRouter.retryTopic(0), EVENT);
+    assertThat(TransactionEventRetryRouter.notBefore(record)).isZero();
+
+    record.headers().add(TransactionEventRetryRouter.NOT_BEFORE_HEADER, ascii(String.valueOf(NOW)));
+    assertThat(TransactionEventRetryRouter.notBefore(record)).isEqualTo(NOW);
+
+    record.headers().add(TransactionEventRetryRouter.NOT_BEFORE_HEADER, ascii("soon"));
+    assertThat(TransactionEventRetryRouter.notBefore(record)).isZero();
+  }
+
+  private TransactionEventRetryRouter router() {
+    Clock clock = Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC);
+    return new TransactionEventRetryRouter(handler, publisher, rawSender.proxy(), properties, clock);
+  }
+
+  private static ConsumerRecord<String, TransactionEvent> record(String topic, TransactionEvent value) {
+    return new ConsumerRecord<>(topic, 3, 17, "key", value);
+  }
+
+  private static String header(Headers headers, String name) {
+    Header header = headers.lastHeader(name);
+    return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static final class FailingHandler extends TransactionEventHandler {
+    final List<TransactionEvent> handled = new ArrayList<>();
+    RuntimeException failure = new IllegalStateException("boom");
+
+    @Override
+    public void handle(TransactionEvent event) {
+      handled.add(event);
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  /**
+   * Publisher that acknowledges every record immediately without a Kafka sender.
+   */
+  private static final class CapturingPublisher extends TransactionEventPublisher {
+    final List<ProducerRecord<String, TransactionEvent>> sent = new ArrayList<>();
+
+    CapturingPublisher(KafkaClientProperties properties) {
+      super(null, properties);
+    }
+
+    @Override
+    public Mono<RecordMetadata> send(ProducerRecord<String, TransactionEvent> producerRecord) {
+      return Mono.fromSupplier(() -> {
+        sent.add(producerRecord);
+        return new RecordMetadata(new TopicPartition(producerRecord.topic(), 0), 0, 0, 0, 0, 0);
+      });
+    }
+
+    ProducerRecord<String, TransactionEvent> single() {
+      assertThat(sent).hasSize(1);
+      return sent.get(0);
+    }
+  }
+
+  /**
+   * KafkaSender whose send(Publisher) records each producer record and reports success.
+   */
+  private static final class CapturingRawSender {
+    final List<ProducerRecord<String, byte[]>> sent = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    KafkaSender<String, byte[]> proxy() {
+      return (KafkaSender<String, byte[]>) Proxy.newProxyInstance(KafkaSender.class.getClassLoader(),
+          new Class<?>[] {KafkaSender.class}, (proxy, method, args) -> {
+            if (!method.getName().equals("send")) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            return Flux.from((Publisher<SenderRecord<String, byte[], Object>>) args[0])
+                .doOnNext(sent::add)
+                .map(record -> succeeded(record.correlationMetadata()));
+          });
+    }
+
+    private static <T> SenderResult<T> succeeded(T correlation) {
+      return new SenderResult<>() {
+        @Override
+        public RecordMetadata recordMetadata() {
+          return null;
+        }
+
+        @Override
+        public Exception exception() {
+          return null;
+        }
+
+        @Override
+        public T correlationMetadata() {
+          return correlation;
+        }
+      };
+    }
+  }
+}
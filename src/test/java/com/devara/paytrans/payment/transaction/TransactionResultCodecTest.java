@@ -0,0 +1,70 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the compact binary encoding of cached idempotency results.
+ */
+class TransactionResultCodecTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  private final TransactionResultCodec codec = new TransactionResultCodec(objectMapper);
+
+  @Test
+  void roundTrip_preservesAllFields() {
+    Transaction tx = Transaction.builder()
+        .id(42L)
+        .amount(new BigDecimal("100.50"))
+        .currency("EUR")
+        .status(Transaction.STATUS_COMPLETED)
+        .fee(new BigDecimal("2.81"))
+        .netAmount(new BigDecimal("97.69"))
+        .createdAt(Instant.ofEpochMilli(1_700_000_000_123L))
+        .updatedAt(Instant.ofEpochMilli(1_700_000_000_456L))
+        .version(3)
+        .build();
+
+    byte[] encoded = codec.encode(tx);
+
+    assertThat(encoded[0]).isEqualTo(TransactionResultCodec.VERSION_1);
+    assertThat(encoded.length).isLessThan(80);
+    assertThat(codec.decode(encoded)).isEqualTo(tx);
+  }
+
+  @Test
+  void roundTrip_nullFieldsAndCustomStatus() {
+    Transaction tx = Transaction.builder()
+        .id(7L)
+        .amount(new BigDecimal("1.00"))
+        .currency("USD")
+        .status("CHARGEBACK")
+        .build();
+
+    assertThat(codec.decode(codec.encode(tx))).isEqualTo(tx);
+  }
+
+  @Test
+  void decode_legacyJsonEntry_isStillReadable() throws Exception {
+    Transaction tx = Transaction.builder()
+        .id(9L)
+        .amount(new BigDecimal("200.00"))
+        .currency("GBP")
+        .status(Transaction.STATUS_COMPLETED)
+        .createdAt(Instant.parse("2024-01-01T00:00:00Z"))
+        .build();
+
+    byte[] legacy = objectMapper.writeValueAsBytes(tx);
+
+    assertThat(codec.decode(legacy)).isEqualTo(tx);
+  }
+}
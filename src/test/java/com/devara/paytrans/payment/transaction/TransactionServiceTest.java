@@ -0,0 +1,169 @@
+package com.devara.paytrans.payment.transaction;
+
+import com.devara.paytrans.config.KafkaClientProperties;
+import com.devara.paytrans.payment.fee.FeeProperties;
+import com.devara.paytrans.payment.fee.FeeScheduleRegistry;
+import com.devara.paytrans.payment.fraud.FraudEngine;
+import com.devara.paytrans.payment.fraud.FraudProperties;
+import com.devara.paytrans.payment.fx.FxProperties;
+import com.devara.paytrans.payment.fx.FxRateCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the payment pipeline. Stages run against real in-process
+ * components; the save step goes to a proxy-backed repository and the outbox is
+ * off, so nothing here reaches the database or Kafka.
+ */
+class TransactionServiceTest {
+
+  private final BulkheadRegistry bulkheads = BulkheadRegistry.ofDefaults();
+  private final TimeLimiterRegistry timeLimiters = TimeLimiterRegistry.ofDefaults();
+  private final RecordingRepository repository = new RecordingRepository();
+  private final RecordingPublisher publisher = new RecordingPublisher();
+
+  @Test
+  void processPayment_lowercaseCurrency_checkedAgainstItsLimit() {
+    FraudProperties fraud = new FraudProperties();
+    fraud.setCurrencyLimits(Map.of("EUR", new BigDecimal("1000")));
+    fraud.setCurrencyLimitWeight(0.9);
+    TransactionService service = service(new FraudEngine(fraud));
+
+    assertThatThrownBy(() -> service.processPayment(new BigDecimal("1500.00"), "eur", "ACC-001").block())
+        .isInstanceOf(FraudEngine.FraudRejectedException.class);
+  }
+
+  @Test
+  void processPayment_branchesJoin_savesOnceThenNotifiesAndPublishes() {
+    TransactionService service = service(new FraudEngine(new FraudProperties()));
+
+    Transaction saved = service.processPayment(new BigDecimal("100.00"), "EUR", "ACC-001").block(Duration.ofSeconds(5));
+
+    assertThat(saved.getId()).isNotNull();
+    assertThat(repository.saved).containsExactly(saved);
+    assertThat(publisher.keys).containsExactly("ACC-001");
+  }
+
+  @Test
+  void processPayment_withoutAccount_keysEventByTransactionId() {
+    TransactionService service = service(new FraudEngine(new FraudProperties()));
+
+    Transaction saved = service.processPayment(new BigDecimal("100.00"), "USD", null).block(Duration.ofSeconds(5));
+
+    assertThat(publisher.keys).containsExactly(String.valueOf(saved.getId()));
+  }
+
+  @Test
+  void processPayment_fraudBranchFails_nothingSavedOrPublished() {
+    FraudProperties fraud = new FraudProperties();
+    fraud.setCurrencyLimits(Map.of("USD", new BigDecimal("1000")));
+    fraud.setCurrencyLimitWeight(0.9);
+    TransactionService service = service(new FraudEngine(fraud));
+
+    assertThatThrownBy(() -> service.processPayment(new BigDecimal("5000.00"), "USD", "ACC-001").block())
+        .isInstanceOf(FraudEngine.FraudRejectedException.class);
+    assertThat(repository.saved).isEmpty();
+    assertThat(publisher.keys).isEmpty();
+  }
+
+  @Test
+  void processPayment_stageBulkheadFull_failsFastWithoutSaving() {
+    bulkheads.bulkhead(PaymentStage.FRAUD_DETECTION.instanceName(), BulkheadConfig.custom()
+        .maxConcurrentCalls(0)
+        .maxWaitDuration(Duration.ZERO)
+        .build());
+    TransactionService service = service(new FraudEngine(new FraudProperties()));
+
+    assertThatThrownBy(() -> service.processPayment(new BigDecimal("10.00"), "USD", "ACC-001").block())
+        .isInstanceOf(BulkheadFullException.class);
+    assertThat(repository.saved).isEmpty();
+  }
+
+  @Test
+  void processPayment_stageOverItsTimeLimit_timesOut() {
+    // The simulated notification takes at least 40ms
+    timeLimiters.timeLimiter(PaymentStage.NOTIFICATION.instanceName(), TimeLimiterConfig.custom()
+        .timeoutDuration(Duration.ofMillis(10))
+        .build());
+    TransactionService service = service(new FraudEngine(new FraudProperties()));
+
+    assertThatThrownBy(() -> service.processPayment(new BigDecimal("10.00"), "USD", "ACC-001")
+        .block(Duration.ofSeconds(5)))
+        .hasCauseInstanceOf(TimeoutException.class);
+  }
+
+  private TransactionService service(FraudEngine fraudEngine) {
+    FxRateCache fx = new FxRateCache(
+        () -> Mono.just(Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("1.10"))), new FxProperties());
+    FeeScheduleRegistry fees = new FeeScheduleRegistry(new FeeProperties(), new DefaultResourceLoader(), new ObjectMapper());
+    fees.reload();
+    OutboxProperties outbox = new OutboxProperties();
+    outbox.setEnabled(false);
+    // Without the outbox the save step needs no transactional operator
+    return new TransactionService(repository.proxy(), fx, fraudEngine, fees, OpenTelemetry.noop(),
+        publisher, null, null, outbox, bulkheads, timeLimiters);
+  }
+
+  /**
+   * Acknowledges every event at once and records it by key.
+   */
+  private static final class RecordingPublisher extends TransactionEventPublisher {
+    final ConcurrentLinkedQueue<String> keys = new ConcurrentLinkedQueue<>();
+
+    RecordingPublisher() {
+      super(null, new KafkaClientProperties());
+    }
+
+    @Override
+    public Mono<RecordMetadata> publish(String key, TransactionEvent event) {
+      return Mono.fromSupplier(() -> {
+        keys.add(key);
+        return new RecordMetadata(new TopicPartition(TOPIC, 0), 0, 0, 0, 0, 0);
+      });
+    }
+  }
+
+  /**
+   * TransactionRepository whose save assigns the next id and records the row.
+   */
+  private static final class RecordingRepository {
+    final ConcurrentLinkedQueue<Transaction> saved = new ConcurrentLinkedQueue<>();
+    private final AtomicLong ids = new AtomicLong(1);
+
+    TransactionRepository proxy() {
+      return (TransactionRepository) Proxy.newProxyInstance(TransactionRepository.class.getClassLoader(),
+          new Class<?>[] {TransactionRepository.class}, (proxy, method, args) -> {
+            if (!method.getName().equals("save")) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            return Mono.fromSupplier(() -> {
+              Transaction tx = (Transaction) args[0];
+              tx.setId(ids.getAndIncrement());
+              saved.add(tx);
+              return tx;
+            });
+          });
+    }
+  }
+}